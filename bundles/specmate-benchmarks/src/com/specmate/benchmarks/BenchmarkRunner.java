@@ -0,0 +1,137 @@
+package com.specmate.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs benchmarks in the current thread. Each benchmark is first run for the
+ * warmup time, then each operation of the measurement time is timed
+ * separately. The result contains the throughput, latency percentiles and the
+ * memory allocated by the operations.
+ */
+public class BenchmarkRunner {
+
+	/** A benchmarked operation */
+	public interface IBenchmark {
+
+		/** Prepares the next operation, not included in the measurement */
+		void setUp() throws Exception;
+
+		/** Runs the measured operation */
+		void run() throws Exception;
+
+		/** Cleans up after an operation, not included in the measurement */
+		void tearDown() throws Exception;
+	}
+
+	/** Measurement result of a benchmark */
+	public static class Result {
+		private final long operations;
+		private final long totalNanos;
+		private final long[] sortedLatencies;
+		private final long allocatedBytes;
+
+		private Result(long[] latencies, int operations, long allocatedBytes) {
+			this.operations = operations;
+			this.sortedLatencies = Arrays.copyOf(latencies, operations);
+			Arrays.sort(sortedLatencies);
+			this.totalNanos = Arrays.stream(sortedLatencies).sum();
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		/** Returns the number of measured operations */
+		public long getOperations() {
+			return operations;
+		}
+
+		/** Returns the operations per second, without set up and tear down */
+		public double getOperationsPerSecond() {
+			return operations / (totalNanos / 1e9);
+		}
+
+		/** Returns the given latency percentile in milliseconds */
+		public double getLatencyPercentile(double percentile) {
+			int index = (int) Math.ceil(percentile / 100 * operations) - 1;
+			return sortedLatencies[Math.max(0, index)] / 1e6;
+		}
+
+		/**
+		 * Returns the allocated bytes per operation or a negative value if the
+		 * JVM does not measure allocations
+		 */
+		public double getAllocatedBytesPerOperation() {
+			return allocatedBytes < 0 ? -1 : (double) allocatedBytes / operations;
+		}
+
+		/**
+		 * Returns the allocation rate during the operations in megabytes per
+		 * second or a negative value if the JVM does not measure allocations
+		 */
+		public double getAllocationRate() {
+			return allocatedBytes < 0 ? -1 : allocatedBytes / (1024d * 1024d) / (totalNanos / 1e9);
+		}
+	}
+
+	private final long warmupNanos;
+	private final long measurementNanos;
+	private final com.sun.management.ThreadMXBean threadBean;
+
+	/**
+	 * Creates a runner with the given warmup and measurement time per
+	 * benchmark in seconds.
+	 */
+	public BenchmarkRunner(int warmupSeconds, int measurementSeconds) {
+		this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+		this.measurementNanos = TimeUnit.SECONDS.toNanos(measurementSeconds);
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			this.threadBean = (com.sun.management.ThreadMXBean) bean;
+			this.threadBean.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			this.threadBean = null;
+		}
+	}
+
+	/** Runs a benchmark and returns the measurement result */
+	public Result run(IBenchmark benchmark) throws Exception {
+		long warmupEnd = System.nanoTime() + warmupNanos;
+		do {
+			runOnce(benchmark);
+		} while (System.nanoTime() < warmupEnd);
+
+		long[] latencies = new long[1024];
+		int operations = 0;
+		long allocatedBytes = 0;
+		long measurementEnd = System.nanoTime() + measurementNanos;
+		do {
+			benchmark.setUp();
+			long allocatedBefore = getAllocatedBytes();
+			long start = System.nanoTime();
+			benchmark.run();
+			long latency = System.nanoTime() - start;
+			allocatedBytes += getAllocatedBytes() - allocatedBefore;
+			benchmark.tearDown();
+			if (operations == latencies.length) {
+				latencies = Arrays.copyOf(latencies, operations * 2);
+			}
+			latencies[operations++] = latency;
+		} while (System.nanoTime() < measurementEnd);
+
+		return new Result(latencies, operations, threadBean == null ? -1 : allocatedBytes);
+	}
+
+	private void runOnce(IBenchmark benchmark) throws Exception {
+		benchmark.setUp();
+		benchmark.run();
+		benchmark.tearDown();
+	}
+
+	private long getAllocatedBytes() {
+		if (threadBean == null) {
+			return 0;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,106 @@
+package com.specmate.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import com.specmate.benchmarks.BenchmarkRunner.IBenchmark;
+import com.specmate.benchmarks.BenchmarkRunner.Result;
+import com.specmate.model.base.IContainer;
+import com.specmate.model.testspecification.TestSpecification;
+import com.specmate.model.testspecification.TestspecificationFactory;
+import com.specmate.testspecification.internal.services.CEGTestCaseGenerator;
+import com.specmate.testspecification.internal.services.ProcessTestCaseGenerator;
+import com.specmate.testspecification.internal.services.TestCaseGeneratorBase;
+
+/**
+ * Benchmarks for the test case generation on in-memory models. Each operation
+ * generates the test cases of a new, empty test specification of the model.
+ * <p>
+ * Arguments: <code>[-w warmupSeconds] [-t measurementSeconds] [pattern]</code>
+ * where the pattern is a regular expression that selects the benchmarks to
+ * run by name.
+ */
+public class GenerationBenchmarks {
+
+	/** Generates the test cases of a fresh specification for a model */
+	private static class GenerationBenchmark implements IBenchmark {
+		private final IContainer model;
+		private final Function<TestSpecification, TestCaseGeneratorBase<?, ?>> generatorFactory;
+		private TestSpecification specification;
+
+		public GenerationBenchmark(IContainer model,
+				Function<TestSpecification, TestCaseGeneratorBase<?, ?>> generatorFactory) {
+			this.model = model;
+			this.generatorFactory = generatorFactory;
+		}
+
+		@Override
+		public void setUp() {
+			specification = TestspecificationFactory.eINSTANCE.createTestSpecification();
+			specification.setId("specification");
+			specification.setName("specification");
+			model.getContents().add(specification);
+		}
+
+		@Override
+		public void run() throws Exception {
+			generatorFactory.apply(specification).generate();
+		}
+
+		@Override
+		public void tearDown() {
+			model.getContents().remove(specification);
+			specification = null;
+		}
+	}
+
+	/** Returns the benchmarks by name */
+	private static Map<String, Supplier<IBenchmark>> getBenchmarks() {
+		Map<String, Supplier<IBenchmark>> benchmarks = new LinkedHashMap<>();
+		benchmarks.put("ceg.layered.small", () -> new GenerationBenchmark(
+				SyntheticModels.createLayeredCEG(6, 2, 4, 0, 0, 1), CEGTestCaseGenerator::new));
+		benchmarks.put("ceg.layered.medium", () -> new GenerationBenchmark(
+				SyntheticModels.createLayeredCEG(8, 3, 6, 0, 0, 1), CEGTestCaseGenerator::new));
+		benchmarks.put("ceg.negated.small", () -> new GenerationBenchmark(
+				SyntheticModels.createLayeredCEG(6, 2, 4, 0.3, 0, 1), CEGTestCaseGenerator::new));
+		benchmarks.put("ceg.contradictory.medium", () -> new GenerationBenchmark(
+				SyntheticModels.createLayeredCEG(8, 3, 6, 0.3, 0.2, 1), CEGTestCaseGenerator::new));
+		benchmarks.put("process.branching.small", () -> new GenerationBenchmark(
+				SyntheticModels.createBranchingProcess(40, 3, 0.5, 10, 1), ProcessTestCaseGenerator::new));
+		benchmarks.put("process.branching.medium", () -> new GenerationBenchmark(
+				SyntheticModels.createBranchingProcess(80, 3, 0.5, 10, 1), ProcessTestCaseGenerator::new));
+		return benchmarks;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int warmupSeconds = 5;
+		int measurementSeconds = 10;
+		Pattern pattern = Pattern.compile(".*");
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-w") && i + 1 < args.length) {
+				warmupSeconds = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-t") && i + 1 < args.length) {
+				measurementSeconds = Integer.parseInt(args[++i]);
+			} else {
+				pattern = Pattern.compile(args[i]);
+			}
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmupSeconds, measurementSeconds);
+		System.out.println(String.format("%-28s %10s %10s %10s %10s %14s %12s", "Benchmark", "ops", "ops/s",
+				"p50 ms", "p99 ms", "alloc B/op", "alloc MB/s"));
+		for (Map.Entry<String, Supplier<IBenchmark>> entry : getBenchmarks().entrySet()) {
+			if (!pattern.matcher(entry.getKey()).find()) {
+				continue;
+			}
+			Result result = runner.run(entry.getValue().get());
+			System.out.println(String.format("%-28s %10d %10.2f %10.3f %10.3f %14.0f %12.1f", entry.getKey(),
+					result.getOperations(), result.getOperationsPerSecond(), result.getLatencyPercentile(50),
+					result.getLatencyPercentile(99), result.getAllocatedBytesPerOperation(),
+					result.getAllocationRate()));
+		}
+	}
+}
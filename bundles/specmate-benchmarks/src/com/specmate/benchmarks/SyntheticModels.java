@@ -0,0 +1,201 @@
+package com.specmate.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.specmate.model.base.IModelConnection;
+import com.specmate.model.base.IModelNode;
+import com.specmate.model.processes.Process;
+import com.specmate.model.processes.ProcessConnection;
+import com.specmate.model.processes.ProcessDecision;
+import com.specmate.model.processes.ProcessEnd;
+import com.specmate.model.processes.ProcessStart;
+import com.specmate.model.processes.ProcessStep;
+import com.specmate.model.processes.ProcessesFactory;
+import com.specmate.model.requirements.CEGConnection;
+import com.specmate.model.requirements.CEGModel;
+import com.specmate.model.requirements.CEGNode;
+import com.specmate.model.requirements.NodeType;
+import com.specmate.model.requirements.RequirementsFactory;
+
+/**
+ * Creates in-memory models of a given size and shape. The models are
+ * generated from a seed, hence the same parameters always yield the same
+ * model.
+ */
+public class SyntheticModels {
+
+	/**
+	 * Creates a layered CEG model. Each node of a layer is an AND or OR node
+	 * with up to three causes, one of them from the previous layer and the
+	 * others from any earlier layer.
+	 *
+	 * @param inputs
+	 *            the number of cause nodes
+	 * @param layers
+	 *            the number of layers above the causes, the last layer holds
+	 *            the effects
+	 * @param width
+	 *            the number of nodes per layer
+	 * @param negationRate
+	 *            the probability that a connection is negated
+	 * @param sharedVariableRate
+	 *            the probability that a node uses one of two shared
+	 *            variables. Nodes with the same variable but a different
+	 *            condition contradict each other and lead to inconsistent
+	 *            test cases.
+	 * @param seed
+	 *            the seed for the random choices
+	 */
+	public static CEGModel createLayeredCEG(int inputs, int layers, int width, double negationRate,
+			double sharedVariableRate, long seed) {
+		Random random = new Random(seed);
+		CEGModel model = RequirementsFactory.eINSTANCE.createCEGModel();
+		model.setId("ceg");
+		model.setName("ceg");
+
+		List<CEGNode> allNodes = new ArrayList<>();
+		List<CEGNode> previousLayer = new ArrayList<>();
+		for (int i = 0; i < inputs; i++) {
+			CEGNode node = createCEGNode(model, "input" + i, NodeType.AND, sharedVariableRate, random);
+			previousLayer.add(node);
+			allNodes.add(node);
+		}
+		for (int layer = 0; layer < layers; layer++) {
+			List<CEGNode> currentLayer = new ArrayList<>();
+			for (int i = 0; i < width; i++) {
+				NodeType type = random.nextBoolean() ? NodeType.AND : NodeType.OR;
+				CEGNode node = createCEGNode(model, "layer" + layer + "_" + i, type, sharedVariableRate, random);
+				Set<CEGNode> causes = new LinkedHashSet<>();
+				causes.add(previousLayer.get(random.nextInt(previousLayer.size())));
+				int causeCount = 1 + random.nextInt(Math.min(3, allNodes.size()));
+				while (causes.size() < causeCount) {
+					causes.add(allNodes.get(random.nextInt(allNodes.size())));
+				}
+				for (CEGNode cause : causes) {
+					CEGConnection connection = RequirementsFactory.eINSTANCE.createCEGConnection();
+					setIdAndName(connection, model.getContents().size());
+					connection.setSource(cause);
+					connection.setTarget(node);
+					connection.setNegate(random.nextDouble() < negationRate);
+					model.getContents().add(connection);
+				}
+				currentLayer.add(node);
+			}
+			allNodes.addAll(currentLayer);
+			previousLayer = currentLayer;
+		}
+		return model;
+	}
+
+	private static CEGNode createCEGNode(CEGModel model, String variable, NodeType type, double sharedVariableRate,
+			Random random) {
+		CEGNode node = RequirementsFactory.eINSTANCE.createCEGNode();
+		setIdAndName(node, model.getContents().size());
+		if (random.nextDouble() < sharedVariableRate) {
+			node.setVariable("shared" + random.nextInt(2));
+		} else {
+			node.setVariable(variable);
+		}
+		node.setCondition("condition" + random.nextInt(3));
+		node.setType(type);
+		model.getContents().add(node);
+		return node;
+	}
+
+	/**
+	 * Creates a process that consists of a chain of steps and decisions. Each
+	 * decision has two or three outgoing connections, one to the next node of
+	 * the chain and the others to a random end node or to one of the next
+	 * <code>jumpWidth</code> nodes of the chain.
+	 *
+	 * @param size
+	 *            the number of nodes in the chain including the start node
+	 * @param ends
+	 *            the number of end nodes
+	 * @param decisionRate
+	 *            the probability that a node of the chain is a decision
+	 * @param jumpWidth
+	 *            the maximal number of nodes a decision may skip
+	 * @param seed
+	 *            the seed for the random choices
+	 */
+	public static Process createBranchingProcess(int size, int ends, double decisionRate, int jumpWidth, long seed) {
+		Random random = new Random(seed);
+		ProcessesFactory factory = ProcessesFactory.eINSTANCE;
+		Process process = factory.createProcess();
+		process.setId("process");
+		process.setName("process");
+
+		List<IModelNode> chain = new ArrayList<>();
+		ProcessStart start = factory.createProcessStart();
+		setIdAndName(start, process.getContents().size());
+		process.getContents().add(start);
+		chain.add(start);
+		for (int i = 1; i < size; i++) {
+			IModelNode node;
+			if (random.nextDouble() < decisionRate) {
+				node = factory.createProcessDecision();
+			} else {
+				ProcessStep step = factory.createProcessStep();
+				step.setExpectedOutcome("outcome" + i);
+				node = step;
+			}
+			setIdAndName(node, process.getContents().size());
+			process.getContents().add(node);
+			chain.add(node);
+		}
+		List<ProcessEnd> endNodes = new ArrayList<>();
+		for (int i = 0; i < ends; i++) {
+			ProcessEnd end = factory.createProcessEnd();
+			setIdAndName(end, process.getContents().size());
+			process.getContents().add(end);
+			endNodes.add(end);
+		}
+
+		for (int i = 0; i < size; i++) {
+			IModelNode node = chain.get(i);
+			IModelNode next = i + 1 < size ? chain.get(i + 1) : endNodes.get(0);
+			if (node instanceof ProcessDecision) {
+				int branches = 2 + random.nextInt(2);
+				for (int j = 0; j < branches; j++) {
+					IModelNode target;
+					if (j == 0) {
+						target = next;
+					} else if (random.nextInt(4) == 0 || i + 2 >= size) {
+						target = endNodes.get(random.nextInt(ends));
+					} else {
+						target = chain.get(i + 2 + random.nextInt(Math.min(jumpWidth, size - i - 2)));
+					}
+					createProcessConnection(process, node, target, "decision" + i + "_" + j);
+				}
+			} else {
+				createProcessConnection(process, node, next, "");
+			}
+		}
+		return process;
+	}
+
+	private static void createProcessConnection(Process process, IModelNode source, IModelNode target,
+			String condition) {
+		ProcessConnection connection = ProcessesFactory.eINSTANCE.createProcessConnection();
+		setIdAndName(connection, process.getContents().size());
+		connection.setSource(source);
+		connection.setTarget(target);
+		connection.setCondition(condition);
+		process.getContents().add(connection);
+	}
+
+	private static void setIdAndName(IModelNode node, int index) {
+		node.setId("node" + index);
+		node.setName("node" + index);
+	}
+
+	private static void setIdAndName(IModelConnection connection, int index) {
+		connection.setId("connection" + index);
+		connection.setName("connection" + index);
+	}
+}
@@ -14,6 +14,13 @@ public interface IRestService extends Comparable<IRestService> {
 
 	RestResult<?> get(Object object, MultivaluedMap<String, String> queryParams, String token) throws SpecmateException;
 
+	/**
+	 * Returns <code>true</code> if a GET of this service changes the object,
+	 * e.g. to refresh it from an external system. Other GETs are performed on
+	 * a read-only view.
+	 */
+	boolean isModifyingGet();
+
 	boolean canPost(Object object2, Object object);
 
 	RestResult<?> post(Object object2, Object object, String token)
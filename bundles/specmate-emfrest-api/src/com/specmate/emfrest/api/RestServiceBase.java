@@ -37,6 +37,16 @@ public abstract class RestServiceBase implements IRestService {
 		return null;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.specmate.emfrest.api.IRestService#isModifyingGet()
+	 */
+	@Override
+	public boolean isModifyingGet() {
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -2,6 +2,7 @@ package com.specmate.emfrest.internal;
 
 import org.glassfish.hk2.api.PerThread;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.process.internal.RequestScoped;
 import org.glassfish.jersey.servlet.ServletContainer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
@@ -17,6 +18,7 @@ import com.specmate.common.ISerializationConfiguration;
 import com.specmate.metrics.IMetricsService;
 import com.specmate.persistency.IPersistencyService;
 import com.specmate.persistency.ITransaction;
+import com.specmate.persistency.IView;
 import com.specmate.urihandler.IObjectResolver;
 import com.specmate.urihandler.IURIFactory;
 
@@ -54,6 +56,8 @@ public class EmfRestServletDeployer {
 				bind(metricsService).to(IMetricsService.class);
 				bindFactory(new TransactionFactory(persistencyService, logService)).to(ITransaction.class)
 						.in(PerThread.class).proxy(true);
+				bindFactory(new ViewFactory(persistencyService, logService)).to(IView.class)
+						.in(RequestScoped.class).proxy(true);
 
 			}
 		});
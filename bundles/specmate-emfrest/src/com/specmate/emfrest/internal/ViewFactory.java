@@ -0,0 +1,40 @@
+package com.specmate.emfrest.internal;
+
+import org.glassfish.hk2.api.Factory;
+import org.glassfish.jersey.process.internal.RequestScoped;
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.persistency.IPersistencyService;
+import com.specmate.persistency.IView;
+
+/**
+ * Provides a read-only view for a request. The view is borrowed from the pool
+ * of the persistency service and returned at the end of the request.
+ */
+public class ViewFactory implements Factory<IView> {
+
+	private IPersistencyService persistencyService;
+	private LogService logService;
+
+	public ViewFactory(IPersistencyService persistencyService, LogService logService) {
+		this.persistencyService = persistencyService;
+		this.logService = logService;
+	}
+
+	@Override
+	public void dispose(IView view) {
+		view.close();
+	}
+
+	@RequestScoped
+	@Override
+	public IView provide() {
+		try {
+			return persistencyService.borrowView();
+		} catch (SpecmateException e) {
+			logService.log(LogService.LOG_ERROR, "View factory could not borrow a view", e);
+			return null;
+		}
+	}
+}
@@ -4,15 +4,19 @@ import java.util.List;
 
 import javax.inject.Inject;
 import javax.servlet.ServletContext;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.Path;
 import javax.ws.rs.container.ResourceContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.log.LogService;
 
 import com.specmate.persistency.ITransaction;
+import com.specmate.persistency.IView;
 import com.specmate.urihandler.IURIFactory;
 
 /**
@@ -27,6 +31,10 @@ public class RootResource extends SpecmateResource {
 	@Inject
 	ITransaction transaction;
 
+	/** The read-only view to retrieve objects for GET requests */
+	@Inject
+	IView view;
+
 	/** The OSGi logging service */
 	@Inject
 	LogService logService;
@@ -47,14 +55,31 @@ public class RootResource extends SpecmateResource {
 	@Context
 	ResourceContext resourceContext;
 
+	/** The current request */
+	@Context
+	Request request;
+
 	/** Returns all direct children of the transaction's (EMF) resource */
 	@Override
 	protected List<EObject> doGetChildren() {
-		return transaction.getResource().getContents();
+		return getResource().getContents();
 	}
 
 	@Override
 	Object getResourceObject() {
+		return getResource();
+	}
+
+	/**
+	 * Returns the resource of the read-only view for reading requests, which
+	 * avoids opening a transaction, and the resource of the transaction
+	 * otherwise.
+	 */
+	private Resource getResource() {
+		String method = request.getMethod();
+		if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+			return view.getResource();
+		}
 		return transaction.getResource();
 	}
 
@@ -22,6 +22,7 @@ import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.osgi.service.log.LogService;
 
 import com.specmate.administration.api.IStatusService;
@@ -74,7 +75,9 @@ public abstract class SpecmateResource {
 			@Context HttpHeaders headers) {
 
 		return handleRequest(serviceName, s -> s.canGet(getResourceObject()),
-				s -> s.get(getResourceObject(), uriInfo.getQueryParameters(), getAuthenticationToken(headers)), false);
+				s -> s.get(s.isModifyingGet() ? toTransactionObject(getResourceObject()) : getResourceObject(),
+						uriInfo.getQueryParameters(), getAuthenticationToken(headers)),
+				false);
 
 	}
 
@@ -131,6 +134,19 @@ public abstract class SpecmateResource {
 		return AuthorizationHeader.extractTokenFrom(authorizationHeader);
 	}
 
+	/**
+	 * Resolves an object of the read-only view in the transaction, for
+	 * services that change the object on a GET.
+	 */
+	private Object toTransactionObject(Object object) {
+		if (object instanceof Resource) {
+			return transaction.getResource();
+		} else if (object instanceof EObject) {
+			return transaction.getObjectById(SpecmateEcoreUtil.getUniqueId((EObject) object));
+		}
+		return object;
+	}
+
 	private Object handleRequest(String serviceName, RestServiceChecker checkRestService,
 			RestServiceExcecutor<?> executeRestService, boolean commitTransaction) {
 		SortedSet<IRestService> services = serviceProvider.getAllRestServices(serviceName);
@@ -159,6 +175,7 @@ public abstract class SpecmateResource {
 				try {
 
 					RestResult<?> result;
+					boolean usesTransaction = commitTransaction || service.isModifyingGet();
 
 					try {
 						if (commitTransaction) {
@@ -169,11 +186,15 @@ public abstract class SpecmateResource {
 							return result.getResponse();
 						}
 					} catch (SpecmateValidationException e) {
-						transaction.rollback();
+						if (usesTransaction) {
+							transaction.rollback();
+						}
 						logService.log(LogService.LOG_ERROR, e.getLocalizedMessage());
 						return Response.status(Status.BAD_REQUEST).build();
 					} catch (SpecmateException e) {
-						transaction.rollback();
+						if (usesTransaction) {
+							transaction.rollback();
+						}
 						logService.log(LogService.LOG_ERROR, e.getLocalizedMessage());
 						return Response.status(Status.INTERNAL_SERVER_ERROR).build();
 					}
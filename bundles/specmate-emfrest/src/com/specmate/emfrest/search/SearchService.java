@@ -9,6 +9,8 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import org.eclipse.emf.ecore.EObject;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -22,10 +24,33 @@ import com.specmate.emfrest.api.RestServiceBase;
 import com.specmate.model.support.util.SpecmateEcoreUtil;
 import com.specmate.rest.RestResult;
 import com.specmate.search.api.IModelSearchService;
+import com.specmate.search.api.SearchHit;
+import com.specmate.search.api.SearchPage;
 
+/**
+ * Service for searching the model objects of a project. By default, the
+ * found objects are returned. With the query parameter
+ * <code>projection</code>, hits with the stored fields of the index are
+ * returned page by page instead, without loading the objects. The parameter
+ * <code>pageSize</code> limits the hits per page, the parameter
+ * <code>cursor</code> requests the page after the one that returned the
+ * cursor.
+ */
 @Component(immediate = true, service = IRestService.class)
 public class SearchService extends RestServiceBase {
 
+	/** Query parameter to request hits instead of objects */
+	private static final String PROJECTION_PARAM = "projection";
+
+	/** Query parameter for the number of hits per page */
+	private static final String PAGE_SIZE_PARAM = "pageSize";
+
+	/** Query parameter for the cursor of the previous page */
+	private static final String CURSOR_PARAM = "cursor";
+
+	/** The number of hits per page if no page size is given */
+	private static final int DEFAULT_PAGE_SIZE = 20;
+
 	private LogService logService;
 	private IModelSearchService searchService;
 
@@ -51,9 +76,12 @@ public class SearchService extends RestServiceBase {
 		if (queryString == null) {
 			throw new SpecmateException("Missing parameter: query");
 		}
+		String project = SpecmateEcoreUtil.getProjectId((EObject) target);
+		if (queryParams.containsKey(PROJECTION_PARAM)) {
+			return searchHits(queryString, project, queryParams);
+		}
 		Set<EObject> searchResult;
 		try {
-			String project = SpecmateEcoreUtil.getProjectId((EObject) target);
 			searchResult = this.searchService.search(queryString, project);
 		} catch (SpecmateInvalidQueryException e) {
 			// Act robust against wrong query syntax
@@ -62,6 +90,50 @@ public class SearchService extends RestServiceBase {
 		return new RestResult<>(Response.Status.OK, new ArrayList<>(searchResult));
 	}
 
+	/** Returns a page of search hits as JSON */
+	private RestResult<?> searchHits(String queryString, String project, MultivaluedMap<String, String> queryParams)
+			throws SpecmateException {
+		int pageSize = DEFAULT_PAGE_SIZE;
+		String pageSizeString = queryParams.getFirst(PAGE_SIZE_PARAM);
+		if (pageSizeString != null) {
+			try {
+				pageSize = Integer.parseInt(pageSizeString);
+			} catch (NumberFormatException e) {
+				throw new SpecmateException("Invalid parameter: " + PAGE_SIZE_PARAM);
+			}
+		}
+		SearchPage page;
+		try {
+			page = this.searchService.searchHits(queryString, project, pageSize, queryParams.getFirst(CURSOR_PARAM));
+		} catch (SpecmateInvalidQueryException e) {
+			// Act robust against wrong query syntax
+			page = new SearchPage(Collections.emptyList(), 0, null);
+		}
+		return new RestResult<>(Response.Status.OK, toJson(page));
+	}
+
+	/** Creates the JSON representation of a page of search hits */
+	private String toJson(SearchPage page) {
+		JSONArray hits = new JSONArray();
+		for (SearchHit hit : page.getHits()) {
+			JSONObject json = new JSONObject();
+			json.put("id", hit.getId());
+			json.put("url", hit.getUrl());
+			json.put("className", hit.getClassName());
+			json.put("name", hit.getName());
+			json.put("snippet", hit.getSnippet());
+			json.put("score", hit.getScore());
+			hits.put(json);
+		}
+		JSONObject json = new JSONObject();
+		json.put("hits", hits);
+		json.put("totalHits", page.getTotalHits());
+		if (page.getCursor() != null) {
+			json.put("cursor", page.getCursor());
+		}
+		return json.toString();
+	}
+
 	@Reference
 	public void setLogService(LogService logService) {
 		this.logService = logService;
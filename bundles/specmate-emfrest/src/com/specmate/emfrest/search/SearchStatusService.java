@@ -0,0 +1,47 @@
+package com.specmate.emfrest.search;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.emfrest.api.IRestService;
+import com.specmate.emfrest.api.RestServiceBase;
+import com.specmate.rest.RestResult;
+import com.specmate.search.api.IModelSearchService;
+
+/**
+ * Service for retrieving the status of the full-text search: the backlog of
+ * the indexing, the size of the index and the latencies of the searches per
+ * project. The same values are exported as metrics.
+ */
+@Component(immediate = true, service = IRestService.class)
+public class SearchStatusService extends RestServiceBase {
+
+	private IModelSearchService searchService;
+
+	@Override
+	public String getServiceName() {
+		return "searchstatus";
+	}
+
+	@Override
+	public boolean canGet(Object target) {
+		return target instanceof Resource;
+	}
+
+	@Override
+	public RestResult<?> get(Object target, MultivaluedMap<String, String> queryParams, String token)
+			throws SpecmateException {
+		return new RestResult<>(Response.Status.OK, this.searchService.getStatus());
+	}
+
+	@Reference
+	public void setSearchService(IModelSearchService searchService) {
+		this.searchService = searchService;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.specmate.emfrest.search;
+
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.emfrest.api.IRestService;
+import com.specmate.emfrest.api.RestServiceBase;
+import com.specmate.model.requirements.Requirement;
+import com.specmate.model.support.util.SpecmateEcoreUtil;
+import com.specmate.rest.RestResult;
+import com.specmate.search.api.IModelSearchService;
+import com.specmate.search.api.SearchHit;
+
+/**
+ * Service for finding near-duplicates of a requirement in its project, e.g.
+ * stories that have been imported several times with small changes. In
+ * contrast to {@link RelatedRequirementsService}, the requirements are found
+ * by their text in the search index. The parameter <code>count</code> limits
+ * the number of hits.
+ */
+@Component(immediate = true, service = IRestService.class)
+public class SimilarRequirementsService extends RestServiceBase {
+
+	/** Query parameter for the number of hits */
+	private static final String COUNT_PARAM = "count";
+
+	/** The number of hits if no count is given */
+	private static final int DEFAULT_COUNT = 10;
+
+	private IModelSearchService searchService;
+
+	@Override
+	public String getServiceName() {
+		return "similar";
+	}
+
+	@Override
+	public boolean canGet(Object target) {
+		return target instanceof Requirement;
+	}
+
+	@Override
+	public RestResult<?> get(Object target, MultivaluedMap<String, String> queryParams, String token)
+			throws SpecmateException {
+		int count = DEFAULT_COUNT;
+		String countString = queryParams.getFirst(COUNT_PARAM);
+		if (countString != null) {
+			try {
+				count = Integer.parseInt(countString);
+			} catch (NumberFormatException e) {
+				throw new SpecmateException("Invalid parameter: " + COUNT_PARAM);
+			}
+		}
+		Requirement requirement = (Requirement) target;
+		List<SearchHit> hits = this.searchService.findSimilar(SpecmateEcoreUtil.getUniqueId(requirement),
+				SpecmateEcoreUtil.getProjectId(requirement), count);
+		return new RestResult<>(Response.Status.OK, toJson(hits));
+	}
+
+	/** Creates the JSON representation of the similar requirements */
+	private String toJson(List<SearchHit> hits) {
+		JSONArray json = new JSONArray();
+		for (SearchHit hit : hits) {
+			JSONObject jsonHit = new JSONObject();
+			jsonHit.put("id", hit.getId());
+			jsonHit.put("url", hit.getUrl());
+			jsonHit.put("className", hit.getClassName());
+			jsonHit.put("name", hit.getName());
+			jsonHit.put("snippet", hit.getSnippet());
+			jsonHit.put("similarity", hit.getScore());
+			json.put(jsonHit);
+		}
+		return json.toString();
+	}
+
+	@Reference
+	public void setSearchService(IModelSearchService searchService) {
+		this.searchService = searchService;
+	}
+
+}
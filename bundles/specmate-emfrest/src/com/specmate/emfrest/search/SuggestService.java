@@ -0,0 +1,90 @@
+package com.specmate.emfrest.search;
+
+import java.util.List;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.emf.ecore.EObject;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.emfrest.api.IRestService;
+import com.specmate.emfrest.api.RestServiceBase;
+import com.specmate.model.support.util.SpecmateEcoreUtil;
+import com.specmate.rest.RestResult;
+import com.specmate.search.api.IModelSearchService;
+import com.specmate.search.api.Suggestion;
+
+/**
+ * Service for completing a search query while it is typed. Returns the
+ * requirements and models of a project whose name or external id matches the
+ * prefix given by the query parameter <code>query</code>. The parameter
+ * <code>count</code> limits the number of suggestions.
+ */
+@Component(immediate = true, service = IRestService.class)
+public class SuggestService extends RestServiceBase {
+
+	/** Query parameter for the number of suggestions */
+	private static final String COUNT_PARAM = "count";
+
+	/** The number of suggestions if no count is given */
+	private static final int DEFAULT_COUNT = 10;
+
+	private IModelSearchService searchService;
+
+	@Override
+	public String getServiceName() {
+		return "suggest";
+	}
+
+	@Override
+	public boolean canGet(Object target) {
+		return (target instanceof EObject) && SpecmateEcoreUtil.isProject((EObject) target);
+	}
+
+	@Override
+	public RestResult<?> get(Object target, MultivaluedMap<String, String> queryParams, String token)
+			throws SpecmateException {
+		String prefix = queryParams.getFirst("query");
+		if (prefix == null) {
+			throw new SpecmateException("Missing parameter: query");
+		}
+		int count = DEFAULT_COUNT;
+		String countString = queryParams.getFirst(COUNT_PARAM);
+		if (countString != null) {
+			try {
+				count = Integer.parseInt(countString);
+			} catch (NumberFormatException e) {
+				throw new SpecmateException("Invalid parameter: " + COUNT_PARAM);
+			}
+		}
+		String project = SpecmateEcoreUtil.getProjectId((EObject) target);
+		List<Suggestion> suggestions = this.searchService.suggest(prefix, project, count);
+		return new RestResult<>(Response.Status.OK, toJson(suggestions));
+	}
+
+	/** Creates the JSON representation of the suggestions */
+	private String toJson(List<Suggestion> suggestions) {
+		JSONArray json = new JSONArray();
+		for (Suggestion suggestion : suggestions) {
+			JSONObject jsonSuggestion = new JSONObject();
+			jsonSuggestion.put("text", suggestion.getText());
+			jsonSuggestion.put("id", suggestion.getId());
+			jsonSuggestion.put("url", suggestion.getUrl());
+			jsonSuggestion.put("className", suggestion.getClassName());
+			jsonSuggestion.put("name", suggestion.getName());
+			json.put(jsonSuggestion);
+		}
+		return json.toString();
+	}
+
+	@Reference
+	public void setSearchService(IModelSearchService searchService) {
+		this.searchService = searchService;
+	}
+
+}
@@ -105,6 +105,12 @@ public class HPConnector extends DetailsService implements IRequirementsSource,
 		return false;
 	}
 
+	/** The GET refreshes the requirement from the HP server */
+	@Override
+	public boolean isModifyingGet() {
+		return true;
+	}
+
 	@Override
 	public boolean canPut(Object target, Object object) {
 		return false;
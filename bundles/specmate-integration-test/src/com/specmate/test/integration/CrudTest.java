@@ -190,6 +190,26 @@ public class CrudTest extends EmfRestTest {
 		Assert.assertTrue(EmfRestTestUtil.compare(folder, retrievedFolder, true));
 	}
 
+	/**
+	 * Tests retrieving an object right after each update. Reads are served by
+	 * pooled views, checks that each read returns the value of the preceding
+	 * update.
+	 */
+	@Test
+	public void testUpdateAndRetrieveImmediately() {
+		JSONObject folder = postFolderToRoot();
+		String folderName = getId(folder);
+
+		for (int i = 0; i < 10; i++) {
+			String name = "Name " + i;
+			folder.put(BasePackage.Literals.INAMED__NAME.getName(), name);
+			updateObject(folder, folderName);
+
+			JSONObject retrievedFolder = getObject(folderName);
+			Assert.assertEquals(name, retrievedFolder.getString(BasePackage.Literals.INAMED__NAME.getName()));
+		}
+	}
+
 	@Test
 	public void testPostCEGToRequirement() {
 		JSONObject requirement = postRequirementToRoot();
@@ -436,6 +456,91 @@ public class CrudTest extends EmfRestTest {
 		Assert.assertEquals(4, retrievedTestChilds.length());
 	}
 
+	@Test
+	public void testGenerateTestsJob() throws InterruptedException {
+		JSONObject requirement = postRequirementToRoot();
+		String requirementId = getId(requirement);
+
+		// Post ceg model
+		JSONObject cegModel = postCEG(requirementId);
+		String cegId = getId(cegModel);
+
+		// post nodes and connection
+		JSONObject cegNode1 = postCEGNode(requirementId, cegId);
+		JSONObject retrievedCegNode1 = getObject(requirementId, cegId, getId(cegNode1));
+		JSONObject cegNode2 = postCEGNode(requirementId, cegId);
+		JSONObject retrievedCegNode2 = getObject(requirementId, cegId, getId(cegNode2));
+		postCEGConnection(retrievedCegNode1, retrievedCegNode2, false, requirementId, cegId);
+
+		// Post test specification
+		JSONObject testSpec = postTestSpecification(requirementId, cegId);
+		String testSpecId = getId(testSpec);
+
+		// Start generation job
+		String jobUrl = buildUrl("generateTestsJob", requirementId, cegId, testSpecId);
+		RestResult<JSONObject> result = restClient.post(jobUrl, null);
+		Assert.assertEquals(Status.ACCEPTED.getStatusCode(), result.getResponse().getStatus());
+
+		// Wait for the job to finish
+		String state = null;
+		for (int i = 0; i < 50 && !"FINISHED".equals(state); i++) {
+			Thread.sleep(200);
+			RestResult<JSONObject> jobResult = restClient.get(jobUrl);
+			Assert.assertEquals(Status.OK.getStatusCode(), jobResult.getResponse().getStatus());
+			state = jobResult.getPayload().getString("state");
+		}
+		Assert.assertEquals("FINISHED", state);
+
+		String retrieveUrl = listUrl(requirementId, cegId, testSpecId);
+		RestResult<JSONArray> getResult = restClient.getList(retrieveUrl);
+
+		// Expect 4 children: two test cases and two test parameters
+		Assert.assertEquals(4, getResult.getPayload().length());
+	}
+
+	/**
+	 * Generates test cases for a process with a connection to a node of another
+	 * process. Checks that the connection is ignored.
+	 */
+	@Test
+	public void testGenerateTestsWithDanglingConnection() {
+		JSONObject requirement = postRequirementToRoot();
+		String requirementId = getId(requirement);
+
+		// post process start -> step -> end
+		JSONObject processModel = postProcess(requirementId);
+		String processId = getId(processModel);
+		JSONObject startNode = postStartNode(requirementId, processId);
+		JSONObject retrievedStartNode = getObject(requirementId, processId, getId(startNode));
+		JSONObject stepNode = postStepNode(requirementId, processId);
+		JSONObject retrievedStepNode = getObject(requirementId, processId, getId(stepNode));
+		JSONObject endNode = postEndNode(requirementId, processId);
+		JSONObject retrievedEndNode = getObject(requirementId, processId, getId(endNode));
+		postStepConnection(retrievedStartNode, retrievedStepNode, requirementId, processId);
+		postStepConnection(retrievedStepNode, retrievedEndNode, requirementId, processId);
+
+		// post connection from the step to a node of another process
+		JSONObject otherProcessModel = postProcess(requirementId);
+		String otherProcessId = getId(otherProcessModel);
+		JSONObject otherStepNode = postStepNode(requirementId, otherProcessId);
+		JSONObject retrievedOtherStepNode = getObject(requirementId, otherProcessId, getId(otherStepNode));
+		postStepConnection(retrievedStepNode, retrievedOtherStepNode, requirementId, processId);
+
+		// Post test specification
+		JSONObject testSpec = postTestSpecification(requirementId, processId);
+		String testSpecId = getId(testSpec);
+
+		// Generate test cases
+		String generateUrl = buildUrl("generateTests", requirementId, processId, testSpecId);
+		RestResult<JSONObject> result = restClient.post(generateUrl, null);
+		Assert.assertEquals(Status.NO_CONTENT.getStatusCode(), result.getResponse().getStatus());
+
+		// Expect one test case for the single path from start to end
+		String retrieveUrl = listUrl(requirementId, processId, testSpecId);
+		RestResult<JSONArray> getResult = restClient.getList(retrieveUrl);
+		Assert.assertEquals(1, getResult.getPayload().length());
+	}
+
 	/**
 	 * Generates a model with contradictory constraints and trys to generate test
 	 * cases.
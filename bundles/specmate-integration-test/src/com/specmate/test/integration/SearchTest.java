@@ -2,8 +2,12 @@ package com.specmate.test.integration;
 
 import static com.specmate.test.integration.EmfRestTestUtil.matches;
 
+import java.util.ArrayList;
 import java.util.Dictionary;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
 
 import javax.ws.rs.core.Response.Status;
 
@@ -17,11 +21,16 @@ import org.osgi.util.tracker.ServiceTracker;
 import com.specmate.common.OSGiUtil;
 import com.specmate.common.SpecmateException;
 import com.specmate.model.base.BasePackage;
+import com.specmate.model.requirements.RequirementsPackage;
 import com.specmate.rest.RestResult;
 import com.specmate.search.api.IModelSearchService;
 import com.specmate.search.config.LuceneBasedSearchServiceConfig;
 
 public class SearchTest extends EmfRestTest {
+
+	/** The delay of the update of a parent after a change of its children */
+	private static final int PARENT_DELAY_MILLIS = 100;
+
 	private static IModelSearchService searchService;
 
 	public SearchTest() throws Exception {
@@ -44,6 +53,7 @@ public class SearchTest extends EmfRestTest {
 		properties.put(LuceneBasedSearchServiceConfig.KEY_ALLOWED_FIELDS, "extId, type, name, description");
 		properties.put(LuceneBasedSearchServiceConfig.KEY_LUCENE_DB_LOCATION, "./database/lucene");
 		properties.put(LuceneBasedSearchServiceConfig.KEY_MAX_SEARCH_RESULTS, 500);
+		properties.put(LuceneBasedSearchServiceConfig.KEY_INDEX_PARENT_DELAY_MILLIS, PARENT_DELAY_MILLIS);
 		return properties;
 	}
 
@@ -64,6 +74,34 @@ public class SearchTest extends EmfRestTest {
 		return foundObjects;
 	}
 
+	private JSONObject performHitSearch(String project, String query, int pageSize, String cursor) {
+		String searchUrl = buildUrl("search", project);
+		RestResult<JSONObject> result;
+		if (cursor == null) {
+			result = restClient.get(searchUrl, "query", query, "projection", "true", "pageSize",
+					Integer.toString(pageSize));
+		} else {
+			result = restClient.get(searchUrl, "query", query, "projection", "true", "pageSize",
+					Integer.toString(pageSize), "cursor", cursor);
+		}
+		Assert.assertEquals(Status.OK.getStatusCode(), result.getResponse().getStatus());
+		return result.getPayload();
+	}
+
+	private JSONArray performSuggest(String project, String prefix) {
+		String suggestUrl = buildUrl("suggest", project);
+		RestResult<JSONArray> result = restClient.getList(suggestUrl, "query", prefix);
+		Assert.assertEquals(Status.OK.getStatusCode(), result.getResponse().getStatus());
+		return result.getPayload();
+	}
+
+	private JSONObject getSearchStatus() {
+		String statusUrl = buildUrl("searchstatus");
+		RestResult<JSONObject> result = restClient.get(statusUrl);
+		Assert.assertEquals(Status.OK.getStatusCode(), result.getResponse().getStatus());
+		return result.getPayload();
+	}
+
 	private void performReindex() {
 		String reindexUrl = buildUrl("reindex");
 		RestResult<JSONObject> result = restClient.get(reindexUrl);
@@ -86,11 +124,9 @@ public class SearchTest extends EmfRestTest {
 	/**
 	 * Posts two test specifications to a CEG model and checks if they are retrieved
 	 * by the list recursive service.
-	 *
-	 * @throws InterruptedException
 	 */
 	@Test
-	public void testSearch() throws InterruptedException {
+	public void testSearch() {
 		JSONObject projectFolder = createTestFolder();
 		projectFolder.put(BasePackage.Literals.INAMED__NAME.getName(), "Test");
 		projectFolder.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(), "TEST");
@@ -119,9 +155,6 @@ public class SearchTest extends EmfRestTest {
 		cegModel.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(), "CEG");
 		postObject(cegModel, projectFolderId, requirementId);
 
-		// Allow time to commit to search index
-		Thread.sleep(35000);
-
 		// Check if search on name field works
 		JSONArray foundObjects = performSearch(projectFolderId, "blup");
 		Assert.assertEquals(1, foundObjects.length());
@@ -187,7 +220,7 @@ public class SearchTest extends EmfRestTest {
 	}
 
 	@Test
-	public void testSearchScopedOnProject() throws InterruptedException {
+	public void testSearchScopedOnProject() {
 		JSONObject projectFolder1 = createTestFolder();
 		projectFolder1.put(BasePackage.Literals.INAMED__NAME.getName(), "Project1");
 		projectFolder1.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(), "project1");
@@ -212,9 +245,6 @@ public class SearchTest extends EmfRestTest {
 		postObject(requirement2, projectFolderId2);
 		String requirementId2 = getId(requirement2);
 
-		// Allow time to commit to search index
-		Thread.sleep(35000);
-
 		JSONArray foundObjects = performSearch(projectFolderId1, "blup");
 		Assert.assertEquals(1, foundObjects.length());
 		Assert.assertEquals(requirementId1, getId(foundObjects.getJSONObject(0)));
@@ -224,6 +254,392 @@ public class SearchTest extends EmfRestTest {
 		Assert.assertEquals(requirementId2, getId(foundObjects2.getJSONObject(0)));
 	}
 
+	/**
+	 * Posts a CEG node and checks if the CEG model is found by the variable of
+	 * the node, also after the variable has been changed.
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testSearchChildContent() throws InterruptedException {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement = postRequirement(projectFolderId);
+		String requirementId = getId(requirement);
+
+		JSONObject cegModel = postCEG(projectFolderId, requirementId);
+		String cegModelId = getId(cegModel);
+
+		JSONObject cegNode = createTestCegNode();
+		cegNode.put(RequirementsPackage.Literals.CEG_NODE__VARIABLE.getName(), "temperature");
+		postObject(cegNode, projectFolderId, requirementId, cegModelId);
+		String cegNodeId = getId(cegNode);
+
+		// Allow time for the delayed update of the model
+		Thread.sleep(PARENT_DELAY_MILLIS + 500);
+
+		JSONArray foundObjects = performSearch(projectFolderId, "temperature");
+		Assert.assertEquals(1, foundObjects.length());
+		Assert.assertEquals(cegModelId, getId(foundObjects.getJSONObject(0)));
+
+		JSONObject retrievedCegNode = getObject(projectFolderId, requirementId, cegModelId, cegNodeId);
+		retrievedCegNode.put(RequirementsPackage.Literals.CEG_NODE__VARIABLE.getName(), "pressure");
+		updateObject(retrievedCegNode, projectFolderId, requirementId, cegModelId, cegNodeId);
+
+		// Allow time for the delayed update of the model
+		Thread.sleep(PARENT_DELAY_MILLIS + 500);
+
+		foundObjects = performSearch(projectFolderId, "pressure");
+		Assert.assertEquals(1, foundObjects.length());
+		Assert.assertEquals(cegModelId, getId(foundObjects.getJSONObject(0)));
+
+		foundObjects = performSearch(projectFolderId, "temperature");
+		Assert.assertEquals(0, foundObjects.length());
+	}
+
+	/**
+	 * Posts two near-identical requirements and a different one and checks
+	 * that only the near-duplicate is found as similar requirement.
+	 */
+	@Test
+	public void testSimilarRequirements() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement1 = createTestRequirement();
+		requirement1.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(),
+				"As a tester I want to export the test specification to Excel so that I can share it with my team");
+		postObject(requirement1, projectFolderId);
+		String requirementId1 = getId(requirement1);
+
+		JSONObject requirement2 = createTestRequirement();
+		requirement2.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(),
+				"As a tester I want to export the test specification to PDF so that I can share it with my team");
+		postObject(requirement2, projectFolderId);
+		String requirementId2 = getId(requirement2);
+
+		JSONObject requirement3 = createTestRequirement();
+		requirement3.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(),
+				"The login page shows an error message when the password is wrong");
+		postObject(requirement3, projectFolderId);
+
+		String similarUrl = buildUrl("similar", projectFolderId, requirementId1);
+		RestResult<JSONArray> result = restClient.getList(similarUrl);
+		Assert.assertEquals(Status.OK.getStatusCode(), result.getResponse().getStatus());
+		JSONArray similarRequirements = result.getPayload();
+		Assert.assertEquals(1, similarRequirements.length());
+		Assert.assertEquals(requirementId2, getId(similarRequirements.getJSONObject(0)));
+	}
+
+	/**
+	 * Posts and deletes many requirements in quick succession and checks that
+	 * the search sees all changes, i.e. that no change is lost when the
+	 * indexing batches them.
+	 */
+	@Test
+	public void testSearchAfterManyChanges() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		List<String> requirementIds = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			JSONObject requirement = createTestRequirement();
+			requirement.put(BasePackage.Literals.IDESCRIBED__DESCRIPTION.getName(), "bulk requirement " + i);
+			postObject(requirement, projectFolderId);
+			requirementIds.add(getId(requirement));
+		}
+
+		JSONArray foundObjects = performSearch(projectFolderId, "bulk");
+		Assert.assertEquals(20, foundObjects.length());
+
+		for (String requirementId : requirementIds.subList(0, 10)) {
+			deleteObject(projectFolderId, requirementId);
+		}
+
+		foundObjects = performSearch(projectFolderId, "bulk");
+		Assert.assertEquals(10, foundObjects.length());
+		for (String requirementId : requirementIds.subList(10, 20)) {
+			Assert.assertTrue(matches(foundObjects,
+					jsonObject -> jsonObject.get(BasePackage.Literals.IID__ID.getName()).equals(requirementId)));
+		}
+	}
+
+	/**
+	 * Pages through the hits of a search with the returned cursor and checks
+	 * that each hit is returned exactly once and that the last page has no
+	 * cursor.
+	 */
+	@Test
+	public void testSearchHitsPaging() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		Set<String> requirementIds = new HashSet<>();
+		for (int i = 0; i < 5; i++) {
+			JSONObject requirement = createTestRequirement();
+			requirement.put(BasePackage.Literals.INAMED__NAME.getName(), "Paging " + i);
+			postObject(requirement, projectFolderId);
+			requirementIds.add(getId(requirement));
+		}
+
+		JSONObject page = performHitSearch(projectFolderId, "paging", 2, null);
+		Assert.assertEquals(5, page.getInt("totalHits"));
+
+		Set<String> foundIds = new HashSet<>();
+		int pageCount = 1;
+		while (true) {
+			JSONArray hits = page.getJSONArray("hits");
+			Assert.assertTrue(hits.length() <= 2);
+			for (int i = 0; i < hits.length(); i++) {
+				JSONObject hit = hits.getJSONObject(i);
+				Assert.assertTrue(foundIds.add(getId(hit)));
+				Assert.assertEquals("Requirement", hit.getString("className"));
+				Assert.assertTrue(hit.getString("name").startsWith("Paging"));
+			}
+			if (!page.has("cursor")) {
+				break;
+			}
+			page = performHitSearch(projectFolderId, "paging", 2, page.getString("cursor"));
+			pageCount++;
+		}
+		Assert.assertEquals(3, pageCount);
+		Assert.assertEquals(requirementIds, foundIds);
+	}
+
+	/**
+	 * Posts equal requirements to two projects and checks that searches, also
+	 * for all objects of a type, only return the objects of the searched
+	 * project, even after the other project has been changed or deleted.
+	 */
+	@Test
+	public void testSearchHitsScopedOnProject() {
+		JSONObject projectFolder1 = postFolderToRoot();
+		String projectFolderId1 = getId(projectFolder1);
+		JSONObject projectFolder2 = postFolderToRoot();
+		String projectFolderId2 = getId(projectFolder2);
+
+		JSONObject requirement1 = createTestRequirement();
+		requirement1.put(BasePackage.Literals.INAMED__NAME.getName(), "isolated");
+		postObject(requirement1, projectFolderId1);
+		String requirementId1 = getId(requirement1);
+
+		JSONObject requirement2 = createTestRequirement();
+		requirement2.put(BasePackage.Literals.INAMED__NAME.getName(), "isolated");
+		postObject(requirement2, projectFolderId2);
+		String requirementId2 = getId(requirement2);
+
+		JSONObject page = performHitSearch(projectFolderId1, "isolated", 10, null);
+		Assert.assertEquals(1, page.getInt("totalHits"));
+		Assert.assertEquals(requirementId1, getId(page.getJSONArray("hits").getJSONObject(0)));
+
+		JSONArray foundObjects = performSearch(projectFolderId2, "type:Requirement");
+		Assert.assertEquals(1, foundObjects.length());
+		Assert.assertEquals(requirementId2, getId(foundObjects.getJSONObject(0)));
+
+		deleteObject(projectFolderId1, requirementId1);
+		foundObjects = performSearch(projectFolderId1, "isolated");
+		Assert.assertEquals(0, foundObjects.length());
+		foundObjects = performSearch(projectFolderId2, "isolated");
+		Assert.assertEquals(1, foundObjects.length());
+
+		deleteObject(projectFolderId1);
+		page = performHitSearch(projectFolderId2, "isolated", 10, null);
+		Assert.assertEquals(1, page.getInt("totalHits"));
+		Assert.assertEquals(requirementId2, getId(page.getJSONArray("hits").getJSONObject(0)));
+	}
+
+	/**
+	 * Repeats searches, which are answered from the cache, and checks that a
+	 * change of the index replaces the cached results.
+	 */
+	@Test
+	public void testRepeatedSearchAfterChange() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement1 = createTestRequirement();
+		requirement1.put(BasePackage.Literals.INAMED__NAME.getName(), "cached");
+		postObject(requirement1, projectFolderId);
+		String requirementId1 = getId(requirement1);
+
+		for (int i = 0; i < 3; i++) {
+			JSONArray foundObjects = performSearch(projectFolderId, "cached");
+			Assert.assertEquals(1, foundObjects.length());
+			JSONObject page = performHitSearch(projectFolderId, "cached", 10, null);
+			Assert.assertEquals(1, page.getInt("totalHits"));
+		}
+
+		JSONObject requirement2 = createTestRequirement();
+		requirement2.put(BasePackage.Literals.INAMED__NAME.getName(), "cached");
+		postObject(requirement2, projectFolderId);
+
+		JSONArray foundObjects = performSearch(projectFolderId, "cached");
+		Assert.assertEquals(2, foundObjects.length());
+		JSONObject page = performHitSearch(projectFolderId, "cached", 10, null);
+		Assert.assertEquals(2, page.getInt("totalHits"));
+
+		JSONObject retrievedRequirement1 = getObject(projectFolderId, requirementId1);
+		retrievedRequirement1.put(BasePackage.Literals.INAMED__NAME.getName(), "uncached");
+		updateObject(retrievedRequirement1, projectFolderId, requirementId1);
+
+		foundObjects = performSearch(projectFolderId, "cached");
+		Assert.assertEquals(1, foundObjects.length());
+		page = performHitSearch(projectFolderId, "cached", 10, null);
+		Assert.assertEquals(1, page.getInt("totalHits"));
+	}
+
+	/**
+	 * Checks that suggestions match the beginning of any word of a name or the
+	 * beginning of an external id, that matches at the beginning of a name
+	 * come first and that only objects of the project are suggested.
+	 */
+	@Test
+	public void testSuggest() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement1 = createTestRequirement();
+		requirement1.put(BasePackage.Literals.INAMED__NAME.getName(), "Temperature sensor");
+		postObject(requirement1, projectFolderId);
+		String requirementId1 = getId(requirement1);
+
+		JSONObject requirement2 = createTestRequirement();
+		requirement2.put(BasePackage.Literals.INAMED__NAME.getName(), "Sensor calibration");
+		requirement2.put(BasePackage.Literals.IEXTERNAL__EXT_ID.getName(), "REQ-42");
+		postObject(requirement2, projectFolderId);
+		String requirementId2 = getId(requirement2);
+
+		JSONObject cegModel = createTestCegModel();
+		cegModel.put(BasePackage.Literals.INAMED__NAME.getName(), "Heating");
+		postObject(cegModel, projectFolderId, requirementId1);
+		String cegModelId = getId(cegModel);
+
+		JSONObject otherProjectFolder = postFolderToRoot();
+		JSONObject otherRequirement = createTestRequirement();
+		otherRequirement.put(BasePackage.Literals.INAMED__NAME.getName(), "Sensor housing");
+		postObject(otherRequirement, getId(otherProjectFolder));
+
+		JSONArray suggestions = performSuggest(projectFolderId, "sens");
+		Assert.assertEquals(2, suggestions.length());
+		Assert.assertEquals(requirementId2, getId(suggestions.getJSONObject(0)));
+		Assert.assertEquals(requirementId1, getId(suggestions.getJSONObject(1)));
+
+		suggestions = performSuggest(projectFolderId, "req-4");
+		Assert.assertEquals(1, suggestions.length());
+		Assert.assertEquals(requirementId2, getId(suggestions.getJSONObject(0)));
+		Assert.assertEquals("REQ-42", suggestions.getJSONObject(0).getString("text"));
+
+		suggestions = performSuggest(projectFolderId, "HEAT");
+		Assert.assertEquals(1, suggestions.length());
+		Assert.assertEquals(cegModelId, getId(suggestions.getJSONObject(0)));
+		Assert.assertEquals("CEGModel", suggestions.getJSONObject(0).getString("className"));
+
+		suggestions = performSuggest(projectFolderId, "ensor");
+		Assert.assertEquals(0, suggestions.length());
+
+		deleteObject(projectFolderId, requirementId2);
+		suggestions = performSuggest(projectFolderId, "sens");
+		Assert.assertEquals(1, suggestions.length());
+		Assert.assertEquals(requirementId1, getId(suggestions.getJSONObject(0)));
+	}
+
+	/**
+	 * Searches in a project and checks the status of the search: the backlog
+	 * of the indexing, the size of the index and the latencies of the
+	 * searches in the project.
+	 */
+	@Test
+	public void testSearchStatus() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement = createTestRequirement();
+		requirement.put(BasePackage.Literals.INAMED__NAME.getName(), "monitored");
+		postObject(requirement, projectFolderId);
+
+		JSONArray foundObjects = performSearch(projectFolderId, "monitored");
+		Assert.assertEquals(1, foundObjects.length());
+
+		JSONObject status = getSearchStatus();
+		Assert.assertTrue(status.getBoolean("indexingEnabled"));
+		Assert.assertEquals(0, status.getInt("queueDepth"));
+		Assert.assertTrue(status.has("pendingParentUpdates"));
+		Assert.assertTrue(status.has("indexLagMillis"));
+		Assert.assertTrue(status.has("lastCommitMillis"));
+		Assert.assertTrue(status.has("lastRefreshLagMillis"));
+		Assert.assertTrue(status.getLong("documents") >= 1);
+		Assert.assertTrue(status.getLong("sizeBytes") > 0);
+
+		JSONObject projectStatus = status.getJSONObject("projects").getJSONObject(projectFolderId);
+		Assert.assertTrue(projectStatus.getLong("documents") >= 1);
+		Assert.assertTrue(projectStatus.getLong("sizeBytes") > 0);
+		JSONObject latency = projectStatus.getJSONObject("latency");
+		for (String phase : new String[] { "wait", "lucene", "resolve" }) {
+			JSONObject phaseLatency = latency.getJSONObject(phase);
+			Assert.assertEquals(1, phaseLatency.getLong("count"));
+			Assert.assertTrue(phaseLatency.has("meanMillis"));
+			Assert.assertTrue(phaseLatency.has("maxMillis"));
+		}
+	}
+
+	/**
+	 * Searches right after each commit, without waiting, and checks that the
+	 * search sees the change of the commit.
+	 */
+	@Test
+	public void testSearchImmediatelyAfterCommit() {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement = createTestRequirement();
+		requirement.put(BasePackage.Literals.INAMED__NAME.getName(), "gearbox");
+		postObject(requirement, projectFolderId);
+		String requirementId = getId(requirement);
+
+		JSONArray foundObjects = performSearch(projectFolderId, "gearbox");
+		Assert.assertEquals(1, foundObjects.length());
+		Assert.assertEquals(requirementId, getId(foundObjects.getJSONObject(0)));
+
+		JSONObject retrievedRequirement = getObject(projectFolderId, requirementId);
+		retrievedRequirement.put(BasePackage.Literals.INAMED__NAME.getName(), "clutch");
+		updateObject(retrievedRequirement, projectFolderId, requirementId);
+
+		foundObjects = performSearch(projectFolderId, "clutch");
+		Assert.assertEquals(1, foundObjects.length());
+		foundObjects = performSearch(projectFolderId, "gearbox");
+		Assert.assertEquals(0, foundObjects.length());
+
+		deleteObject(projectFolderId, requirementId);
+		foundObjects = performSearch(projectFolderId, "clutch");
+		Assert.assertEquals(0, foundObjects.length());
+	}
+
+	/**
+	 * Restarts the persistency and searches right away, without a commit in
+	 * between. Checks that the search does not wait for commit events, as
+	 * there are none pending.
+	 */
+	@Test
+	public void testSearchAfterRestart() throws SpecmateException, InterruptedException {
+		JSONObject projectFolder = postFolderToRoot();
+		String projectFolderId = getId(projectFolder);
+
+		JSONObject requirement = createTestRequirement();
+		requirement.put(BasePackage.Literals.INAMED__NAME.getName(), "restarted");
+		postObject(requirement, projectFolderId);
+
+		persistency.shutdown();
+		persistency.start();
+
+		Assert.assertTrue(persistency.awaitEventsDelivered(0));
+		long start = System.currentTimeMillis();
+		JSONArray foundObjects = performSearch(projectFolderId, "restarted");
+		long duration = System.currentTimeMillis() - start;
+		Assert.assertEquals(1, foundObjects.length());
+		Assert.assertTrue("Search took " + duration + " ms", duration < 500);
+	}
+
 	@Test
 	public void testReIndexing() throws InterruptedException {
 		this.getSearchService().disableIndexing();
@@ -246,7 +662,7 @@ public class SearchTest extends EmfRestTest {
 
 		getSearchService().enableIndexing();
 		performReindex();
-		Thread.sleep(35000);
+		Thread.sleep(5000);
 
 		// Check if search finds something, hence reindexing worked
 		foundObjects = performSearch(projectId, "blup");
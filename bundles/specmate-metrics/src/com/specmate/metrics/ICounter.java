@@ -4,4 +4,6 @@ public interface ICounter {
 
 	void inc();
 
+	void inc(double amt);
+
 }
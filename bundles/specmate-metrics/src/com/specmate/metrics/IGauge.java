@@ -11,4 +11,6 @@ public interface IGauge {
 	void dec(double amt);
 
 	void inc(double amt);
+
+	void set(double value);
 }
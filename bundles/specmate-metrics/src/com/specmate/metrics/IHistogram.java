@@ -4,4 +4,7 @@ public interface IHistogram {
 
 	ITimer startTimer();
 
+	/** Records a value, e.g. a duration in seconds that was measured elsewhere */
+	void observe(double amt);
+
 }
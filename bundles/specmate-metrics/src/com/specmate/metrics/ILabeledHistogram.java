@@ -0,0 +1,12 @@
+package com.specmate.metrics;
+
+/**
+ * A histogram with a separate distribution for each combination of label
+ * values.
+ */
+public interface ILabeledHistogram {
+
+	/** Returns the histogram for the given label values */
+	IHistogram labels(String... labelValues);
+
+}
@@ -20,6 +20,16 @@ public interface IMetricsService {
 
 	IHistogram createHistogram(String name, String description) throws SpecmateException;
 
+	/**
+	 * Creates a histogram with a separate distribution for each combination
+	 * of label values, e.g. per project. Labels should only be used for values
+	 * with few distinct instances.
+	 *
+	 * @throws SpecmateException
+	 */
+	ILabeledHistogram createLabeledHistogram(String name, String description, String... labelNames)
+			throws SpecmateException;
+
 	ICounter createCounter(String name, String description) throws SpecmateException;
 
 }
@@ -14,6 +14,7 @@ import com.specmate.common.SpecmateException;
 import com.specmate.metrics.ICounter;
 import com.specmate.metrics.IGauge;
 import com.specmate.metrics.IHistogram;
+import com.specmate.metrics.ILabeledHistogram;
 import com.specmate.metrics.IMetricsService;
 
 import io.prometheus.client.Counter;
@@ -98,6 +99,19 @@ public class MetricsServiceImpl implements IMetricsService {
 		return histogram;
 	}
 
+	@Override
+	public ILabeledHistogram createLabeledHistogram(String name, String description, String... labelNames)
+			throws SpecmateException {
+		String theName = getMetricName(name);
+		ILabeledHistogram histogram = checkIfCreated(ILabeledHistogram.class, theName, description);
+		if (histogram == null) {
+			histogram = new PrometheusLabeledHistogramImpl(
+					Histogram.build(theName, description).labelNames(labelNames).register());
+			collectors.put(theName, histogram);
+		}
+		return histogram;
+	}
+
 	@Override
 	public ICounter createCounter(String name, String description) throws SpecmateException {
 		String theName = getMetricName(name);
@@ -17,4 +17,9 @@ public class PrometheusCounterImpl implements ICounter {
 		this.counter.inc();
 	}
 
+	@Override
+	public void inc(double amt) {
+		this.counter.inc(amt);
+	}
+
 }
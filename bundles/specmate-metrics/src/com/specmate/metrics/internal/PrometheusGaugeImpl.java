@@ -33,4 +33,9 @@ public class PrometheusGaugeImpl implements IGauge {
 		prometheusGauge.inc(amt);
 	}
 
+	@Override
+	public void set(double value) {
+		prometheusGauge.set(value);
+	}
+
 }
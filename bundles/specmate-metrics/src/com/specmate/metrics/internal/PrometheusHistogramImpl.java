@@ -18,4 +18,9 @@ public class PrometheusHistogramImpl implements IHistogram {
 		return new PrometheusTimerImpl(histogram.startTimer());
 	}
 
+	@Override
+	public void observe(double amt) {
+		histogram.observe(amt);
+	}
+
 }
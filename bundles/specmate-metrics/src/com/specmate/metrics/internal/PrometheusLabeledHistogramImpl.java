@@ -0,0 +1,34 @@
+package com.specmate.metrics.internal;
+
+import com.specmate.metrics.IHistogram;
+import com.specmate.metrics.ILabeledHistogram;
+import com.specmate.metrics.ITimer;
+
+import io.prometheus.client.Histogram;
+
+/** Implementation of a labeled histogram based on the prometheus client. */
+public class PrometheusLabeledHistogramImpl implements ILabeledHistogram {
+
+	private Histogram histogram;
+
+	public PrometheusLabeledHistogramImpl(Histogram histogram) {
+		this.histogram = histogram;
+	}
+
+	@Override
+	public IHistogram labels(String... labelValues) {
+		Histogram.Child child = histogram.labels(labelValues);
+		return new IHistogram() {
+			@Override
+			public ITimer startTimer() {
+				return new PrometheusTimerImpl(child.startTimer());
+			}
+
+			@Override
+			public void observe(double amt) {
+				child.observe(amt);
+			}
+		};
+	}
+
+}
@@ -31,6 +31,29 @@ public interface IPersistencyService {
 	 */
 	public IView openView() throws SpecmateException;
 
+	/**
+	 * Borrows a read-only view from a bounded pool. The pooled views share the
+	 * revision cache of the session and do not track changes, hence they are
+	 * meant for short reads, e.g. during a request. Closing the view returns
+	 * it to the pool. Waits while all views of the pool are borrowed.
+	 *
+	 * @throws SpecmateException
+	 *             if no view becomes available in time
+	 */
+	public IView borrowView() throws SpecmateException;
+
+	/**
+	 * Waits until the model events of all commits received so far have been
+	 * delivered to the event handlers.
+	 *
+	 * @param timeoutMillis
+	 *            the maximal time to wait
+	 * @return <code>true</code> if the events have been delivered in time
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitEventsDelivered(long timeoutMillis) throws InterruptedException;
+
 	public void shutdown();
 
 	public void start() throws SpecmateException;
@@ -0,0 +1,138 @@
+package com.specmate.persistency.event;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.osgi.service.event.Event;
+
+/**
+ * The change set of a commit. In contrast to the {@link ModelEvent}s, which
+ * are published per feature change, a handler of commit events is notified
+ * once per commit with all new, changed and detached objects.
+ * <p>
+ * The event has the properties {@link #PROPERTY_TIMESTAMP} and
+ * {@link #PROPERTY_PROJECTS}, so handlers can filter the commits of a
+ * project.
+ */
+public class CommitEvent extends Event {
+
+	/** The topic of commit events */
+	public static final String TOPIC = "com/specmate/model/commit";
+
+	/** Event property with the time stamp of the commit */
+	public static final String PROPERTY_TIMESTAMP = "timestamp";
+
+	/** Event property with the ids of the projects changed by the commit */
+	public static final String PROPERTY_PROJECTS = "projects";
+
+	/** An object that has been created, changed or detached by a commit */
+	public static class ObjectChange {
+
+		private String id;
+		private String className;
+		private String url;
+		private String project;
+		private Map<EStructuralFeature, Object> featureMap;
+
+		public ObjectChange(String id, String className, String url, String project,
+				Map<EStructuralFeature, Object> featureMap) {
+			this.id = id;
+			this.className = className;
+			this.url = url;
+			this.project = project;
+			this.featureMap = featureMap;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getProject() {
+			return project;
+		}
+
+		/**
+		 * Returns the features of the object. For new objects, these are all
+		 * features with their values. For changed objects, these are the
+		 * changed features with the new values of single-valued features, the
+		 * values of multi-valued features are incomplete. For detached
+		 * objects, the map is <code>null</code>.
+		 */
+		public Map<EStructuralFeature, Object> getFeatureMap() {
+			return featureMap;
+		}
+	}
+
+	private long timeStamp;
+	private List<ObjectChange> newObjects;
+	private List<ObjectChange> changedObjects;
+	private List<ObjectChange> detachedObjects;
+
+	public CommitEvent(long timeStamp, List<ObjectChange> newObjects, List<ObjectChange> changedObjects,
+			List<ObjectChange> detachedObjects) {
+		super(TOPIC, createProperties(timeStamp, newObjects, changedObjects, detachedObjects));
+		this.timeStamp = timeStamp;
+		this.newObjects = Collections.unmodifiableList(newObjects);
+		this.changedObjects = Collections.unmodifiableList(changedObjects);
+		this.detachedObjects = Collections.unmodifiableList(detachedObjects);
+	}
+
+	private static Map<String, Object> createProperties(long timeStamp, List<ObjectChange> newObjects,
+			List<ObjectChange> changedObjects, List<ObjectChange> detachedObjects) {
+		Set<String> projects = new LinkedHashSet<>();
+		addProjects(projects, newObjects);
+		addProjects(projects, changedObjects);
+		addProjects(projects, detachedObjects);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(PROPERTY_TIMESTAMP, timeStamp);
+		properties.put(PROPERTY_PROJECTS, projects.toArray(new String[projects.size()]));
+		return properties;
+	}
+
+	private static void addProjects(Set<String> projects, List<ObjectChange> changes) {
+		for (ObjectChange change : changes) {
+			if (change.getProject() != null) {
+				projects.add(change.getProject());
+			}
+		}
+	}
+
+	/** Returns the time stamp of the commit */
+	public long getTimeStamp() {
+		return timeStamp;
+	}
+
+	/** Returns the ids of the projects changed by the commit */
+	public String[] getProjects() {
+		return (String[]) getProperty(PROPERTY_PROJECTS);
+	}
+
+	/** Returns the objects created by the commit */
+	public List<ObjectChange> getNewObjects() {
+		return newObjects;
+	}
+
+	/** Returns the objects changed by the commit */
+	public List<ObjectChange> getChangedObjects() {
+		return changedObjects;
+	}
+
+	/** Returns the objects detached by the commit */
+	public List<ObjectChange> getDetachedObjects() {
+		return detachedObjects;
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.specmate.persistency.event;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.osgi.service.event.Event;
+
+/**
+ * The model events of a single commit. The batch is published in addition to
+ * the single events, so a handler can process the changes of a commit at
+ * once.
+ */
+public class ModelEventBatch extends Event {
+
+	/** The topic of model event batches */
+	public static final String TOPIC = "com/specmate/model/batch";
+
+	private long timeStamp;
+	private List<ModelEvent> events;
+
+	public ModelEventBatch(long timeStamp, List<ModelEvent> events) {
+		super(TOPIC, Collections.emptyMap());
+		this.timeStamp = timeStamp;
+		this.events = Collections.unmodifiableList(events);
+	}
+
+	/** Returns the time stamp of the commit */
+	public long getTimeStamp() {
+		return timeStamp;
+	}
+
+	/** Returns the model events of the commit in the order of their changes */
+	public List<ModelEvent> getEvents() {
+		return events;
+	}
+
+}
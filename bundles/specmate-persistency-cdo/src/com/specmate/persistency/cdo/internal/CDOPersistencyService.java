@@ -1,17 +1,16 @@
 package com.specmate.persistency.cdo.internal;
 
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
-import org.eclipse.emf.cdo.CDOObject;
 import org.eclipse.emf.cdo.common.CDOCommonSession.Options.PassiveUpdateMode;
-import org.eclipse.emf.cdo.common.id.CDOID;
-import org.eclipse.emf.cdo.common.revision.CDORevision;
 import org.eclipse.emf.cdo.eresource.CDOResource;
 import org.eclipse.emf.cdo.net4j.CDONet4jSession;
 import org.eclipse.emf.cdo.net4j.CDONet4jUtil;
@@ -27,7 +26,6 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EClassifier;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EPackage;
-import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.spi.cdo.CDOMergingConflictResolver;
 import org.eclipse.net4j.Net4jUtil;
 import org.eclipse.net4j.connector.IConnector;
@@ -55,16 +53,14 @@ import org.osgi.service.log.LogService;
 import com.specmate.administration.api.IStatusService;
 import com.specmate.common.SpecmateException;
 import com.specmate.common.SpecmateValidationException;
+import com.specmate.metrics.ICounter;
 import com.specmate.metrics.IGauge;
 import com.specmate.metrics.IMetricsService;
-import com.specmate.model.support.util.SpecmateEcoreUtil;
 import com.specmate.persistency.IChangeListener;
 import com.specmate.persistency.IPackageProvider;
 import com.specmate.persistency.IPersistencyService;
 import com.specmate.persistency.ITransaction;
 import com.specmate.persistency.IView;
-import com.specmate.persistency.event.EChangeKind;
-import com.specmate.persistency.event.ModelEvent;
 import com.specmate.urihandler.IURIFactory;
 
 @Component(service = IPersistencyService.class, configurationPolicy = ConfigurationPolicy.REQUIRE, configurationPid = CDOPersistencyServiceConfig.PID)
@@ -79,20 +75,35 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 	/** The CDO session */
 	private CDONet4jSession session;
 
-	private List<IChangeListener> listeners = new ArrayList<>();
+	private List<IChangeListener> listeners = new CopyOnWriteArrayList<>();
 
 	/** Flag to signal if the persistence is active */
-	private boolean active;
+	private volatile boolean active;
 
-	/** List of open views */
-	private List<ViewImpl> openViews = new ArrayList<>();
+	/** The open views and transactions */
+	private ViewRegistry openViews;
 
-	/** The list of open transactions */
-	private List<TransactionImpl> openTransactions = new ArrayList<>();
+	/** Executor for checking the open views for leaks */
+	private ScheduledExecutorService leakCheckExecutor;
+
+	/** Transactions with changes are reported if open longer than this */
+	private int transactionWarnMinutes;
+
+	/** Flag to signal if model events are posted per feature change */
+	private boolean fineGrainedEvents;
+
+	/** The pool of read-only views */
+	private ViewPool viewPool;
+
+	/** The number of views in the pool */
+	private int viewPoolSize;
 
 	/** Gauge to count open transactions */
 	private IGauge transactionGauge;
 
+	/** Counters for the retried commits by cause */
+	private Map<ECommitFailure, ICounter> commitRetryCounters = new EnumMap<>(ECommitFailure.class);
+
 	/** The name of the repository to open */
 	private String repositoryName;
 
@@ -122,6 +133,9 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 
 	private CDOView eventView;
 
+	/** Publishes the changes of commits as model events */
+	private ModelEventDispatcher eventDispatcher;
+
 	private String cdoUser;
 
 	private String cdoPassword;
@@ -130,20 +144,57 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 	public void activate(Map<String, Object> properties) throws SpecmateException, SpecmateValidationException {
 		readConfig(properties);
 		this.transactionGauge = metricsService.createGauge("Transactions", "The number of open transactions");
+		for (ECommitFailure failure : ECommitFailure.values()) {
+			if (failure.isTransient()) {
+				String cause = failure.name().toLowerCase();
+				this.commitRetryCounters.put(failure, metricsService.createCounter("commit_retries_" + cause,
+						"The number of commits retried after a failure of type " + cause));
+			}
+		}
+		this.openViews = new ViewRegistry(this.transactionGauge, logService);
+		this.eventDispatcher = new ModelEventDispatcher(this, eventAdmin, uriFactory, this.fineGrainedEvents,
+				logService);
 		start();
+		startLeakCheckThread();
 	}
 
 	@Deactivate
 	public void deactivate() {
+		this.leakCheckExecutor.shutdown();
+		this.eventDispatcher.shutdown();
 		this.shutdown();
 	}
 
+	/**
+	 * Starts a thread that periodically closes views that have not been closed
+	 * by their owner and reports long running transactions.
+	 */
+	private void startLeakCheckThread() {
+		this.leakCheckExecutor = Executors.newScheduledThreadPool(1);
+		this.leakCheckExecutor.scheduleWithFixedDelay(() -> {
+			try {
+				this.openViews.expungeLeaks();
+				this.openViews.reportLongOpenTransactions(TimeUnit.MINUTES.toMillis(this.transactionWarnMinutes));
+			} catch (Exception e) {
+				logService.log(LogService.LOG_ERROR, "Error while checking open views", e);
+			}
+		}, 1, 1, TimeUnit.MINUTES);
+	}
+
 	private void readConfig(Map<String, Object> properties) throws SpecmateValidationException {
 		this.repositoryName = (String) properties.get(CDOPersistencyServiceConfig.KEY_REPOSITORY_NAME);
 		this.resourceName = (String) properties.get(CDOPersistencyServiceConfig.KEY_RESOURCE_NAME);
 		this.hostAndPort = (String) properties.get(CDOPersistencyServiceConfig.KEY_SERVER_HOST_PORT);
 		this.cdoUser = (String) properties.get(CDOPersistencyServiceConfig.KEY_CDO_USER);
 		this.cdoPassword = (String) properties.get(CDOPersistencyServiceConfig.KEY_CDO_PASSWORD);
+		Object poolSize = properties.get(CDOPersistencyServiceConfig.KEY_VIEW_POOL_SIZE);
+		this.viewPoolSize = poolSize instanceof Integer ? (Integer) poolSize
+				: CDOPersistencyServiceConfig.DEFAULT_VIEW_POOL_SIZE;
+		Object warnMinutes = properties.get(CDOPersistencyServiceConfig.KEY_TRANSACTION_WARN_MINUTES);
+		this.transactionWarnMinutes = warnMinutes instanceof Integer ? (Integer) warnMinutes
+				: CDOPersistencyServiceConfig.DEFAULT_TRANSACTION_WARN_MINUTES;
+		this.fineGrainedEvents = Boolean.TRUE
+				.equals(properties.get(CDOPersistencyServiceConfig.KEY_FINE_GRAINED_EVENTS));
 
 		if (StringUtils.isEmpty(this.repositoryName)) {
 			throw new SpecmateValidationException("Repository name is empty.");
@@ -162,6 +213,10 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		if (StringUtil.isEmpty(this.cdoPassword)) {
 			throw new SpecmateValidationException("No CDO password given");
 		}
+
+		if (this.viewPoolSize < 1) {
+			throw new SpecmateValidationException("Invalid view pool size: " + this.viewPoolSize);
+		}
 	}
 
 	@Override
@@ -169,20 +224,25 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		startPersistency();
 		updateOpenViews();
 		openEventView();
+		this.viewPool = new ViewPool(this, this.viewPoolSize, this.resourceName, logService);
 		this.active = true;
 	}
 
 	private void openEventView() throws SpecmateException {
+		// a new session starts at the last commit of the repository, which
+		// is never dispatched
+		long lastUpdateTime = this.session.getLastUpdateTime();
 		this.eventView = openCDOView();
+		this.eventDispatcher.setEventView(this.eventView, lastUpdateTime);
 	}
 
 	private void updateOpenViews() throws SpecmateException {
-		for (ViewImpl view : this.openViews) {
-			view.update(openCDOView());
-		}
-
-		for (TransactionImpl transaction : this.openTransactions) {
-			transaction.update(openCDOTransaction());
+		for (ViewImpl view : this.openViews.getOpenViews()) {
+			if (view instanceof TransactionImpl) {
+				((TransactionImpl) view).update(openCDOTransaction());
+			} else {
+				view.update(openCDOView());
+			}
 		}
 	}
 
@@ -193,6 +253,7 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		}
 		session.removeListener(this);
 		this.active = false;
+		this.viewPool.clear();
 		LifecycleUtil.deactivate(session);
 		LifecycleUtil.deactivate(connector);
 	}
@@ -299,14 +360,20 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		CDOTransaction cdoTransaction = openCDOTransaction();
 		TransactionImpl transaction = new TransactionImpl(this, cdoTransaction, alterantiveResourceName, logService,
 				statusService, attachCommitListeners ? listeners : Collections.emptyList());
-		this.openTransactions.add(transaction);
-		this.transactionGauge.inc();
+		this.openViews.register(transaction);
 		return transaction;
 	}
 
+	/** Counts a commit that is retried after a failure */
+	/* package */ void countCommitRetry(ECommitFailure failure) {
+		ICounter counter = this.commitRetryCounters.get(failure);
+		if (counter != null) {
+			counter.inc();
+		}
+	}
+
 	public void closedTransaction(TransactionImpl transactionImpl) {
-		this.openTransactions.remove(transactionImpl);
-		this.transactionGauge.dec();
+		this.openViews.unregister(transactionImpl);
 	}
 
 	@Override
@@ -317,14 +384,20 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		CDOView cdoView = openCDOView();
 		ViewImpl view = new ViewImpl(this, cdoView, this.resourceName, logService);
 
-		this.openViews.add(view);
-		this.transactionGauge.inc();
+		this.openViews.register(view);
 		return view;
 	}
 
+	@Override
+	public IView borrowView() throws SpecmateException {
+		if (!this.active) {
+			throw new SpecmateException("Attempt to borrow view when persistency service is not active");
+		}
+		return this.viewPool.borrow();
+	}
+
 	public void closedView(ViewImpl viewImpl) {
-		this.openViews.remove(viewImpl);
-		this.transactionGauge.dec();
+		this.openViews.unregister(viewImpl);
 	}
 
 	/* package */CDOTransaction openCDOTransaction() throws SpecmateException {
@@ -344,34 +417,30 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		return view;
 	}
 
+	/**
+	 * Opens a view for the view pool. The view does not subscribe to changes,
+	 * it is updated with the revision cache of the session.
+	 */
+	/* package */CDOView openPooledCDOView() throws SpecmateException {
+		CDOView view = session.openView();
+		logService.log(LogService.LOG_DEBUG, "Pooled view initialized: " + view.getViewID());
+		return view;
+	}
+
+	@Override
+	public boolean awaitEventsDelivered(long timeoutMillis) throws InterruptedException {
+		if (!active) {
+			return true;
+		}
+		return this.eventDispatcher.awaitPublished(this.session.getLastUpdateTime(), timeoutMillis);
+	}
+
 	@Override
 	public void notifyEvent(IEvent event) {
 		if (!(event instanceof CDOSessionInvalidationEvent)) {
 			return;
 		}
-		CDOSessionInvalidationEvent invalEvent = (CDOSessionInvalidationEvent) event;
-		CDOView localView = invalEvent.getLocalTransaction();
-		final CDOView view = localView != null ? localView : eventView;
-
-		DeltaProcessor processor = new DeltaProcessor(invalEvent) {
-
-			@Override
-			protected void newObject(CDOID id, String className, Map<EStructuralFeature, Object> featureMap) {
-				postEvent(view, id, className, 0, featureMap, EChangeKind.NEW, 0);
-			}
-
-			@Override
-			protected void detachedObject(CDOID id, int version) {
-				postEvent(view, id, null, version, null, EChangeKind.DELETE, 0);
-			}
-
-			@Override
-			public void changedObject(CDOID id, EStructuralFeature feature, EChangeKind changeKind, Object oldValue,
-					Object newValue, int index, String objectClassName) {
-				postEvent(view, id, objectClassName, 0, Collections.singletonMap(feature, newValue), changeKind, index);
-			}
-		};
-		processor.process();
+		this.eventDispatcher.dispatch((CDOSessionInvalidationEvent) event);
 	}
 
 	public boolean isActive() {
@@ -382,75 +451,6 @@ public class CDOPersistencyService implements IPersistencyService, IListener {
 		listeners.remove(listener);
 	}
 
-	private void postEvent(CDOView eventView, CDOID id, String className, int version,
-			Map<EStructuralFeature, Object> featureMap, EChangeKind changeKind, int index) {
-
-		Optional<String> optUri;
-		if (changeKind == EChangeKind.DELETE) {
-			optUri = resolveUri(eventView, id, version);
-		} else {
-			optUri = resolveUri(eventView, id);
-		}
-		if (!optUri.isPresent()) {
-			logService.log(LogService.LOG_ERROR, "Could not determine uri for object");
-			return;
-		}
-		String uri = optUri.get();
-
-		ModelEvent event = null;
-
-		String idAsString = SpecmateEcoreUtil.buildStringId(id);
-
-		switch (changeKind) {
-		case ADD:
-			event = new ModelEvent(idAsString, null, uri, featureMap, EChangeKind.ADD, index);
-			break;
-		case REMOVE:
-			event = new ModelEvent(idAsString, null, uri, featureMap, EChangeKind.REMOVE, index);
-			break;
-		case CLEAR:
-			event = new ModelEvent(idAsString, null, uri, featureMap, EChangeKind.CLEAR, -1);
-			break;
-		case SET:
-			Entry<EStructuralFeature, Object> entry = featureMap.entrySet().iterator().next();
-			if (entry.getValue() instanceof CDOID) {
-				CDOObject newValue = eventView.getObject((CDOID) entry.getValue());
-				featureMap.put(entry.getKey(), newValue);
-			}
-			event = new ModelEvent(idAsString, null, uri, featureMap, EChangeKind.SET);
-			break;
-		case NEW:
-			event = new ModelEvent(idAsString, className, uri, featureMap, EChangeKind.NEW);
-			break;
-		case DELETE:
-			event = new ModelEvent(idAsString, null, null, null, EChangeKind.DELETE);
-			break;
-		default:
-			logService.log(LogService.LOG_ERROR, "Unsupported Delta type:" + changeKind.toString());
-		}
-		if (event != null) {
-			eventAdmin.postEvent(event);
-		}
-	}
-
-	private Optional<String> resolveUri(CDOView eventView, CDOID id, int version) {
-		CDORevision revision = getSession().getRevisionManager().getRevisionByVersion(id,
-				eventView.getBranch().getVersion(version), 0, true);
-		CDOView view = getSession().openView(revision.getTimeStamp());
-		Optional<String> uri = resolveUri(view, id);
-		view.close();
-		return uri;
-	}
-
-	private Optional<String> resolveUri(CDOView view, CDOID id) {
-		try {
-			CDOObject object = view.getObject(id);
-			return Optional.ofNullable(uriFactory.getURI(object));
-		} catch (SpecmateException e) {
-			return Optional.empty();
-		}
-	}
-
 	// Cloned from CDOPackageTypeRegistry, as it is defined private
 	private static EClass getAnyConcreteEClass(EPackage ePackage) {
 		for (EClassifier classifier : ePackage.getEClassifiers()) {
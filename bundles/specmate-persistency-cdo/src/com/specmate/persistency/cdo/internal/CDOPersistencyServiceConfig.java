@@ -32,6 +32,11 @@ public class CDOPersistencyServiceConfig {
 	public static final String KEY_CDO_USER = "cdo.user";
 	public static final String KEY_CDO_PASSWORD = "cdo.password";
 	public static final String KEY_SERVER_HOST_PORT = "cdo.serverHostAndPort";
+	public static final String KEY_VIEW_POOL_SIZE = "cdo.viewPoolSize";
+	public static final int DEFAULT_VIEW_POOL_SIZE = 8;
+	public static final String KEY_TRANSACTION_WARN_MINUTES = "cdo.transactionWarnMinutes";
+	public static final int DEFAULT_TRANSACTION_WARN_MINUTES = 10;
+	public static final String KEY_FINE_GRAINED_EVENTS = "cdo.fineGrainedEvents";
 	private ConfigurationAdmin configurationAdmin;
 	private IConfigService configService;
 	private LogService logService;
@@ -45,6 +50,9 @@ public class CDOPersistencyServiceConfig {
 	private Configuration configuration;
 	private String cdoUser;
 	private String cdoPassword;
+	private int viewPoolSize;
+	private int transactionWarnMinutes;
+	private boolean fineGrainedEvents;
 
 	/**
 	 * Configures the CDO persistency service.
@@ -58,6 +66,11 @@ public class CDOPersistencyServiceConfig {
 		this.cdoUser = configService.getConfigurationProperty(KEY_CDO_USER);
 		this.cdoPassword = configService.getConfigurationProperty(KEY_CDO_PASSWORD);
 		this.host = configService.getConfigurationProperty(KEY_SERVER_HOST_PORT);
+		this.viewPoolSize = configService.getConfigurationPropertyInt(KEY_VIEW_POOL_SIZE, DEFAULT_VIEW_POOL_SIZE);
+		this.transactionWarnMinutes = configService.getConfigurationPropertyInt(KEY_TRANSACTION_WARN_MINUTES,
+				DEFAULT_TRANSACTION_WARN_MINUTES);
+		this.fineGrainedEvents = Boolean
+				.parseBoolean(configService.getConfigurationProperty(KEY_FINE_GRAINED_EVENTS, "false"));
 		this.connected = false;
 		String[] hostport = StringUtils.split(this.host, ":");
 		if (!(hostport.length == 2)) {
@@ -117,6 +130,9 @@ public class CDOPersistencyServiceConfig {
 			properties.put(KEY_SERVER_HOST_PORT, host);
 			properties.put(KEY_CDO_USER, cdoUser);
 			properties.put(KEY_CDO_PASSWORD, cdoPassword);
+			properties.put(KEY_VIEW_POOL_SIZE, viewPoolSize);
+			properties.put(KEY_TRANSACTION_WARN_MINUTES, transactionWarnMinutes);
+			properties.put(KEY_FINE_GRAINED_EVENTS, fineGrainedEvents);
 			logService.log(LogService.LOG_DEBUG,
 					"Configuring CDO with:\n" + OSGiUtil.configDictionaryToString(properties));
 			this.configuration = OSGiUtil.configureService(configurationAdmin, PID, properties);
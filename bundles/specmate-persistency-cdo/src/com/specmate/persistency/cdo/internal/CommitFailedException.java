@@ -0,0 +1,24 @@
+package com.specmate.persistency.cdo.internal;
+
+import com.specmate.common.SpecmateException;
+
+/** Signals a failed commit together with its cause */
+public class CommitFailedException extends SpecmateException {
+
+	private final ECommitFailure failure;
+
+	public CommitFailedException(ECommitFailure failure, String message) {
+		super(message);
+		this.failure = failure;
+	}
+
+	public CommitFailedException(ECommitFailure failure, String message, Exception cause) {
+		super(message, cause);
+		this.failure = failure;
+	}
+
+	/** Returns the cause of the failed commit */
+	public ECommitFailure getFailure() {
+		return failure;
+	}
+}
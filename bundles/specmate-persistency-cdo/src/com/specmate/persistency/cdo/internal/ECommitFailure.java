@@ -0,0 +1,55 @@
+package com.specmate.persistency.cdo.internal;
+
+import org.eclipse.emf.cdo.util.CommitIntegrityException;
+import org.eclipse.emf.cdo.util.ConcurrentAccessException;
+import org.eclipse.emf.cdo.util.LockTimeoutException;
+import org.eclipse.emf.cdo.util.StaleRevisionLockException;
+
+/**
+ * The causes of a failed commit. Only transient failures are worth a retry,
+ * the others fail again when the change is repeated.
+ */
+public enum ECommitFailure {
+
+	/** Another transaction has changed the same objects */
+	CONFLICT(true),
+
+	/** The transaction has worked on outdated revisions or locks */
+	STALE_REVISION(true),
+
+	/** Specmate is in read-only mode */
+	READ_ONLY(false),
+
+	/** The change has been rejected, e.g. because of dangling references */
+	VALIDATION(false),
+
+	/** Any other failure */
+	ERROR(false);
+
+	private final boolean transientFailure;
+
+	private ECommitFailure(boolean transientFailure) {
+		this.transientFailure = transientFailure;
+	}
+
+	/** Signals if a retry of the commit may succeed */
+	public boolean isTransient() {
+		return transientFailure;
+	}
+
+	/** Determines the cause of a failed commit from the thrown exception */
+	public static ECommitFailure classify(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConcurrentAccessException) {
+				return CONFLICT;
+			}
+			if (cause instanceof StaleRevisionLockException || cause instanceof LockTimeoutException) {
+				return STALE_REVISION;
+			}
+			if (cause instanceof CommitIntegrityException) {
+				return VALIDATION;
+			}
+		}
+		return ERROR;
+	}
+}
@@ -0,0 +1,368 @@
+package com.specmate.persistency.cdo.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.cdo.CDOObject;
+import org.eclipse.emf.cdo.common.id.CDOID;
+import org.eclipse.emf.cdo.common.revision.CDORevisionKey;
+import org.eclipse.emf.cdo.common.revision.delta.CDOFeatureDelta;
+import org.eclipse.emf.cdo.common.revision.delta.CDORevisionDelta;
+import org.eclipse.emf.cdo.session.CDOSessionInvalidationEvent;
+import org.eclipse.emf.cdo.view.CDOView;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.model.support.util.SpecmateEcoreUtil;
+import com.specmate.persistency.event.CommitEvent;
+import com.specmate.persistency.event.CommitEvent.ObjectChange;
+import com.specmate.persistency.event.EChangeKind;
+import com.specmate.persistency.event.ModelEvent;
+import com.specmate.persistency.event.ModelEventBatch;
+import com.specmate.urihandler.IURIFactory;
+
+/**
+ * Publishes the changes of commits. The commits are processed in order on a
+ * separate thread, so large commits do not stall the thread of the CDO
+ * session. The URIs of changed objects are cached across commits.
+ * <p>
+ * For each commit, a {@link CommitEvent} with the change set is sent
+ * synchronously, so the handlers have received a commit once it is marked as
+ * published. The fine-grained {@link ModelEvent}s per feature change, followed by a
+ * {@link ModelEventBatch} with all of them, are only posted if enabled.
+ */
+public class ModelEventDispatcher {
+
+	/** The maximal number of cached URIs */
+	private static final int URI_CACHE_SIZE = 10000;
+
+	/** The time to wait until the event view has received a commit */
+	private static final long UPDATE_TIMEOUT_MILLIS = 10000;
+
+	/** The time to wait until the queued commits are published on shutdown */
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+	/** The name of the feature holding the id of an object */
+	private static final String ID_FEATURE = "id";
+
+	/** The URI and class of an object */
+	private static class ObjectInfo {
+		private final String uri;
+		private final String className;
+
+		private ObjectInfo(String uri, String className) {
+			this.uri = uri;
+			this.className = className;
+		}
+	}
+
+	private final CDOPersistencyService persistency;
+	private final EventAdmin eventAdmin;
+	private final IURIFactory uriFactory;
+	private final LogService logService;
+
+	/** Flag to signal if the fine-grained model events are posted */
+	private final boolean fineGrainedEvents;
+
+	/** Executor that processes the commits in order */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	/** The URIs of objects, only accessed by the executor thread */
+	private final Map<CDOID, ObjectInfo> uriCache = new LinkedHashMap<CDOID, ObjectInfo>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CDOID, ObjectInfo> eldest) {
+			return size() > URI_CACHE_SIZE;
+		}
+	};
+
+	/** The view to resolve changed objects in */
+	private volatile CDOView eventView;
+
+	/** Lock for the time stamp of the last published commit */
+	private final Object publishedLock = new Object();
+
+	/** The time stamp of the last published commit */
+	private long publishedTime;
+
+	public ModelEventDispatcher(CDOPersistencyService persistency, EventAdmin eventAdmin, IURIFactory uriFactory,
+			boolean fineGrainedEvents, LogService logService) {
+		this.persistency = persistency;
+		this.eventAdmin = eventAdmin;
+		this.uriFactory = uriFactory;
+		this.fineGrainedEvents = fineGrainedEvents;
+		this.logService = logService;
+	}
+
+	/**
+	 * Sets the view to resolve changed objects in. The commits up to the
+	 * given time stamp are considered published, as they have happened before
+	 * the session was opened or have been published with a previous view.
+	 */
+	public void setEventView(CDOView eventView, long publishedTimeStamp) {
+		this.eventView = eventView;
+		markPublished(publishedTimeStamp);
+	}
+
+	/** Queues the changes of a commit for publishing */
+	public void dispatch(CDOSessionInvalidationEvent commit) {
+		executor.execute(() -> {
+			try {
+				process(commit);
+			} catch (RuntimeException e) {
+				logService.log(LogService.LOG_ERROR, "Could not publish the changes of a commit", e);
+			} finally {
+				markPublished(commit.getTimeStamp());
+			}
+		});
+	}
+
+	/**
+	 * Waits until the commits up to the given time stamp have been published.
+	 *
+	 * @return <code>true</code> if the commits have been published in time
+	 */
+	public boolean awaitPublished(long timeStamp, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (publishedLock) {
+			while (publishedTime < timeStamp) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				publishedLock.wait(remaining);
+			}
+			return true;
+		}
+	}
+
+	private void markPublished(long timeStamp) {
+		synchronized (publishedLock) {
+			publishedTime = Math.max(publishedTime, timeStamp);
+			publishedLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stops the dispatcher and waits until the queued commits are published.
+	 * Must be called before the session is closed, as the commits are
+	 * resolved in the event view.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				logService.log(LogService.LOG_WARNING, "Not all commits published before shutdown");
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void process(CDOSessionInvalidationEvent commit) {
+		CDOView view = this.eventView;
+		if (view == null || view.isClosed()) {
+			logService.log(LogService.LOG_WARNING,
+					"Changes of commit " + commit.getTimeStamp() + " not published, the event view is closed");
+			return;
+		}
+		if (!view.waitForUpdate(commit.getTimeStamp(), UPDATE_TIMEOUT_MILLIS)) {
+			logService.log(LogService.LOG_WARNING, "Event view not updated to commit " + commit.getTimeStamp());
+		}
+		if (isMovingObjects(commit)) {
+			uriCache.clear();
+		}
+
+		CommitChanges changes = new CommitChanges(commit, view);
+		try {
+			changes.process();
+		} finally {
+			changes.close();
+		}
+		if (fineGrainedEvents && !changes.events.isEmpty()) {
+			for (ModelEvent event : changes.events) {
+				eventAdmin.postEvent(event);
+			}
+			eventAdmin.postEvent(new ModelEventBatch(commit.getTimeStamp(), changes.events));
+		}
+		if (!changes.isEmpty()) {
+			eventAdmin.sendEvent(changes.createCommitEvent());
+		}
+	}
+
+	/**
+	 * Signals if a commit changes the container or the id of an object. Both
+	 * change the URIs of the object and its descendants.
+	 */
+	private boolean isMovingObjects(CDOSessionInvalidationEvent commit) {
+		for (CDORevisionKey key : commit.getChangedObjects()) {
+			if (key instanceof CDORevisionDelta) {
+				for (CDOFeatureDelta delta : ((CDORevisionDelta) key).getFeatureDeltas()) {
+					if (delta.getType() == CDOFeatureDelta.Type.CONTAINER
+							|| ID_FEATURE.equals(delta.getFeature().getName())) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Returns the project of an object from its URI */
+	private static String getProject(String uri) {
+		int index = uri.indexOf('/');
+		return index < 0 ? uri : uri.substring(0, index);
+	}
+
+	/** Collects the changes of a commit */
+	private class CommitChanges extends DeltaProcessor {
+
+		private final CDOSessionInvalidationEvent commit;
+
+		/** The view of the state after the commit */
+		private final CDOView view;
+
+		/** The view of the state before the commit, opened on demand */
+		private CDOView historicalView;
+
+		/** The fine-grained events, only collected if enabled */
+		private final List<ModelEvent> events = new ArrayList<>();
+
+		private final List<ObjectChange> newObjects = new ArrayList<>();
+		private final Map<CDOID, ObjectChange> changedObjects = new LinkedHashMap<>();
+		private final List<ObjectChange> detachedObjects = new ArrayList<>();
+
+		private CommitChanges(CDOSessionInvalidationEvent commit, CDOView view) {
+			super(commit);
+			this.commit = commit;
+			this.view = view;
+		}
+
+		@Override
+		protected void newObject(CDOID id, String className, Map<EStructuralFeature, Object> featureMap) {
+			ObjectInfo info = resolve(view, id);
+			if (info == null) {
+				return;
+			}
+			String idAsString = SpecmateEcoreUtil.buildStringId(id);
+			newObjects.add(new ObjectChange(idAsString, className, info.uri, getProject(info.uri), featureMap));
+			if (fineGrainedEvents) {
+				events.add(new ModelEvent(idAsString, className, info.uri, featureMap, EChangeKind.NEW));
+			}
+		}
+
+		@Override
+		protected void detachedObject(CDOID id, int version) {
+			ObjectInfo info = uriCache.remove(id);
+			if (info == null) {
+				info = resolve(getHistoricalView(), id);
+			}
+			if (info == null) {
+				return;
+			}
+			String idAsString = SpecmateEcoreUtil.buildStringId(id);
+			detachedObjects.add(new ObjectChange(idAsString, info.className, info.uri, getProject(info.uri), null));
+			if (fineGrainedEvents) {
+				events.add(new ModelEvent(idAsString, null, null, null, EChangeKind.DELETE));
+			}
+		}
+
+		@Override
+		protected void changedObject(CDOID id, EStructuralFeature feature, EChangeKind changeKind, Object oldValue,
+				Object newValue, int index, String objectClassName) {
+			ObjectInfo info = resolve(view, id);
+			if (info == null) {
+				return;
+			}
+			if (changeKind == EChangeKind.SET && newValue instanceof CDOID) {
+				newValue = view.getObject((CDOID) newValue);
+			}
+			String idAsString = SpecmateEcoreUtil.buildStringId(id);
+			changedObjects.computeIfAbsent(id, key -> new ObjectChange(idAsString, objectClassName, info.uri,
+					getProject(info.uri), new HashMap<>())).getFeatureMap().put(feature, newValue);
+			if (!fineGrainedEvents) {
+				return;
+			}
+			Map<EStructuralFeature, Object> featureMap = new HashMap<>();
+			featureMap.put(feature, newValue);
+			switch (changeKind) {
+			case ADD:
+			case REMOVE:
+				events.add(new ModelEvent(idAsString, null, info.uri, featureMap, changeKind, index));
+				break;
+			case CLEAR:
+				events.add(new ModelEvent(idAsString, null, info.uri, featureMap, EChangeKind.CLEAR, -1));
+				break;
+			case SET:
+				events.add(new ModelEvent(idAsString, null, info.uri, featureMap, EChangeKind.SET));
+				break;
+			default:
+				logService.log(LogService.LOG_ERROR, "Unsupported Delta type:" + changeKind.toString());
+			}
+		}
+
+		private boolean isEmpty() {
+			return newObjects.isEmpty() && changedObjects.isEmpty() && detachedObjects.isEmpty();
+		}
+
+		private CommitEvent createCommitEvent() {
+			return new CommitEvent(commit.getTimeStamp(), newObjects, new ArrayList<>(changedObjects.values()),
+					detachedObjects);
+		}
+
+		/**
+		 * Returns the URI and class of an object, or <code>null</code> if it
+		 * has no URI
+		 */
+		private ObjectInfo resolve(CDOView view, CDOID id) {
+			ObjectInfo info = uriCache.get(id);
+			if (info != null) {
+				return info;
+			}
+			String uri;
+			String className = null;
+			try {
+				CDOObject object = view.getObject(id);
+				className = object.eClass().getName();
+				uri = uriFactory.getURI(object);
+			} catch (SpecmateException | RuntimeException e) {
+				uri = null;
+			}
+			if (uri == null) {
+				logService.log(LogService.LOG_ERROR, "Could not determine uri for object");
+				return null;
+			}
+			info = new ObjectInfo(uri, className);
+			if (view == this.view) {
+				uriCache.put(id, info);
+			}
+			return info;
+		}
+
+		/**
+		 * Returns a view of the state before the commit, where detached
+		 * objects exist
+		 */
+		private CDOView getHistoricalView() {
+			if (historicalView == null) {
+				historicalView = persistency.getSession().openView(commit.getTimeStamp() - 1);
+			}
+			return historicalView;
+		}
+
+		private void close() {
+			if (historicalView != null) {
+				historicalView.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.specmate.persistency.cdo.internal;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.emf.cdo.view.CDOView;
+import org.osgi.service.log.LogService;
+
+/**
+ * A view of a {@link ViewPool}. Closing the view returns it to the pool, the
+ * underlying CDO view stays open.
+ */
+public class PooledViewImpl extends ViewImpl {
+
+	private final ViewPool pool;
+
+	/** Flag to signal if the view is borrowed */
+	private final AtomicBoolean borrowed = new AtomicBoolean(true);
+
+	public PooledViewImpl(CDOPersistencyService persistency, ViewPool pool, CDOView view, String resourceName,
+			LogService logService) {
+		super(persistency, view, resourceName, logService);
+		this.pool = pool;
+	}
+
+	/* package */ void borrow() {
+		this.borrowed.set(true);
+	}
+
+	/* package */ boolean isClosed() {
+		return getCDOView().isClosed();
+	}
+
+	/** Closes the underlying CDO view */
+	/* package */ void dispose() {
+		getCDOView().close();
+	}
+
+	@Override
+	public void close() {
+		if (this.borrowed.compareAndSet(true, false)) {
+			this.pool.release(this);
+		}
+	}
+}
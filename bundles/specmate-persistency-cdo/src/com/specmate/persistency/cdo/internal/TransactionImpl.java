@@ -2,6 +2,7 @@ package com.specmate.persistency.cdo.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.eclipse.emf.cdo.CDOObject;
 import org.eclipse.emf.cdo.common.commit.CDOChangeSetData;
@@ -31,6 +32,18 @@ import com.specmate.rest.RestResult;
  *
  */
 public class TransactionImpl extends ViewImpl implements ITransaction {
+
+	/** The maximal number of attempts to commit a change */
+	private static final int MAX_COMMIT_ATTEMPTS = 5;
+
+	/** The backoff before the first retry of a commit */
+	private static final long BASE_BACKOFF_MILLIS = 25;
+
+	/** The maximal backoff before a retry of a commit */
+	private static final long MAX_BACKOFF_MILLIS = 1000;
+
+	/** The time to wait for the latest revisions before a retry */
+	private static final long REFRESH_TIMEOUT_MILLIS = 5000;
 	/* The CDO transaction */
 	private CDOTransaction transaction;
 
@@ -62,13 +75,13 @@ public class TransactionImpl extends ViewImpl implements ITransaction {
 
 	private <T> void commit(T object) throws SpecmateException {
 		if (!isActive()) {
-			throw new SpecmateException("Attempt to commit but transaction is not active");
+			throw new CommitFailedException(ECommitFailure.ERROR, "Attempt to commit but transaction is not active");
 		}
 		if (!isDirty()) {
 			return;
 		}
 		if (statusService != null && statusService.getCurrentStatus().isReadOnly()) {
-			throw new SpecmateException("Attempt to commit when in read-only mode");
+			throw new CommitFailedException(ECommitFailure.READ_ONLY, "Attempt to commit when in read-only mode");
 		}
 		try {
 			List<CDOIDAndVersion> detachedObjects;
@@ -80,45 +93,71 @@ public class TransactionImpl extends ViewImpl implements ITransaction {
 				}
 			} catch (SpecmateException s) {
 				transaction.rollback();
-				throw (new SpecmateException("Error while preparing commit, transaction rolled back", s));
+				throw new CommitFailedException(ECommitFailure.VALIDATION,
+						"Error while preparing commit, transaction rolled back", s);
 			}
 			setMetadata(object, detachedObjects);
 			transaction.commit();
-		} catch (CommitException e) {
+		} catch (CommitException | RuntimeException e) {
 			transaction.rollback();
-			logService.log(LogService.LOG_ERROR, "Error during commit, transaction rolled back");
-			throw new SpecmateException("Error during commit, transaction rolled back", e);
+			ECommitFailure failure = ECommitFailure.classify(e);
+			logService.log(LogService.LOG_WARNING, "Commit failed (" + failure + "), transaction rolled back");
+			throw new CommitFailedException(failure, "Error during commit, transaction rolled back", e);
 		}
 	}
 
+	/**
+	 * Performs a change and commits it. If the commit fails due to a
+	 * transient cause, e.g. a conflict with a concurrent commit, the
+	 * transaction is brought to the latest revisions and the change is
+	 * performed again after a backoff. Other failures are not retried.
+	 */
 	@Override
 	public <T> T doAndCommit(IChange<T> change) throws SpecmateException, SpecmateValidationException {
-		int maxAttempts = 10;
-		boolean success = false;
-		int attempts = 1;
-		T result = null;
-
-		while (!success && attempts <= maxAttempts) {
-
-			result = change.doChange();
-
+		for (int attempt = 1;; attempt++) {
+			T result = change.doChange();
 			try {
 				commit(result);
-			} catch (SpecmateException e) {
-				try {
-					Thread.sleep(attempts * 50);
-				} catch (InterruptedException ie) {
-					throw new SpecmateException("Interrupted during commit.", ie);
+				return result;
+			} catch (CommitFailedException e) {
+				ECommitFailure failure = e.getFailure();
+				if (!failure.isTransient()) {
+					throw e;
 				}
-				attempts += 1;
-				continue;
+				if (attempt >= MAX_COMMIT_ATTEMPTS) {
+					throw new SpecmateException("Could not commit after " + attempt + " attempts.", e);
+				}
+				persistency.countCommitRetry(failure);
+				backoff(attempt);
+				refresh();
 			}
-			success = true;
 		}
-		if (!success) {
-			throw new SpecmateException("Could not commit after " + maxAttempts + " attempts.");
+	}
+
+	/**
+	 * Waits before a retry. The backoff grows exponentially with the attempts
+	 * and is jittered, so concurrent editors that conflicted do not retry at
+	 * the same time again.
+	 */
+	private void backoff(int attempt) throws SpecmateException {
+		long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+		try {
+			Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpecmateException("Interrupted during commit.", e);
+		}
+	}
+
+	/**
+	 * Brings the transaction to the latest revisions, so a retried change
+	 * works on the state that made the commit fail.
+	 */
+	private void refresh() {
+		long updateTime = persistency.getSession().refresh();
+		if (!transaction.waitForUpdate(updateTime, REFRESH_TIMEOUT_MILLIS)) {
+			logService.log(LogService.LOG_WARNING, "Transaction not updated before retrying the commit");
 		}
-		return result;
 	}
 
 	@Override
@@ -18,6 +18,9 @@ public class ViewImpl implements IView {
 	private String resourceName;
 	protected CDOPersistencyService persistency;
 
+	/** The registration of the view with the persistency service */
+	private ViewRegistry.Registration registration;
+
 	public ViewImpl(CDOPersistencyService persistency, CDOView view, String resourceName, LogService logService) {
 		super();
 		this.view = view;
@@ -57,8 +60,23 @@ public class ViewImpl implements IView {
 		return cdoQuery.getResult();
 	}
 
+	/* package */ CDOView getCDOView() {
+		return view;
+	}
+
+	/* package */ ViewRegistry.Registration getRegistration() {
+		return registration;
+	}
+
+	/* package */ void setRegistration(ViewRegistry.Registration registration) {
+		this.registration = registration;
+	}
+
 	public void update(CDOView view) {
 		this.view = view;
+		if (registration != null) {
+			registration.setCDOView(view);
+		}
 	}
 
 	public void close() {
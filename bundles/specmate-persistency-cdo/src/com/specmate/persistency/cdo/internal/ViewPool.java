@@ -0,0 +1,114 @@
+package com.specmate.persistency.cdo.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.persistency.IView;
+
+/**
+ * A bounded pool of read-only views. The views of a session share its
+ * revision cache, hence a pooled view serves reads from the cache without
+ * the setup of a new view or transaction. The number of borrowed views is
+ * limited by the size of the pool, further borrowers wait until a view is
+ * returned. A borrowed view has received all commits the session knew of
+ * when it was borrowed.
+ */
+public class ViewPool {
+
+	/** The time to wait for a view if all views are borrowed */
+	private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+	/** The time to wait until a borrowed view has received the last commit */
+	private static final long UPDATE_TIMEOUT_MILLIS = 5000;
+
+	private final CDOPersistencyService persistency;
+	private final String resourceName;
+	private final LogService logService;
+
+	/** One permit per view that may be borrowed */
+	private final Semaphore permits;
+
+	/** The views that are not borrowed */
+	private final Queue<PooledViewImpl> idleViews = new ConcurrentLinkedQueue<>();
+
+	public ViewPool(CDOPersistencyService persistency, int size, String resourceName, LogService logService) {
+		this.persistency = persistency;
+		this.resourceName = resourceName;
+		this.logService = logService;
+		this.permits = new Semaphore(size, true);
+	}
+
+	/** Borrows a view, waits if all views are borrowed */
+	public IView borrow() throws SpecmateException {
+		try {
+			if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new SpecmateException("No view available within " + BORROW_TIMEOUT_SECONDS + " seconds");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpecmateException("Interrupted while waiting for a view", e);
+		}
+		PooledViewImpl view = null;
+		try {
+			view = pollIdleView();
+			if (view == null) {
+				view = new PooledViewImpl(persistency, this, persistency.openPooledCDOView(), resourceName,
+						logService);
+			}
+		} finally {
+			if (view == null) {
+				permits.release();
+			}
+		}
+		awaitLastCommit(view);
+		return view;
+	}
+
+	/** Takes an open view from the idle views, <code>null</code> if none */
+	private PooledViewImpl pollIdleView() {
+		PooledViewImpl view;
+		while ((view = idleViews.poll()) != null) {
+			if (!view.isClosed()) {
+				view.borrow();
+				return view;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Waits until a borrowed view has received the last commit of the session.
+	 * The views are updated asynchronously, without waiting a read right after
+	 * a commit could return the state before the commit. Returns the view to
+	 * the pool if the update times out.
+	 */
+	private void awaitLastCommit(PooledViewImpl view) throws SpecmateException {
+		long lastUpdateTime = persistency.getSession().getLastUpdateTime();
+		if (!view.getCDOView().waitForUpdate(lastUpdateTime, UPDATE_TIMEOUT_MILLIS)) {
+			view.close();
+			throw new SpecmateException("View not updated to commit " + lastUpdateTime + " within "
+					+ UPDATE_TIMEOUT_MILLIS + " milliseconds");
+		}
+	}
+
+	/** Returns a borrowed view to the pool */
+	/* package */ void release(PooledViewImpl view) {
+		if (!view.isClosed()) {
+			idleViews.add(view);
+		}
+		permits.release();
+	}
+
+	/** Closes the views that are not borrowed */
+	public void clear() {
+		PooledViewImpl view;
+		while ((view = idleViews.poll()) != null) {
+			view.dispose();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.specmate.persistency.cdo.internal;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.cdo.view.CDOView;
+import org.osgi.service.log.LogService;
+
+import com.specmate.metrics.IGauge;
+
+/**
+ * Registry of the open views and transactions. The registry may be accessed
+ * concurrently. Views are referenced weakly, hence a view that is not closed
+ * by its owner does not stay in memory. If such a view is garbage collected,
+ * it is reported as leak and its CDO view is closed.
+ */
+public class ViewRegistry {
+
+	/** The registration of an open view */
+	/* package */ static class Registration extends WeakReference<ViewImpl> {
+
+		/** The name of the thread that opened the view */
+		private final String threadName;
+
+		/** The time when the view has been opened */
+		private final long openedMillis;
+
+		/** The CDO view, closed if the view is leaked */
+		private volatile CDOView cdoView;
+
+		/** Flag to signal if the view has been reported as open too long */
+		private volatile boolean reported;
+
+		private Registration(ViewImpl view, CDOView cdoView, ReferenceQueue<ViewImpl> queue) {
+			super(view, queue);
+			this.threadName = Thread.currentThread().getName();
+			this.openedMillis = System.currentTimeMillis();
+			this.cdoView = cdoView;
+		}
+
+		/* package */ void setCDOView(CDOView cdoView) {
+			this.cdoView = cdoView;
+		}
+	}
+
+	/** The registrations of the open views */
+	private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+	/** The registrations of views that have been garbage collected */
+	private final ReferenceQueue<ViewImpl> collected = new ReferenceQueue<>();
+
+	/** Gauge to count the open views */
+	private final IGauge gauge;
+
+	private final LogService logService;
+
+	public ViewRegistry(IGauge gauge, LogService logService) {
+		this.gauge = gauge;
+		this.logService = logService;
+	}
+
+	/** Registers an opened view */
+	public void register(ViewImpl view) {
+		expungeLeaks();
+		Registration registration = new Registration(view, view.getCDOView(), collected);
+		view.setRegistration(registration);
+		registrations.add(registration);
+		gauge.inc();
+	}
+
+	/**
+	 * Unregisters a closed view. Returns <code>false</code> if the view has
+	 * already been unregistered.
+	 */
+	public boolean unregister(ViewImpl view) {
+		Registration registration = view.getRegistration();
+		if (registration == null || !registrations.remove(registration)) {
+			return false;
+		}
+		registration.clear();
+		gauge.dec();
+		return true;
+	}
+
+	/** Returns a snapshot of the open views */
+	public List<ViewImpl> getOpenViews() {
+		List<ViewImpl> views = new ArrayList<>(registrations.size());
+		for (Registration registration : registrations) {
+			ViewImpl view = registration.get();
+			if (view != null) {
+				views.add(view);
+			}
+		}
+		return views;
+	}
+
+	/**
+	 * Closes the CDO views of views that have been garbage collected without
+	 * being closed.
+	 */
+	public void expungeLeaks() {
+		Registration registration;
+		while ((registration = (Registration) collected.poll()) != null) {
+			if (!registrations.remove(registration)) {
+				continue;
+			}
+			gauge.dec();
+			logService.log(LogService.LOG_WARNING,
+					"View opened by thread " + registration.threadName + " has not been closed");
+			CDOView cdoView = registration.cdoView;
+			if (cdoView != null && !cdoView.isClosed()) {
+				cdoView.close();
+			}
+		}
+	}
+
+	/**
+	 * Reports transactions with uncommitted changes that are open longer than
+	 * the given time. Each transaction is reported once.
+	 */
+	public void reportLongOpenTransactions(long maxOpenMillis) {
+		long now = System.currentTimeMillis();
+		for (Registration registration : registrations) {
+			if (registration.reported || now - registration.openedMillis < maxOpenMillis) {
+				continue;
+			}
+			ViewImpl view = registration.get();
+			if (view instanceof TransactionImpl && ((TransactionImpl) view).isDirty()) {
+				registration.reported = true;
+				logService.log(LogService.LOG_WARNING,
+						"Transaction opened by thread " + registration.threadName + " has uncommitted changes for "
+								+ ((now - registration.openedMillis) / 1000) + " seconds");
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.specmate.search.api;
 
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.emf.ecore.EObject;
@@ -21,6 +22,62 @@ public interface IModelSearchService {
 	 */
 	Set<EObject> search(String query, String project) throws SpecmateException;
 
+	/**
+	 * Searches for model objects and returns the stored fields of the hits,
+	 * without loading the model objects. The hits are ordered by relevance.
+	 *
+	 * @param query
+	 *            the query in the lucene query syntax
+	 * @param project
+	 *            the project to search in
+	 * @param pageSize
+	 *            the maximal number of hits to return
+	 * @param cursor
+	 *            the cursor of the previous page, or <code>null</code> to
+	 *            request the first page
+	 * @return the page of hits
+	 * @throws SpecmateException
+	 */
+	SearchPage searchHits(String query, String project, int pageSize, String cursor) throws SpecmateException;
+
+	/**
+	 * Returns suggestions for requirements and models whose name contains a
+	 * word that starts with the given prefix, or whose external id starts
+	 * with the prefix.
+	 *
+	 * @param prefix
+	 *            the text typed so far
+	 * @param project
+	 *            the project to suggest from
+	 * @param count
+	 *            the maximal number of suggestions
+	 * @return the suggestions, matches at the beginning of a name first
+	 */
+	List<Suggestion> suggest(String prefix, String project, int count);
+
+	/**
+	 * Returns the requirements of a project that are near-duplicates of a
+	 * requirement, i.e. that share most of their wording. The score of a hit
+	 * is the estimated share of common word pairs.
+	 *
+	 * @param id
+	 *            the unique id of the requirement
+	 * @param project
+	 *            the project of the requirement
+	 * @param count
+	 *            the maximal number of hits
+	 * @return the similar requirements, the most similar first
+	 * @throws SpecmateException
+	 */
+	List<SearchHit> findSimilar(String id, String project, int count) throws SpecmateException;
+
+	/**
+	 * Returns the status of the search as a JSON object: the backlog of the
+	 * indexing, the number of documents and size of the index, the latencies
+	 * of the searches per project and the progress of a reindex.
+	 */
+	String getStatus();
+
 	void clear() throws SpecmateException;
 
 	void startReIndex() throws SpecmateException;
@@ -0,0 +1,57 @@
+package com.specmate.search.api;
+
+/**
+ * A search result that is read from the stored fields of the index, without
+ * loading the model object.
+ */
+public class SearchHit {
+
+	private final String id;
+	private final String url;
+	private final String className;
+	private final String name;
+	private final String snippet;
+	private final float score;
+
+	public SearchHit(String id, String url, String className, String name, String snippet, float score) {
+		this.id = id;
+		this.url = url;
+		this.className = className;
+		this.name = name;
+		this.snippet = snippet;
+		this.score = score;
+	}
+
+	/** Returns the unique id of the model object */
+	public String getId() {
+		return id;
+	}
+
+	/** Returns the url of the model object */
+	public String getUrl() {
+		return url;
+	}
+
+	/** Returns the name of the class of the model object */
+	public String getClassName() {
+		return className;
+	}
+
+	/** Returns the name of the model object */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns an excerpt of the description with the matched terms enclosed in
+	 * <code>&lt;em&gt;</code> tags. The text of the excerpt is HTML-escaped.
+	 */
+	public String getSnippet() {
+		return snippet;
+	}
+
+	/** Returns the relevance score */
+	public float getScore() {
+		return score;
+	}
+}
@@ -0,0 +1,35 @@
+package com.specmate.search.api;
+
+import java.util.List;
+
+/** A page of search hits */
+public class SearchPage {
+
+	private final List<SearchHit> hits;
+	private final long totalHits;
+	private final String cursor;
+
+	public SearchPage(List<SearchHit> hits, long totalHits, String cursor) {
+		this.hits = hits;
+		this.totalHits = totalHits;
+		this.cursor = cursor;
+	}
+
+	/** Returns the hits of this page */
+	public List<SearchHit> getHits() {
+		return hits;
+	}
+
+	/** Returns the total number of hits of the query */
+	public long getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * Returns the cursor to request the next page, or <code>null</code> if
+	 * this is the last page
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+}
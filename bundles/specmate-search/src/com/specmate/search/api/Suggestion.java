@@ -0,0 +1,47 @@
+package com.specmate.search.api;
+
+/**
+ * A suggestion to complete a search query, read from the suggester without
+ * loading the model object.
+ */
+public class Suggestion {
+
+	private final String text;
+	private final String id;
+	private final String url;
+	private final String className;
+	private final String name;
+
+	public Suggestion(String text, String id, String url, String className, String name) {
+		this.text = text;
+		this.id = id;
+		this.url = url;
+		this.className = className;
+		this.name = name;
+	}
+
+	/** Returns the suggested text, the name or the external id */
+	public String getText() {
+		return text;
+	}
+
+	/** Returns the unique id of the model object */
+	public String getId() {
+		return id;
+	}
+
+	/** Returns the url of the model object */
+	public String getUrl() {
+		return url;
+	}
+
+	/** Returns the name of the class of the model object */
+	public String getClassName() {
+		return className;
+	}
+
+	/** Returns the name of the model object */
+	public String getName() {
+		return name;
+	}
+}
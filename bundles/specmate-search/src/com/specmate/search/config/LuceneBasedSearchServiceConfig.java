@@ -33,6 +33,59 @@ public class LuceneBasedSearchServiceConfig {
 	/** Config key for the fields that are allowed to be searchable. */
 	public static final String KEY_ALLOWED_FIELDS = "search.allowedFields";
 
+	/**
+	 * Config key for the maximal time in milliseconds until a change becomes
+	 * visible to searches.
+	 */
+	public static final String KEY_REFRESH_MAX_STALE = "search.refresh.maxStaleMillis";
+
+	/**
+	 * Config key for the minimal time in milliseconds between two refreshes
+	 * while a search waits for a change.
+	 */
+	public static final String KEY_REFRESH_MIN_STALE = "search.refresh.minStaleMillis";
+
+	/** Config key for the time in seconds between two commits of the index. */
+	public static final String KEY_COMMIT_INTERVAL = "search.commitInterval";
+
+	/**
+	 * Config key for the maximal number of index operations that wait to be
+	 * written.
+	 */
+	public static final String KEY_INDEX_QUEUE_SIZE = "search.index.queueSize";
+
+	/** Config key for the maximal number of index operations in one batch. */
+	public static final String KEY_INDEX_BATCH_SIZE = "search.index.batchSize";
+
+	/**
+	 * Config key for the time in milliseconds to collect index operations for
+	 * a batch.
+	 */
+	public static final String KEY_INDEX_COALESCE_MILLIS = "search.index.coalesceMillis";
+
+	/**
+	 * Config key for the time in milliseconds before the document of a parent
+	 * is updated after a change of its children.
+	 */
+	public static final String KEY_INDEX_PARENT_DELAY_MILLIS = "search.index.parentDelayMillis";
+
+	/** Config key for the number of threads that index objects on a reindex. */
+	public static final String KEY_REINDEX_THREADS = "search.reindex.threads";
+
+	/** Config key for the maximal number of cached parsed queries. */
+	public static final String KEY_QUERY_CACHE_SIZE = "search.cache.queries";
+
+	/**
+	 * Config key for the maximal number of cached search results per project.
+	 */
+	public static final String KEY_RESULT_CACHE_SIZE = "search.cache.results";
+
+	/**
+	 * Config key for the minimal estimated similarity in percent of a similar
+	 * requirement.
+	 */
+	public static final String KEY_SIMILAR_MIN_SIMILARITY = "search.similar.minSimilarity";
+
 	/** The configuration admin intance */
 	private ConfigurationAdmin configurationAdmin;
 
@@ -61,6 +114,27 @@ public class LuceneBasedSearchServiceConfig {
 		properties.put(KEY_MAX_SEARCH_RESULTS, maxSearchResults);
 
 		properties.put(KEY_ALLOWED_FIELDS, allowedFields);
+
+		properties.put(KEY_REFRESH_MAX_STALE, configService.getConfigurationPropertyInt(KEY_REFRESH_MAX_STALE, 1000));
+
+		properties.put(KEY_REFRESH_MIN_STALE, configService.getConfigurationPropertyInt(KEY_REFRESH_MIN_STALE, 25));
+
+		properties.put(KEY_COMMIT_INTERVAL, configService.getConfigurationPropertyInt(KEY_COMMIT_INTERVAL, 300));
+
+		properties.put(KEY_INDEX_QUEUE_SIZE, configService.getConfigurationPropertyInt(KEY_INDEX_QUEUE_SIZE, 10000));
+
+		properties.put(KEY_INDEX_BATCH_SIZE, configService.getConfigurationPropertyInt(KEY_INDEX_BATCH_SIZE, 1000));
+
+		properties.put(KEY_INDEX_COALESCE_MILLIS,
+				configService.getConfigurationPropertyInt(KEY_INDEX_COALESCE_MILLIS, 100));
+		properties.put(KEY_INDEX_PARENT_DELAY_MILLIS,
+				configService.getConfigurationPropertyInt(KEY_INDEX_PARENT_DELAY_MILLIS, 1000));
+
+		properties.put(KEY_REINDEX_THREADS, configService.getConfigurationPropertyInt(KEY_REINDEX_THREADS, 2));
+		properties.put(KEY_QUERY_CACHE_SIZE, configService.getConfigurationPropertyInt(KEY_QUERY_CACHE_SIZE, 1000));
+		properties.put(KEY_RESULT_CACHE_SIZE, configService.getConfigurationPropertyInt(KEY_RESULT_CACHE_SIZE, 100));
+		properties.put(KEY_SIMILAR_MIN_SIMILARITY,
+				configService.getConfigurationPropertyInt(KEY_SIMILAR_MIN_SIMILARITY, 50));
 		logService.log(LogService.LOG_DEBUG,
 				"Configuring LuceneBasedModelSearchService with:\n" + OSGiUtil.configDictionaryToString(properties));
 		OSGiUtil.configureService(configurationAdmin, PID, properties);
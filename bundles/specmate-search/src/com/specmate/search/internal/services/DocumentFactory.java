@@ -1,60 +1,203 @@
 package com.specmate.search.internal.services;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 
 import com.specmate.model.base.BasePackage;
+import com.specmate.model.processes.ProcessesPackage;
+import com.specmate.model.requirements.RequirementsPackage;
+import com.specmate.model.testspecification.TestspecificationPackage;
 
 public class DocumentFactory {
 
-	public static Document create(String className, String id, String project,
+	/** The class whose documents can be searched for similar documents */
+	public static final String SIMILARITY_CLASS = "Requirement";
+
+	/**
+	 * Stored text with term vectors, so similar documents are searched
+	 * without analyzing the text again
+	 */
+	private static final FieldType TEXT_WITH_TERM_VECTORS = new FieldType(TextField.TYPE_STORED);
+
+	static {
+		TEXT_WITH_TERM_VECTORS.setStoreTermVectors(true);
+		TEXT_WITH_TERM_VECTORS.freeze();
+	}
+
+	/**
+	 * The classes of child objects whose text is indexed in the content field
+	 * of their parent, with the attributes that are indexed.
+	 */
+	private static final Map<EClass, List<EAttribute>> CHILD_CONTENT = new LinkedHashMap<>();
+
+	static {
+		CHILD_CONTENT.put(RequirementsPackage.Literals.CEG_NODE,
+				Arrays.asList(BasePackage.Literals.INAMED__NAME, BasePackage.Literals.IDESCRIBED__DESCRIPTION,
+						RequirementsPackage.Literals.CEG_NODE__VARIABLE,
+						RequirementsPackage.Literals.CEG_NODE__CONDITION));
+		CHILD_CONTENT.put(ProcessesPackage.Literals.PROCESS_STEP,
+				Arrays.asList(BasePackage.Literals.INAMED__NAME, BasePackage.Literals.IDESCRIBED__DESCRIPTION,
+						ProcessesPackage.Literals.PROCESS_STEP__EXPECTED_OUTCOME));
+		CHILD_CONTENT.put(ProcessesPackage.Literals.PROCESS_DECISION,
+				Arrays.asList(BasePackage.Literals.INAMED__NAME, BasePackage.Literals.IDESCRIBED__DESCRIPTION));
+		CHILD_CONTENT.put(TestspecificationPackage.Literals.TEST_STEP,
+				Arrays.asList(BasePackage.Literals.INAMED__NAME, BasePackage.Literals.IDESCRIBED__DESCRIPTION,
+						TestspecificationPackage.Literals.TEST_STEP__EXPECTED_OUTCOME));
+	}
+
+	/**
+	 * The features whose changes affect a document: the indexed attributes,
+	 * the id that is part of the url, the contents of a parent and the
+	 * attributes of its children.
+	 */
+	private static final Set<EStructuralFeature> INDEXED_FEATURES = new HashSet<>(
+			Arrays.asList(BasePackage.Literals.IID__ID, BasePackage.Literals.INAMED__NAME,
+					BasePackage.Literals.IDESCRIBED__DESCRIPTION, BasePackage.Literals.IEXTERNAL__EXT_ID,
+					BasePackage.Literals.ICONTAINER__CONTENTS));
+
+	static {
+		for (List<EAttribute> attributes : CHILD_CONTENT.values()) {
+			INDEXED_FEATURES.addAll(attributes);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the text of the object is indexed with its
+	 * parent
+	 */
+	public static boolean isContentChild(EObject object) {
+		return CHILD_CONTENT.containsKey(object.eClass());
+	}
+
+	/** Returns <code>true</code> if a change of the feature affects a document */
+	public static boolean isIndexedFeature(EStructuralFeature feature) {
+		return INDEXED_FEATURES.contains(feature);
+	}
+
+	/**
+	 * Creates the document for a new model object. A new object has no
+	 * children yet, their content is added when they are created.
+	 */
+	public static Document create(String className, String id, String project, String url,
 			Map<EStructuralFeature, Object> featureMap) {
 		switch (className) {
 		case "TestProcedure":
-			return createTestProcedureDocument(className, id, project, featureMap);
+			return createTestProcedureDocument(className, id, project, url, featureMap);
 		default:
-			return createGenericDocument(className, id, project, featureMap);
+			return createGenericDocument(className, id, project, url, featureMap);
 		}
 	}
 
-	private static Document createDocument(String className, String id, String project, String extId, String name,
-			String description) {
+	/**
+	 * Creates the document for the current state of a model object, including
+	 * the text of its children.
+	 */
+	public static Document create(EObject object, String id, String project, String url) {
+		Map<EStructuralFeature, Object> featureMap = new HashMap<>();
+		for (EAttribute attribute : object.eClass().getEAllAttributes()) {
+			featureMap.put(attribute, object.eGet(attribute));
+		}
+		Document doc = create(object.eClass().getName(), id, project, url, featureMap);
+		String content = getChildContent(object);
+		if (!content.isEmpty()) {
+			doc.add(new Field(FieldConstants.FIELD_CONTENT, content, TextField.TYPE_NOT_STORED));
+		}
+		return doc;
+	}
+
+	/** Returns the text of the children that is indexed with their parent */
+	private static String getChildContent(EObject object) {
+		StringBuilder content = new StringBuilder();
+		for (EObject child : object.eContents()) {
+			List<EAttribute> attributes = CHILD_CONTENT.get(child.eClass());
+			if (attributes == null) {
+				continue;
+			}
+			for (EAttribute attribute : attributes) {
+				Object value = child.eGet(attribute);
+				if (value instanceof String && !((String) value).isEmpty()) {
+					content.append(value).append('\n');
+				}
+			}
+		}
+		return content.toString();
+	}
+
+	/** Returns the text that is compared to find similar documents */
+	public static String getSimilarityText(String name, String description) {
+		return (name == null ? "" : name) + "\n" + (description == null ? "" : description);
+	}
+
+	private static Document createDocument(String className, String id, String project, String url, String extId,
+			String name, String description) {
 		Document doc = new Document();
 		// Use StringField for id, otherwise delete won't work. See
 		// https://stackoverflow.com/questions/43090032/lucene-delete-by-id-not-working
 		doc.add(new Field(FieldConstants.FIELD_ID, id, StringField.TYPE_STORED));
-		doc.add(new Field(FieldConstants.FIELD_PROJECT, project, TextField.TYPE_STORED));
+		// Tie breaker for paging, in a separate field as documents of earlier
+		// versions have an id field without doc values
+		doc.add(new SortedDocValuesField(FieldConstants.FIELD_SORT_ID, new BytesRef(id)));
+		// The project is matched exactly, not as analyzed text
+		doc.add(new Field(FieldConstants.FIELD_PROJECT, project, StringField.TYPE_STORED));
 		doc.add(new Field("type", className.toLowerCase(), TextField.TYPE_STORED));
+		doc.add(new StoredField(FieldConstants.FIELD_CLASS_NAME, className));
+		if (url != null) {
+			doc.add(new StoredField(FieldConstants.FIELD_URL, url));
+		}
 		if (extId != null) {
 			doc.add(new Field(FieldConstants.FIELD_EXTID, extId, TextField.TYPE_STORED));
 		}
+		// The analyzer converts the terms to lower case, the stored values
+		// keep their case for the search hits
+		boolean similarity = SIMILARITY_CLASS.equals(className);
+		FieldType textType = similarity ? TEXT_WITH_TERM_VECTORS : TextField.TYPE_STORED;
 		if (name != null) {
-			doc.add(new Field(FieldConstants.FIELD_NAME, name.toLowerCase(), TextField.TYPE_STORED));
+			doc.add(new Field(FieldConstants.FIELD_NAME, name, textType));
 		}
 		if (description != null) {
-			doc.add(new Field(FieldConstants.FIELD_DESCRIPTION, description.toLowerCase(), TextField.TYPE_STORED));
+			doc.add(new Field(FieldConstants.FIELD_DESCRIPTION, description, textType));
+		}
+		if (similarity) {
+			long[] signature = MinHash.signature(getSimilarityText(name, description));
+			if (signature != null) {
+				for (String band : MinHash.bands(signature)) {
+					doc.add(new Field(FieldConstants.FIELD_SIMILARITY_BAND, band, StringField.TYPE_NOT_STORED));
+				}
+			}
 		}
 		return doc;
 	}
 
-	private static Document createGenericDocument(String className, String id, String project,
+	private static Document createGenericDocument(String className, String id, String project, String url,
 			Map<EStructuralFeature, Object> featureMap) {
 		String name = (String) featureMap.get(BasePackage.Literals.INAMED__NAME);
 		String description = (String) featureMap.get(BasePackage.Literals.IDESCRIBED__DESCRIPTION);
 		String extId = (String) featureMap.get(BasePackage.Literals.IEXTERNAL__EXT_ID);
-		return createDocument(className, id, project, extId, name, description);
+		return createDocument(className, id, project, url, extId, name, description);
 	}
 
-	private static Document createTestProcedureDocument(String className, String id, String project,
+	private static Document createTestProcedureDocument(String className, String id, String project, String url,
 			Map<EStructuralFeature, Object> featureMap) {
-		// TODO include test steps in document
 		String name = (String) featureMap.get(BasePackage.Literals.INAMED__NAME);
 		String description = (String) featureMap.get(BasePackage.Literals.IDESCRIBED__DESCRIPTION);
-		return createDocument(className, id, project, null, name, description);
+		return createDocument(className, id, project, url, null, name, description);
 	}
 }
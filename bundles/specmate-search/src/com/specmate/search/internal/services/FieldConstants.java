@@ -14,6 +14,19 @@ public class FieldConstants {
 
 	public static final String FIELD_PROJECT = "project";
 
-	public static final String[] SEARCH_FIELDS = { FIELD_DESCRIPTION, FIELD_NAME, FIELD_EXTID, FIELD_TYPE };
+	public static final String FIELD_URL = "url";
+
+	public static final String FIELD_CLASS_NAME = "className";
+
+	public static final String FIELD_SORT_ID = "sortId";
+
+	/** The text of the child objects, e.g. the nodes of a model */
+	public static final String FIELD_CONTENT = "content";
+
+	/** The MinHash band terms of a requirement, see {@link MinHash} */
+	public static final String FIELD_SIMILARITY_BAND = "similarityBand";
+
+	public static final String[] SEARCH_FIELDS = { FIELD_DESCRIPTION, FIELD_NAME, FIELD_EXTID, FIELD_TYPE,
+			FIELD_CONTENT };
 
 }
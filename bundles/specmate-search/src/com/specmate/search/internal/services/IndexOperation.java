@@ -0,0 +1,99 @@
+package com.specmate.search.internal.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+/**
+ * A pending change of the search index for a single model object.
+ */
+public class IndexOperation {
+
+	/** The kinds of index operations */
+	public enum EOperationKind {
+		/** Index a new object from the features of its creation event */
+		ADD,
+		/** Index the current state of an object */
+		UPDATE,
+		/** Remove an object from the index */
+		DELETE
+	}
+
+	private final EOperationKind kind;
+	private final String id;
+	private final String project;
+	private final String url;
+	private final String className;
+	private final Map<EStructuralFeature, Object> featureMap;
+	private final long enqueueTime;
+
+	public IndexOperation(EOperationKind kind, String id, String project, String url, String className,
+			Map<EStructuralFeature, Object> featureMap) {
+		this(kind, id, project, url, className, featureMap, System.currentTimeMillis());
+	}
+
+	private IndexOperation(EOperationKind kind, String id, String project, String url, String className,
+			Map<EStructuralFeature, Object> featureMap, long enqueueTime) {
+		this.kind = kind;
+		this.id = id;
+		this.project = project;
+		this.url = url;
+		this.className = className;
+		this.featureMap = featureMap;
+		this.enqueueTime = enqueueTime;
+	}
+
+	/**
+	 * Combines this operation with a later operation for the same object. In
+	 * general, the later operation describes the newer state and replaces this
+	 * operation. If a new object is updated before it has been indexed, the
+	 * changed values are merged into the features of the creation event, so
+	 * the object does not have to be read again. This is only possible for
+	 * single-valued features, as the events of multi-valued features do not
+	 * contain the complete value. The enqueue time of this operation is kept,
+	 * so the lag of the index is not underestimated.
+	 */
+	public IndexOperation coalesce(IndexOperation later) {
+		long time = Math.min(enqueueTime, later.enqueueTime);
+		if (kind == EOperationKind.ADD && later.kind == EOperationKind.UPDATE && featureMap != null
+				&& later.featureMap != null
+				&& later.featureMap.keySet().stream().noneMatch(EStructuralFeature::isMany)) {
+			Map<EStructuralFeature, Object> mergedFeatures = new HashMap<>(featureMap);
+			mergedFeatures.putAll(later.featureMap);
+			return new IndexOperation(kind, id, project, url, className, mergedFeatures, time);
+		}
+		return new IndexOperation(later.kind, later.id, later.project, later.url, later.className,
+				later.featureMap, time);
+	}
+
+	public EOperationKind getKind() {
+		return kind;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getProject() {
+		return project;
+	}
+
+	/** Returns the url of the object, if known from the event */
+	public String getUrl() {
+		return url;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public Map<EStructuralFeature, Object> getFeatureMap() {
+		return featureMap;
+	}
+
+	/** Returns the time in milliseconds when the operation was enqueued */
+	public long getEnqueueTime() {
+		return enqueueTime;
+	}
+}
@@ -0,0 +1,142 @@
+package com.specmate.search.internal.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * The directories of an index below a location. The file <code>current</code>
+ * names the directory of the index that is searched. If the file does not
+ * exist, the index is located directly in the location, as written by earlier
+ * versions. A reindex builds a new index in a separate directory and makes it
+ * the current index when it is complete.
+ */
+public class IndexStore {
+
+	/** File that contains the name of the searched index directory */
+	private static final String CURRENT_FILE = "current";
+
+	/** Prefix of the index directories */
+	private static final String INDEX_PREFIX = "index-";
+
+	/** The location of the index directories */
+	private final Path location;
+
+	public IndexStore(Path location) throws IOException {
+		this.location = location;
+		Files.createDirectories(location);
+	}
+
+	/** Returns the directory of the searched index */
+	public Path getCurrentIndexPath() throws IOException {
+		Path currentFile = location.resolve(CURRENT_FILE);
+		if (Files.exists(currentFile)) {
+			String name = new String(Files.readAllBytes(currentFile), StandardCharsets.UTF_8).trim();
+			if (!name.isEmpty()) {
+				return location.resolve(name);
+			}
+		}
+		return location;
+	}
+
+	/** Creates a new, empty index directory */
+	public synchronized Path createIndexPath() throws IOException {
+		int generation = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(location, INDEX_PREFIX + "*")) {
+			for (Path path : stream) {
+				try {
+					generation = Math.max(generation,
+							Integer.parseInt(path.getFileName().toString().substring(INDEX_PREFIX.length())));
+				} catch (NumberFormatException e) {
+					// not an index directory
+				}
+			}
+		}
+		Path path = location.resolve(INDEX_PREFIX + (generation + 1));
+		Files.createDirectories(path);
+		return path;
+	}
+
+	/**
+	 * Makes the given index the searched index. The index has to be committed
+	 * before.
+	 */
+	public void setCurrentIndex(Path index) throws IOException {
+		Path tempFile = location.resolve(CURRENT_FILE + ".tmp");
+		Files.write(tempFile, Collections.singletonList(index.getFileName().toString()), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+		Files.move(tempFile, location.resolve(CURRENT_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/** Returns <code>true</code> if the current index has been committed */
+	public boolean hasIndex() throws IOException {
+		Path current = getCurrentIndexPath();
+		if (!Files.isDirectory(current)) {
+			return false;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(current, "segments_*")) {
+			return stream.iterator().hasNext();
+		}
+	}
+
+	/**
+	 * Deletes all index directories except the searched index. An index that
+	 * is built by a reindex is not searched yet, hence this must not be called
+	 * during a reindex of the index. Deleting files that are still open may
+	 * fail on some platforms, such files are deleted the next time.
+	 */
+	public void deleteUnusedIndexes() throws IOException {
+		Path current = getCurrentIndexPath();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(location, INDEX_PREFIX + "*")) {
+			for (Path path : stream) {
+				if (Files.isDirectory(path) && !path.equals(current)) {
+					deleteRecursively(path);
+				}
+			}
+		}
+		if (!current.equals(location)) {
+			// remove an index of an earlier version in the location itself
+			deleteIndexFiles();
+		}
+	}
+
+	/**
+	 * Deletes all index directories and index files. Other files in the
+	 * location are kept.
+	 */
+	public void deleteIndexes() throws IOException {
+		Files.deleteIfExists(location.resolve(CURRENT_FILE));
+		deleteUnusedIndexes();
+		deleteIndexFiles();
+	}
+
+	/** Deletes the files of an index in the location itself */
+	private void deleteIndexFiles() throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(location,
+				path -> Files.isRegularFile(path) && isIndexFile(path.getFileName().toString()))) {
+			for (Path path : stream) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/** Returns <code>true</code> if the file name is used by lucene */
+	private boolean isIndexFile(String name) {
+		return name.startsWith("segments") || name.startsWith("_") || name.equals("write.lock");
+	}
+
+	/** Deletes a directory with all its content */
+	public static void deleteRecursively(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+}
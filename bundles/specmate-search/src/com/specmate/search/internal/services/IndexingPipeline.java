@@ -0,0 +1,224 @@
+package com.specmate.search.internal.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.metrics.ICounter;
+import com.specmate.metrics.IGauge;
+import com.specmate.metrics.IMetricsService;
+
+/**
+ * Queue of index operations that are written to the index in batches by a
+ * single thread. The queue is bounded, hence producers block if the index
+ * cannot keep up. Operations for the same object that arrive within the
+ * coalescing window are combined, so a burst of changes to one object leads
+ * to a single write.
+ */
+public class IndexingPipeline {
+
+	/** Writes a batch of coalesced index operations */
+	public interface IBatchWriter {
+		void write(Collection<IndexOperation> operations);
+	}
+
+	/** Time in milliseconds to wait for the thread on shutdown */
+	private static final long SHUTDOWN_TIMEOUT = 10000;
+
+	/**
+	 * Time in milliseconds the thread waits for an operation before checking
+	 * if it should stop. The thread is not interrupted, as an interrupt during
+	 * a write would close the files of the index.
+	 */
+	private static final long POLL_INTERVAL = 500;
+
+	private final BlockingQueue<IndexOperation> queue;
+	private final int batchSize;
+	private final long coalesceNanos;
+	private final IBatchWriter writer;
+	private final LogService logService;
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	/** Age in milliseconds of the oldest operation of the last batch */
+	private volatile long lagMillis;
+
+	/** Lock to keep the enqueue order and the enqueue count in sync */
+	private final Object enqueueLock = new Object();
+
+	/** Number of enqueued operations, guarded by enqueueLock */
+	private long enqueuedCount;
+
+	/** Number of written operations, guarded by this */
+	private long processedCount;
+
+	private final IGauge queueDepthGauge;
+	private final IGauge lagGauge;
+	private final IGauge coalescingRatioGauge;
+	private final ICounter operationCounter;
+	private final ICounter writeCounter;
+
+	public IndexingPipeline(int queueSize, int batchSize, int coalesceMillis, IBatchWriter writer,
+			IMetricsService metricsService, LogService logService) throws SpecmateException {
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.batchSize = batchSize;
+		this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(coalesceMillis);
+		this.writer = writer;
+		this.logService = logService;
+		this.queueDepthGauge = metricsService.createGauge("search_index_queue_depth",
+				"The number of index operations waiting to be written");
+		this.lagGauge = metricsService.createGauge("search_index_lag_seconds",
+				"The age of the oldest operation of the last written index batch");
+		this.coalescingRatioGauge = metricsService.createGauge("search_index_coalescing_ratio",
+				"The number of index operations per write in the last index batch");
+		this.operationCounter = metricsService.createCounter("search_index_operations",
+				"The number of enqueued index operations");
+		this.writeCounter = metricsService.createCounter("search_index_writes",
+				"The number of index operations written after coalescing");
+		this.thread = new Thread(this::run, "lucene-indexing");
+		this.thread.setDaemon(true);
+	}
+
+	/** Starts the thread that writes the operations */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Stops the pipeline. Operations that are still queued are written before
+	 * the thread terminates.
+	 */
+	public void stop() {
+		running = false;
+		try {
+			thread.join(SHUTDOWN_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Enqueues an operation. Blocks while the queue is full.
+	 */
+	public void enqueue(IndexOperation operation) throws InterruptedException {
+		synchronized (enqueueLock) {
+			queue.put(operation);
+			enqueuedCount++;
+		}
+		queueDepthGauge.inc();
+		operationCounter.inc();
+	}
+
+	/** Returns the number of operations waiting to be written */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the age in milliseconds of the oldest operation of the last
+	 * written batch
+	 */
+	public long getLagMillis() {
+		return lagMillis;
+	}
+
+	/**
+	 * Waits until all operations that have been enqueued so far are written.
+	 *
+	 * @param timeoutMillis
+	 *            the maximal time to wait, a negative value to wait without
+	 *            limit
+	 * @return <code>false</code> if the operations have not been written
+	 *         within the given time
+	 */
+	public boolean awaitProcessed(long timeoutMillis) throws InterruptedException {
+		long target;
+		synchronized (enqueueLock) {
+			target = enqueuedCount;
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (this) {
+			while (processedCount < target) {
+				if (timeoutMillis < 0) {
+					wait();
+				} else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						return false;
+					}
+					wait(remaining);
+				}
+			}
+		}
+		return true;
+	}
+
+	private void run() {
+		while (running) {
+			try {
+				IndexOperation first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				Map<String, IndexOperation> batch = new LinkedHashMap<>();
+				addToBatch(batch, first);
+				int taken = 1;
+				long deadline = System.nanoTime() + coalesceNanos;
+				while (taken < batchSize) {
+					long remaining = deadline - System.nanoTime();
+					IndexOperation next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+							: queue.poll();
+					if (next == null) {
+						break;
+					}
+					addToBatch(batch, next);
+					taken++;
+				}
+				writeBatch(batch, taken);
+			} catch (InterruptedException e) {
+				logService.log(LogService.LOG_WARNING, "Indexing thread interrupted.");
+				break;
+			}
+		}
+		List<IndexOperation> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			Map<String, IndexOperation> batch = new LinkedHashMap<>();
+			for (IndexOperation operation : remaining) {
+				addToBatch(batch, operation);
+			}
+			writeBatch(batch, remaining.size());
+		}
+	}
+
+	private void addToBatch(Map<String, IndexOperation> batch, IndexOperation operation) {
+		IndexOperation previous = batch.get(operation.getId());
+		batch.put(operation.getId(), previous == null ? operation : previous.coalesce(operation));
+	}
+
+	private void writeBatch(Map<String, IndexOperation> batch, int operationCount) {
+		queueDepthGauge.dec(operationCount);
+		try {
+			writer.write(batch.values());
+		} catch (RuntimeException e) {
+			logService.log(LogService.LOG_ERROR, "Could not write batch of index operations.", e);
+		}
+		long oldest = batch.values().stream().mapToLong(IndexOperation::getEnqueueTime).min().getAsLong();
+		lagMillis = System.currentTimeMillis() - oldest;
+		lagGauge.set(lagMillis / 1000.0);
+		coalescingRatioGauge.set((double) operationCount / batch.size());
+		writeCounter.inc(batch.size());
+		synchronized (this) {
+			processedCount += operationCount;
+			notifyAll();
+		}
+	}
+}
@@ -1,13 +1,30 @@
 package com.specmate.search.internal.services;
 
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_COMMIT_INTERVAL;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_INDEX_BATCH_SIZE;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_INDEX_COALESCE_MILLIS;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_INDEX_PARENT_DELAY_MILLIS;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_INDEX_QUEUE_SIZE;
 import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_LUCENE_DB_LOCATION;
 import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_MAX_SEARCH_RESULTS;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_QUERY_CACHE_SIZE;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_REFRESH_MAX_STALE;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_REFRESH_MIN_STALE;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_REINDEX_THREADS;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_RESULT_CACHE_SIZE;
+import static com.specmate.search.config.LuceneBasedSearchServiceConfig.KEY_SIMILAR_MIN_SIMILARITY;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -16,33 +33,32 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.classic.QueryParser.Operator;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.SearcherManager;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.eclipse.emf.cdo.util.ObjectNotFoundException;
-import org.eclipse.emf.common.util.TreeIterator;
-import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.json.JSONObject;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
@@ -57,13 +73,23 @@ import com.specmate.common.SpecmateInvalidQueryException;
 import com.specmate.common.SpecmateValidationException;
 import com.specmate.emfrest.api.IRestService;
 import com.specmate.emfrest.api.RestServiceBase;
+import com.specmate.metrics.IMetricsService;
 import com.specmate.model.support.util.SpecmateEcoreUtil;
 import com.specmate.persistency.IPersistencyService;
 import com.specmate.persistency.IView;
-import com.specmate.persistency.event.ModelEvent;
+import com.specmate.persistency.event.CommitEvent;
+import com.specmate.persistency.event.CommitEvent.ObjectChange;
 import com.specmate.rest.RestResult;
 import com.specmate.search.api.IModelSearchService;
+import com.specmate.search.api.SearchHit;
+import com.specmate.search.api.SearchPage;
+import com.specmate.search.api.Suggestion;
 import com.specmate.search.config.LuceneBasedSearchServiceConfig;
+import com.specmate.search.internal.services.IndexOperation.EOperationKind;
+import com.specmate.search.internal.services.Reindexer.EReindexState;
+import com.specmate.search.internal.services.Reindexer.IShardBuilder;
+import com.specmate.search.internal.services.SearchMetrics.EPhase;
+import com.specmate.urihandler.IURIFactory;
 
 /**
  * Service that provides a search facility via Apache Lucene. It registers with
@@ -74,17 +100,34 @@ import com.specmate.search.config.LuceneBasedSearchServiceConfig;
  */
 @Component(configurationPid = LuceneBasedSearchServiceConfig.PID, configurationPolicy = ConfigurationPolicy.REQUIRE, service = {
 		IModelSearchService.class, EventHandler.class, IRestService.class }, property = {
-				"event.topics=com/specmate/model/notification", "event.topics=com/specmate/model/notification/*" })
+				"event.topics=" + CommitEvent.TOPIC })
 public class LuceneBasedModelSearchService extends RestServiceBase implements EventHandler, IModelSearchService {
 
 	/** The name of the UserSession class */
 	private static final String USER_SESSION = "UserSession";
 
-	/** Time to wait in seconds before committing the changes to the index */
-	private static final int COMMIT_RATE = 30;
+	/** Query parameter to request the progress of the reindex */
+	private static final String PROGRESS_PARAM = "progress";
 
-	/** Pattern to extract to project name from an event topic */
-	Pattern pattern = Pattern.compile("com\\/specmate\\/model\\/notification\\/([^\\/]+)");
+	/** Query parameter to reindex a single project */
+	private static final String PROJECT_PARAM = "project";
+
+	/** Time in milliseconds to wait for the reindex on shutdown */
+	private static final long SHUTDOWN_TIMEOUT = 10000;
+
+	/** The stored fields that are read to resolve a hit */
+	private static final Set<String> ID_FIELDS = Collections.singleton(FieldConstants.FIELD_ID);
+
+	/** The stored fields that are read for a search hit */
+	private static final Set<String> HIT_FIELDS = new HashSet<>(
+			Arrays.asList(FieldConstants.FIELD_ID, FieldConstants.FIELD_URL, FieldConstants.FIELD_CLASS_NAME,
+					FieldConstants.FIELD_NAME, FieldConstants.FIELD_DESCRIPTION));
+
+	/** Interval in seconds of the update of the index size metrics */
+	private static final long INDEX_METRICS_INTERVAL = 60;
+
+	/** Number of candidates that are compared per requested similar requirement */
+	private static final int SIMILAR_CANDIDATE_FACTOR = 4;
 
 	/** The persistency service to access the model data */
 	private IPersistencyService persistencyService;
@@ -92,14 +135,34 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 	/** The view through which the model data is accessed. */
 	private IView view;
 
-	/** The lucene directory. */
-	private Directory directory;
+	/** The shards of the lucene database, one per project */
+	private ProjectShards shards;
+
+	/** The progress of a reindex of all projects */
+	private ReindexCheckpoint checkpoint;
+
+	/** Lock that guards writes and commits against replacing a shard */
+	private final Object indexLock = new Object();
+
+	/**
+	 * The new shards that are built by a running reindex, guarded by
+	 * indexLock. Changes of their projects are written to the searched and
+	 * the new shard.
+	 */
+	private Map<String, SearchIndex> reindexShards = new HashMap<>();
 
-	/** Index writer to modify the lucene database */
-	private IndexWriter indexWriter;
+	/**
+	 * The latest operation for each object changed while the new shard of a
+	 * project is built, guarded by indexLock
+	 */
+	private Map<String, Map<String, IndexOperation>> reindexChanges = new HashMap<>();
 
-	/** Search manager to perform searches on the lucene database. */
-	private SearcherManager searcherManager;
+	/**
+	 * The projects whose changes are written to the legacy index until their
+	 * shards are built, <code>null</code> for all projects without a shard.
+	 * Guarded by indexLock.
+	 */
+	private Set<String> legacyProjects;
 
 	/** Service for message logging. */
 	private LogService logService;
@@ -107,6 +170,15 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 	/** Periodic scheduler for the periodic commit */
 	private ScheduledExecutorService scheduledExecutor;
 
+	/** Maximal time in milliseconds until a change becomes visible */
+	private int refreshMaxStaleMillis;
+
+	/** Minimal time in milliseconds between refreshes when a search waits */
+	private int refreshMinStaleMillis;
+
+	/** Time in seconds between two commits of the index */
+	private int commitInterval;
+
 	/** Location of the lucene database */
 	private String luceneDbLocation;
 
@@ -116,15 +188,63 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 	/** The analyzer that is used. */
 	private StandardAnalyzer analyzer;
 
-	/** Executor for the indexing jobs */
-	private ExecutorService indexThreadPool;
+	/** Compiles and caches the queries */
+	private QueryCompiler queryCompiler;
+
+	/** Maximal number of cached queries */
+	private int queryCacheSize;
+
+	/** Maximal number of cached search results per shard */
+	private int resultCacheSize;
+
+	/** Suggests requirements and models while a query is typed */
+	private Suggester suggester;
+
+	/** Minimal estimated similarity in percent of a similar requirement */
+	private int similarMinSimilarity;
+
+	/** The metrics of searches and the index */
+	private SearchMetrics metrics;
+
+	/** Pipeline that writes the index operations in batches */
+	private IndexingPipeline indexingPipeline;
+
+	/** Executor that runs the reindex */
+	private ExecutorService reindexExecutor;
+
+	/** Number of threads that index the objects on a reindex */
+	private int reindexThreads;
+
+	/** The current or last reindex */
+	private volatile Reindexer reindexer;
+
+	/** Maximal number of index operations waiting to be written */
+	private int indexQueueSize;
+
+	/** Maximal number of index operations written in one batch */
+	private int indexBatchSize;
+
+	/** Time in milliseconds to collect operations for a batch */
+	private int indexCoalesceMillis;
+
+	/** Time in milliseconds to wait before a parent of changed children is updated */
+	private int indexParentDelayMillis;
+
+	/** Queue that debounces the updates of parents of changed children */
+	private ParentReindexQueue parentReindexQueue;
+
+	/** The metrics service */
+	private IMetricsService metricsService;
+
+	/** Factory for the urls of the indexed objects */
+	private IURIFactory uriFactory;
 
 	/** Flag to signal if a reindex is running. */
 	private AtomicBoolean isReindexRunning = new AtomicBoolean(false);
 
 	/** List of classes included in the index */
-	private List<String> indexedClasses = Arrays.asList("Requirement", "CEGModel", "TestSpecification",
-			"TestProcedure");
+	private List<String> indexedClasses = Arrays.asList("Requirement", "CEGModel", "Process",
+			"TestSpecification", "TestProcedure");
 
 	/**
 	 * Flag to signal if this search service is enabled. Only if it is enabled
@@ -141,36 +261,70 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 	public void activate(Map<String, Object> properties) throws SpecmateException, SpecmateValidationException {
 		readConfig(properties);
 		this.view = persistencyService.openView();
+		this.metrics = new SearchMetrics(metricsService);
 
 		try {
 			initializeLucene();
 			startPeriodicCommitThread();
-			initIndexThreadPool();
+			startIndexingPipeline();
 		} catch (IOException e) {
 			logService.log(LogService.LOG_ERROR, "Could not open index for full-text search.");
+			return;
+		}
+
+		if (checkpoint.exists()) {
+			logService.log(LogService.LOG_INFO, "Continuing interrupted re-indexing.");
+			startReIndex();
+		} else if (shards.getLegacyIndex() != null) {
+			logService.log(LogService.LOG_INFO, "Re-indexing to split the full-text index into project shards.");
+			startReIndex();
 		}
 	}
 
-	private void initIndexThreadPool() {
-		this.indexThreadPool = Executors.newFixedThreadPool(5);
+	private void startIndexingPipeline() throws SpecmateException {
+		this.indexingPipeline = new IndexingPipeline(indexQueueSize, indexBatchSize, indexCoalesceMillis,
+				this::writeBatch, metricsService, logService);
+		this.indexingPipeline.start();
+		this.parentReindexQueue = new ParentReindexQueue(indexingPipeline, indexParentDelayMillis, logService);
+		this.reindexExecutor = Executors.newSingleThreadExecutor();
 	}
 
 	/** Service Deactivation */
 	@Deactivate
 	public void deactivate() {
-		if (this.indexWriter != null) {
+		if (this.scheduledExecutor != null) {
+			this.scheduledExecutor.shutdown();
+		}
+
+		if (this.reindexExecutor != null) {
+			// the reindex continues with the remaining projects on the next
+			// start
+			Reindexer currentReindexer = this.reindexer;
+			if (currentReindexer != null) {
+				currentReindexer.cancel();
+			}
+			this.reindexExecutor.shutdown();
 			try {
-				this.indexWriter.close();
-			} catch (IOException e) {
-				logService.log(LogService.LOG_ERROR, "Could not close full-text index.");
+				this.reindexExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
 		}
-		if (this.scheduledExecutor != null) {
-			this.scheduledExecutor.shutdown();
+
+		if (this.parentReindexQueue != null) {
+			this.parentReindexQueue.stop();
 		}
 
-		if (this.indexThreadPool != null) {
-			this.indexThreadPool.shutdown();
+		if (this.indexingPipeline != null) {
+			this.indexingPipeline.stop();
+		}
+
+		if (this.shards != null) {
+			try {
+				this.shards.close();
+			} catch (IOException e) {
+				logService.log(LogService.LOG_ERROR, "Could not close full-text index.");
+			}
 		}
 	}
 
@@ -186,88 +340,430 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 		} else {
 			this.maxSearchResults = (int) properties.get(KEY_MAX_SEARCH_RESULTS);
 		}
+		this.refreshMaxStaleMillis = getIntProperty(properties, KEY_REFRESH_MAX_STALE, 1000);
+		this.refreshMinStaleMillis = getIntProperty(properties, KEY_REFRESH_MIN_STALE, 25);
+		this.commitInterval = getIntProperty(properties, KEY_COMMIT_INTERVAL, 300);
+		this.indexQueueSize = getIntProperty(properties, KEY_INDEX_QUEUE_SIZE, 10000);
+		this.indexBatchSize = getIntProperty(properties, KEY_INDEX_BATCH_SIZE, 1000);
+		this.indexCoalesceMillis = getIntProperty(properties, KEY_INDEX_COALESCE_MILLIS, 100);
+		this.indexParentDelayMillis = getIntProperty(properties, KEY_INDEX_PARENT_DELAY_MILLIS, 1000);
+		this.reindexThreads = getIntProperty(properties, KEY_REINDEX_THREADS, 2);
+		this.queryCacheSize = getIntProperty(properties, KEY_QUERY_CACHE_SIZE, 1000);
+		this.resultCacheSize = getIntProperty(properties, KEY_RESULT_CACHE_SIZE, 100);
+		this.similarMinSimilarity = getIntProperty(properties, KEY_SIMILAR_MIN_SIMILARITY, 50);
+	}
+
+	/** Returns an optional integer config property */
+	private int getIntProperty(Map<String, Object> properties, String key, int defaultValue) {
+		Object value = properties.get(key);
+		return value instanceof Integer ? (Integer) value : defaultValue;
 	}
 
 	/**
 	 * Starts a thread that performs a commit to the lucene database
-	 * periodicylly.
+	 * periodicylly. Searches do not depend on the commits, they are only
+	 * needed to make the changes durable.
 	 */
 	private void startPeriodicCommitThread() {
-		this.scheduledExecutor = Executors.newScheduledThreadPool(3);
+		this.scheduledExecutor = Executors.newScheduledThreadPool(1);
 		scheduledExecutor.scheduleWithFixedDelay(() -> {
+			synchronized (indexLock) {
+				long start = System.nanoTime();
+				for (SearchIndex index : shards.getIndexes()) {
+					try {
+						index.commit();
+					} catch (IOException | AlreadyClosedException e) {
+						logService.log(LogService.LOG_ERROR, "Could not commit full-text index.", e);
+					}
+				}
+				metrics.recordCommit(System.nanoTime() - start);
+			}
+		}, commitInterval, commitInterval, TimeUnit.SECONDS);
+		scheduledExecutor.scheduleWithFixedDelay(this::updateIndexMetrics, 0, INDEX_METRICS_INTERVAL,
+				TimeUnit.SECONDS);
+	}
+
+	/** Updates the metrics of the number of documents and size of the indexes */
+	private void updateIndexMetrics() {
+		long documents = 0;
+		long bytes = 0;
+		for (SearchIndex index : shards.getIndexes()) {
 			try {
-				indexWriter.commit();
-				searcherManager.maybeRefresh();
-			} catch (IOException e) {
-				e.printStackTrace();
+				documents += index.getDocumentCount();
+				bytes += index.getSizeInBytes();
+			} catch (IOException | AlreadyClosedException e) {
+				// closed by a reindex in the meantime
 			}
-		}, COMMIT_RATE, COMMIT_RATE, TimeUnit.SECONDS);
+		}
+		metrics.setIndexSize(documents, bytes);
 	}
 
 	/** Initialize the access to the lucene database */
 	private void initializeLucene() throws IOException {
 		this.analyzer = new StandardAnalyzer();
-		directory = FSDirectory.open(Paths.get(luceneDbLocation));
-		IndexWriterConfig config = new IndexWriterConfig(analyzer);
-		indexWriter = new IndexWriter(directory, config);
-		this.searcherManager = new SearcherManager(indexWriter, true, true, null);
+		this.queryCompiler = new QueryCompiler(analyzer, queryCacheSize);
+		Path location = Paths.get(luceneDbLocation);
+		this.shards = new ProjectShards(location, analyzer, refreshMaxStaleMillis, refreshMinStaleMillis,
+				resultCacheSize, metrics);
+		this.shards.open();
+		this.checkpoint = new ReindexCheckpoint(location);
+		this.suggester = new Suggester();
+		for (SearchIndex index : shards.getIndexes()) {
+			for (Document document : readSuggestDocuments(index)) {
+				suggester.update(document);
+			}
+		}
+	}
+
+	/** Reads the stored fields for the suggestions from all documents of an index */
+	private List<Document> readSuggestDocuments(SearchIndex index) throws IOException {
+		List<Document> documents = new ArrayList<>();
+		IndexSearcher isearcher = index.acquire();
+		try {
+			int count = Math.max(1, isearcher.getIndexReader().numDocs());
+			for (ScoreDoc hit : isearcher.search(new MatchAllDocsQuery(), count).scoreDocs) {
+				documents.add(isearcher.doc(hit.doc, Suggester.SUGGEST_FIELDS));
+			}
+		} finally {
+			index.release(isearcher);
+		}
+		return documents;
+	}
+
+	/**
+	 * Waits until searches in a project see all changes that have been
+	 * committed so far, but at most for the maximal staleness. The changes of
+	 * a commit pass the model events, the indexing pipeline and the refresh
+	 * of the index in this order.
+	 */
+	private void waitForIndexGeneration(String project) {
+		long deadline = System.currentTimeMillis() + refreshMaxStaleMillis;
+		try {
+			if (!awaitPendingChanges(refreshMaxStaleMillis)) {
+				return;
+			}
+			SearchIndex index = shards.getShard(project);
+			if (index == null) {
+				index = shards.getLegacyIndex();
+			}
+			if (index != null) {
+				index.waitForChanges((int) (deadline - System.currentTimeMillis()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits until the changes committed so far have passed the model events
+	 * and the indexing pipeline. Does not block if the timeout is 0.
+	 *
+	 * @return <code>false</code> if the changes have not passed in time
+	 */
+	private boolean awaitPendingChanges(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		return persistencyService.awaitEventsDelivered(timeoutMillis)
+				&& indexingPipeline.awaitProcessed(Math.max(0, deadline - System.currentTimeMillis()));
 	}
 
 	/** Performs a search with the given field/value-list query. */
 	@Override
 	public Set<EObject> search(String queryString, String project)
 			throws SpecmateException, SpecmateInvalidQueryException {
-		// QueryParser not thread-safe, hence create new for each search
-		String projectPrefix = "(" + FieldConstants.FIELD_PROJECT + ":" + project + ") ";
-		QueryParser queryParser = new MultiFieldQueryParser(FieldConstants.SEARCH_FIELDS, analyzer);
-		queryParser.setDefaultOperator(Operator.AND);
-		Query query;
+		Query query = parseQuery(queryString);
+		String cacheKey = "search\n" + project + "\n" + queryString;
+		List<String> ids = performWithSearcher(project, query, cacheKey,
+				(projectQuery, isearcher) -> performSearch(projectQuery, isearcher), new ArrayList<>());
+		long start = System.nanoTime();
+		Set<EObject> objects = getObjects(ids);
+		metrics.recordQuery(project, EPhase.RESOLVE, System.nanoTime() - start);
+		return objects;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public SearchPage searchHits(String queryString, String project, int pageSize, String cursor)
+			throws SpecmateException, SpecmateInvalidQueryException {
+		Query query = parseQuery(queryString);
+		FieldDoc after = cursor == null ? null : SearchCursor.decode(cursor);
+		int size = Math.max(1, Math.min(pageSize, maxSearchResults));
+		String cacheKey = "hits\n" + project + "\n" + size + "\n" + cursor + "\n" + queryString;
+		return performWithSearcher(project, query, cacheKey,
+				(projectQuery, isearcher) -> performHitSearch(projectQuery, query, after, size, isearcher),
+				new SearchPage(new ArrayList<>(), 0, null));
+	}
+
+	/** Parses a query */
+	private Query parseQuery(String queryString) throws SpecmateInvalidQueryException {
 		try {
-			query = queryParser.parse(projectPrefix + queryString);
+			return queryCompiler.parse(queryString);
 		} catch (ParseException e) {
 			logService.log(LogService.LOG_ERROR, "Counld not parse query: " + queryString, e);
 			throw new SpecmateInvalidQueryException("Could not parse query: " + queryString, e);
 		}
+	}
 
-		IndexSearcher isearcher;
+	/** Restricts a query to the documents of a project in the legacy index. */
+	private Query restrictToProject(Query query, String project) throws SpecmateException {
 		try {
-			isearcher = searcherManager.acquire();
-		} catch (IOException e) {
-			throw new SpecmateException("Could not aquire index searcher.", e);
+			return queryCompiler.restrictToProject(query, project);
+		} catch (ParseException e) {
+			throw new SpecmateException("Could not parse project: " + project, e);
 		}
+	}
+
+	/** A search on an index searcher */
+	private interface ISearch<T> {
+		T perform(Query projectQuery, IndexSearcher isearcher) throws IOException;
+	}
+
+	/**
+	 * Performs a search on a searcher of the shard of a project, after waiting
+	 * for the pending changes. A project without a shard is searched in the
+	 * legacy index, with the query restricted to the project. The result is
+	 * cached until the searcher is refreshed, so repeated searches, e.g. while
+	 * a query is typed, are answered without scoring again. The durations of
+	 * the wait and the search are recorded in the metrics.
+	 *
+	 * @param cacheKey
+	 *            the key of the result in the cache of the index
+	 * @param noIndexResult
+	 *            the result if there is no index for the project
+	 */
+	private <T> T performWithSearcher(String project, Query query, String cacheKey, ISearch<T> search,
+			T noIndexResult) throws SpecmateException {
+		long start = System.nanoTime();
+		waitForIndexGeneration(project);
+		metrics.recordQuery(project, EPhase.WAIT, System.nanoTime() - start);
+		start = System.nanoTime();
+		for (int attempt = 0;; attempt++) {
+			SearchIndex index = shards.getShard(project);
+			Query projectQuery = query;
+			if (index == null) {
+				index = shards.getLegacyIndex();
+				projectQuery = restrictToProject(query, project);
+			}
+			if (index == null) {
+				return noIndexResult;
+			}
+
+			IndexSearcher isearcher;
+			try {
+				isearcher = index.acquire();
+			} catch (AlreadyClosedException e) {
+				if (attempt == 0) {
+					// the shard has been replaced by a reindex in the meantime
+					continue;
+				}
+				throw new SpecmateException("Could not aquire index searcher.", e);
+			} catch (IOException e) {
+				throw new SpecmateException("Could not aquire index searcher.", e);
+			}
 
-		try {
-			return performSearch(query, isearcher);
-		} catch (IOException e) {
-			throw new SpecmateException("IO error while searching lucene database.", e);
-		} finally {
 			try {
-				searcherManager.release(isearcher);
+				T result = index.getCachedResult(cacheKey, isearcher);
+				if (result == null) {
+					result = search.perform(projectQuery, isearcher);
+					index.cacheResult(cacheKey, isearcher, result);
+				}
+				metrics.recordQuery(project, EPhase.LUCENE, System.nanoTime() - start);
+				return result;
 			} catch (IOException e) {
-				logService.log(LogService.LOG_ERROR, "Error while releasing lucene searcher.", e);
+				throw new SpecmateException("IO error while searching lucene database.", e);
+			} finally {
+				try {
+					index.release(isearcher);
+				} catch (IOException e) {
+					logService.log(LogService.LOG_ERROR, "Error while releasing lucene searcher.", e);
+				}
 			}
 		}
 	}
 
+	/** {@inheritDoc} */
 	@Override
-	public void clear() throws SpecmateException {
+	public List<SearchHit> findSimilar(String id, String project, int count) throws SpecmateException {
+		int size = Math.max(1, Math.min(count, maxSearchResults));
+		Query idQuery = new TermQuery(new Term(FieldConstants.FIELD_ID, id));
+		String cacheKey = "similar\n" + project + "\n" + size + "\n" + id;
+		return performWithSearcher(project, idQuery, cacheKey,
+				(projectQuery, isearcher) -> performSimilarSearch(projectQuery, id, project, size, isearcher),
+				new ArrayList<>());
+	}
+
+	/**
+	 * Searches the requirements that are similar to the requirement found by
+	 * the given query. Only requirements that share a MinHash band with it are
+	 * scored by a more-like-this query on the name and description, hence the
+	 * search does not scan all requirements of the project. The best
+	 * candidates are ranked by their estimated similarity.
+	 */
+	private List<SearchHit> performSimilarSearch(Query targetQuery, String id, String project, int size,
+			IndexSearcher isearcher) throws IOException {
+		List<SearchHit> hits = new ArrayList<>();
+		ScoreDoc[] targets = isearcher.search(targetQuery, 1).scoreDocs;
+		if (targets.length == 0) {
+			return hits;
+		}
+		Document targetDoc = isearcher.doc(targets[0].doc, HIT_FIELDS);
+		if (!DocumentFactory.SIMILARITY_CLASS.equals(targetDoc.get(FieldConstants.FIELD_CLASS_NAME))) {
+			return hits;
+		}
+		long[] signature = MinHash.signature(DocumentFactory.getSimilarityText(
+				targetDoc.get(FieldConstants.FIELD_NAME), targetDoc.get(FieldConstants.FIELD_DESCRIPTION)));
+		if (signature == null) {
+			return hits;
+		}
+
+		BooleanQuery.Builder bandQuery = new BooleanQuery.Builder();
+		for (String band : MinHash.bands(signature)) {
+			bandQuery.add(new TermQuery(new Term(FieldConstants.FIELD_SIMILARITY_BAND, band)), Occur.SHOULD);
+		}
+		MoreLikeThis moreLikeThis = new MoreLikeThis(isearcher.getIndexReader());
+		moreLikeThis.setAnalyzer(analyzer);
+		moreLikeThis.setFieldNames(new String[] { FieldConstants.FIELD_NAME, FieldConstants.FIELD_DESCRIPTION });
+		// requirements are short texts, hence every term is considered
+		moreLikeThis.setMinTermFreq(1);
+		moreLikeThis.setMinDocFreq(1);
+		Query likeQuery = moreLikeThis.like(targets[0].doc);
+		Query query = new BooleanQuery.Builder().add(likeQuery, Occur.MUST).add(bandQuery.build(), Occur.FILTER)
+				.add(new TermQuery(new Term(FieldConstants.FIELD_PROJECT, project)), Occur.FILTER)
+				.add(new TermQuery(new Term(FieldConstants.FIELD_ID, id)), Occur.MUST_NOT).build();
+
+		Set<Term> terms = new HashSet<>();
+		isearcher.createNormalizedWeight(likeQuery, false).extractTerms(terms);
+		SnippetBuilder snippetBuilder = new SnippetBuilder(analyzer, terms);
+		float minSimilarity = similarMinSimilarity / 100f;
+		for (ScoreDoc scoreDoc : isearcher.search(query, size * SIMILAR_CANDIDATE_FACTOR).scoreDocs) {
+			Document hitDoc = isearcher.doc(scoreDoc.doc, HIT_FIELDS);
+			String name = hitDoc.get(FieldConstants.FIELD_NAME);
+			String description = hitDoc.get(FieldConstants.FIELD_DESCRIPTION);
+			long[] hitSignature = MinHash.signature(DocumentFactory.getSimilarityText(name, description));
+			float similarity = hitSignature == null ? 0 : MinHash.similarity(signature, hitSignature);
+			if (similarity < minSimilarity) {
+				continue;
+			}
+			String snippet = description != null
+					? snippetBuilder.build(FieldConstants.FIELD_DESCRIPTION, description)
+					: snippetBuilder.build(FieldConstants.FIELD_NAME, name);
+			hits.add(new SearchHit(hitDoc.get(FieldConstants.FIELD_ID), hitDoc.get(FieldConstants.FIELD_URL),
+					hitDoc.get(FieldConstants.FIELD_CLASS_NAME), name, snippet, similarity));
+		}
+		hits.sort(Comparator.comparing(SearchHit::getScore).reversed());
+		return hits.size() > size ? new ArrayList<>(hits.subList(0, size)) : hits;
+	}
 
+	/** {@inheritDoc} */
+	@Override
+	public List<Suggestion> suggest(String prefix, String project, int count) {
+		// suggestions are requested while typing, hence the check for pending
+		// changes must not block, only a pending commit is waited for. The
+		// suggester is updated by the indexing pipeline and does not need the
+		// refresh of the index.
 		try {
-			indexWriter.deleteAll();
-			indexWriter.commit();
-			searcherManager.maybeRefresh();
-		} catch (IOException e) {
-			throw new SpecmateException(e);
+			if (!awaitPendingChanges(0)) {
+				awaitPendingChanges(refreshMaxStaleMillis);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return suggester.suggest(project, prefix, Math.min(count, maxSearchResults));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getStatus() {
+		JSONObject json = new JSONObject();
+		json.put("indexingEnabled", isIndexingEnabled);
+		if (indexingPipeline != null) {
+			json.put("queueDepth", indexingPipeline.getQueueDepth());
+			json.put("pendingParentUpdates", parentReindexQueue.getPendingCount());
+			json.put("indexLagMillis", indexingPipeline.getLagMillis());
+		}
+		json.put("lastCommitMillis", metrics.getLastCommitMillis());
+		json.put("lastRefreshLagMillis", metrics.getLastRefreshLagMillis());
+
+		long documents = 0;
+		long bytes = 0;
+		JSONObject projects = new JSONObject();
+		if (shards != null) {
+			for (String project : shards.getProjects()) {
+				SearchIndex index = shards.getShard(project);
+				JSONObject jsonProject = index == null ? new JSONObject() : getIndexStatus(index);
+				JSONObject latencies = metrics.getLatencies(project);
+				if (latencies != null) {
+					jsonProject.put("latency", latencies);
+				}
+				documents += jsonProject.optLong("documents");
+				bytes += jsonProject.optLong("sizeBytes");
+				projects.put(project, jsonProject);
+			}
+			SearchIndex legacyIndex = shards.getLegacyIndex();
+			if (legacyIndex != null) {
+				JSONObject jsonLegacy = getIndexStatus(legacyIndex);
+				documents += jsonLegacy.optLong("documents");
+				bytes += jsonLegacy.optLong("sizeBytes");
+				json.put("legacyIndex", jsonLegacy);
+			}
+		}
+		json.put("documents", documents);
+		json.put("sizeBytes", bytes);
+		json.put("projects", projects);
+		metrics.setIndexSize(documents, bytes);
+
+		Reindexer currentReindexer = this.reindexer;
+		if (currentReindexer != null) {
+			json.put("reindex", new JSONObject(currentReindexer.toJson()));
+		}
+		return json.toString();
+	}
+
+	/** Returns the number of documents and size of an index as JSON */
+	private JSONObject getIndexStatus(SearchIndex index) {
+		JSONObject json = new JSONObject();
+		try {
+			json.put("documents", index.getDocumentCount());
+			json.put("sizeBytes", index.getSizeInBytes());
+		} catch (IOException | AlreadyClosedException e) {
+			// replaced by a reindex in the meantime
+		}
+		return json;
+	}
+
+	@Override
+	public void clear() throws SpecmateException {
+
+		synchronized (indexLock) {
+			suggester.clear();
+			try {
+				for (SearchIndex index : shards.getIndexes()) {
+					index.deleteAll();
+					index.commit();
+					index.refresh();
+				}
+			} catch (IOException e) {
+				throw new SpecmateException(e);
+			}
 		}
 	}
 
 	/**
-	 * Starts reindexing of all elements.
+	 * Starts reindexing of all elements. The shard of each project is rebuilt
+	 * in the background, searches use the current shard until the new shard
+	 * is complete.
 	 *
 	 * @throws SpecmateException
 	 */
 	@Override
 	public void startReIndex() throws SpecmateException {
+		startReIndex(null);
+	}
+
+	/**
+	 * Starts reindexing of a single project, or of all projects if the given
+	 * project is <code>null</code>.
+	 */
+	private void startReIndex(String project) {
 		if (!isIndexingEnabled) {
 			return;
 		}
@@ -275,46 +771,163 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 		if (!start) {
 			return;
 		}
-		logService.log(LogService.LOG_INFO, "Re-indexing started.");
-		TreeIterator<EObject> iterator = this.view.getResource().getAllContents();
+		logService.log(LogService.LOG_INFO,
+				project == null ? "Re-indexing started." : "Re-indexing of project " + project + " started.");
+		Reindexer newReindexer = new Reindexer(persistencyService, uriFactory, indexedClasses, reindexThreads,
+				metrics, logService);
+		this.reindexer = newReindexer;
+		reindexExecutor.submit(() -> {
+			try {
+				runReindex(newReindexer, project);
+			} finally {
+				isReindexRunning.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Rebuilds the shards of all projects, or of a single project. Each shard
+	 * is replaced as soon as its project is indexed, searches in other
+	 * projects are not affected. After the shards of all projects have been
+	 * rebuilt, the legacy index and the shards of deleted projects are removed.
+	 */
+	private void runReindex(Reindexer reindexer, String project) {
 		try {
-			clear();
-		} catch (SpecmateException e) {
-			logService.log(LogService.LOG_ERROR, "Error while clearing search index.", e);
-			throw e;
+			List<String> projects;
+			Set<String> deletedProjects = shards.getProjects();
+			if (project == null) {
+				projects = Reindexer.getProjects(view);
+				checkpoint.start();
+				synchronized (indexLock) {
+					if (shards.getLegacyIndex() != null) {
+						// projects created from now on get a shard right away
+						legacyProjects = new HashSet<>(projects);
+					}
+				}
+			} else {
+				projects = Collections.singletonList(project);
+			}
+			if (!reindexer.run(projects, project == null ? checkpoint : null, new ShardBuilder(reindexer))) {
+				throw new InterruptedException();
+			}
+			if (project == null) {
+				deletedProjects.removeAll(projects);
+				removeUnusedIndexes(deletedProjects);
+				checkpoint.delete();
+			}
+			reindexer.setState(EReindexState.FINISHED);
+			logService.log(LogService.LOG_INFO, "Re-indexing completed.");
+		} catch (InterruptedException e) {
+			reindexer.fail("Re-indexing cancelled.");
+			logService.log(LogService.LOG_WARNING, "Re-indexing interrupted.");
+		} catch (IOException | SpecmateException | RuntimeException e) {
+			reindexer.fail(e.getMessage());
+			logService.log(LogService.LOG_ERROR, "Error while re-indexing.", e);
 		}
-		while (iterator.hasNext()) {
-			EObject next = iterator.next();
-			String className = next.eClass().getName();
-			if (className != null && !indexedClasses.contains(className)) {
-				continue;
+	}
+
+	/**
+	 * Removes the shards of the given projects and the legacy index, once all
+	 * projects have a shard of their own.
+	 */
+	private void removeUnusedIndexes(Set<String> deletedProjects) throws IOException {
+		synchronized (indexLock) {
+			for (String deletedProject : deletedProjects) {
+				shards.removeShard(deletedProject);
+				suggester.removeProject(deletedProject);
+				metrics.removeProject(deletedProject);
 			}
-			String id = SpecmateEcoreUtil.getUniqueId(next);
-			String project = SpecmateEcoreUtil.getProjectId(next);
-			if (id != null) {
-				indexThreadPool.submit(() -> {
-					updateIndex(id, next, project);
-				});
-			} else {
-				logService.log(LogService.LOG_ERROR, "Could not reindex object.");
+			shards.removeLegacyIndex();
+			legacyProjects = null;
+		}
+	}
+
+	/**
+	 * Builds the new shards of a reindex. Changes that arrive while a shard is
+	 * built are written to both the searched and the new shard. As an indexing
+	 * thread may have read an object before such a change, the changed objects
+	 * are written again before the shards are swapped.
+	 */
+	private class ShardBuilder implements IShardBuilder {
+
+		private final Reindexer reindexer;
+
+		public ShardBuilder(Reindexer reindexer) {
+			this.reindexer = reindexer;
+		}
+
+		@Override
+		public SearchIndex startShard(String project) throws IOException {
+			SearchIndex index = shards.openReindex(project);
+			synchronized (indexLock) {
+				reindexShards.put(project, index);
+				reindexChanges.put(project, new LinkedHashMap<>());
+			}
+			return index;
+		}
+
+		@Override
+		public void completeShard(String project, SearchIndex index) throws IOException, InterruptedException {
+			List<IndexOperation> changes;
+			synchronized (indexLock) {
+				changes = new ArrayList<>(reindexChanges.get(project).values());
+				reindexChanges.get(project).clear();
+			}
+			for (IndexOperation change : changes) {
+				EOperationKind kind = change.getKind() == EOperationKind.DELETE ? EOperationKind.DELETE
+						: EOperationKind.UPDATE;
+				indexingPipeline.enqueue(
+						new IndexOperation(kind, change.getId(), change.getProject(), null, change.getClassName(), null));
+			}
+			while (!indexingPipeline.awaitProcessed(refreshMaxStaleMillis)) {
+				if (reindexer.isCancelled()) {
+					throw new InterruptedException();
+				}
+			}
+			synchronized (indexLock) {
+				index.commit();
+				index.refresh();
+				shards.replaceShard(project, index);
+				suggester.replaceProject(project, readSuggestDocuments(index));
+				reindexShards.remove(project);
+				reindexChanges.remove(project);
+			}
+		}
+
+		@Override
+		public void abortShard(String project, SearchIndex index) {
+			synchronized (indexLock) {
+				reindexShards.remove(project);
+				reindexChanges.remove(project);
+			}
+			try {
+				index.close();
+			} catch (IOException e) {
+				logService.log(LogService.LOG_ERROR, "Could not close re-index.", e);
 			}
 		}
-		// when all reindex jobs have run, reset the flag
-		indexThreadPool.submit(() -> {
-			logService.log(LogService.LOG_INFO, "Re-indexing completed.");
-			isReindexRunning.set(false);
-		});
 	}
 
-	/** Performs the given lucene query on the given searcher. */
-	private Set<EObject> performSearch(Query query, IndexSearcher isearcher) throws IOException {
+	/**
+	 * Performs the given lucene query on the given searcher and returns the
+	 * ids of the hits.
+	 */
+	private List<String> performSearch(Query query, IndexSearcher isearcher) throws IOException {
 		ScoreDoc[] hits;
 		hits = isearcher.search(query, this.maxSearchResults).scoreDocs;
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < hits.length; i++) {
+			Document hitDoc = isearcher.doc(hits[i].doc, ID_FIELDS);
+			ids.add(hitDoc.get(FieldConstants.FIELD_ID));
+		}
+		return ids;
+	}
+
+	/** Returns the objects with the given ids. */
+	private Set<EObject> getObjects(List<String> ids) {
 		Set<EObject> result = new HashSet<>();
 		// Iterate through the results:
-		for (int i = 0; i < hits.length; i++) {
-			Document hitDoc = isearcher.doc(hits[i].doc);
-			String id = hitDoc.get(FieldConstants.FIELD_ID);
+		for (String id : ids) {
 			try {
 				EObject object = view.getObjectById(id);
 				if (object != null) {
@@ -333,107 +946,231 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 	}
 
 	/**
-	 * Handles a model event. Updates the lucene database in case the model has
-	 * changed.
+	 * Returns the hits after the given position, with their values read from
+	 * the stored fields. One more hit than requested is searched to determine
+	 * if there is a next page. The snippets highlight the terms of the query
+	 * without the project restriction.
+	 */
+	private SearchPage performHitSearch(Query projectQuery, Query query, FieldDoc after, int size,
+			IndexSearcher isearcher) throws IOException {
+		Sort sort = new Sort(SortField.FIELD_SCORE, new SortField(FieldConstants.FIELD_SORT_ID, SortField.Type.STRING));
+		TopFieldDocs topDocs = isearcher.searchAfter(after, projectQuery, size + 1, sort, true, false);
+		Set<Term> terms = new HashSet<>();
+		isearcher.createNormalizedWeight(query, false).extractTerms(terms);
+		SnippetBuilder snippetBuilder = new SnippetBuilder(analyzer, terms);
+
+		List<SearchHit> hits = new ArrayList<>();
+		int count = Math.min(size, topDocs.scoreDocs.length);
+		for (int i = 0; i < count; i++) {
+			ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+			Document hitDoc = isearcher.doc(scoreDoc.doc, HIT_FIELDS);
+			String name = hitDoc.get(FieldConstants.FIELD_NAME);
+			String description = hitDoc.get(FieldConstants.FIELD_DESCRIPTION);
+			String snippet = description != null
+					? snippetBuilder.build(FieldConstants.FIELD_DESCRIPTION, description)
+					: snippetBuilder.build(FieldConstants.FIELD_NAME, name);
+			hits.add(new SearchHit(hitDoc.get(FieldConstants.FIELD_ID), hitDoc.get(FieldConstants.FIELD_URL),
+					hitDoc.get(FieldConstants.FIELD_CLASS_NAME), name, snippet, scoreDoc.score));
+		}
+		String cursor = null;
+		if (topDocs.scoreDocs.length > size) {
+			cursor = SearchCursor.encode((FieldDoc) topDocs.scoreDocs[size - 1]);
+		}
+		return new SearchPage(hits, topDocs.totalHits, cursor);
+	}
+
+	/**
+	 * Handles a commit event. Updates the lucene database in case the model
+	 * has changed.
 	 */
 	@Override
 	public void handleEvent(Event event) {
 		if (!isIndexingEnabled) {
 			return;
 		}
-		if (!(event instanceof ModelEvent)) {
+		if (!(event instanceof CommitEvent)) {
 			return;
 		}
-		ModelEvent modelEvent = (ModelEvent) event;
-		String className = modelEvent.getClassName();
-
-		if (className != null && !indexedClasses.contains(className)) {
-			return;
-		}
-
-		String project = extractProject(modelEvent.getTopic());
-		switch (modelEvent.getType()) {
-		case NEW:
-			submitNewDocJob(modelEvent, project);
-			break;
-		case DELETE:
-			submitDeleteDocJob(modelEvent);
-			break;
-		default:
-			submitUpdateDocJob(modelEvent, project);
+		CommitEvent commitEvent = (CommitEvent) event;
+		try {
+			for (ObjectChange change : commitEvent.getNewObjects()) {
+				if (indexedClasses.contains(change.getClassName())) {
+					enqueue(EOperationKind.ADD, change);
+				}
+			}
+			for (ObjectChange change : commitEvent.getChangedObjects()) {
+				// changes of other classes may change the text of their parent
+				if (change.getFeatureMap().keySet().stream().anyMatch(DocumentFactory::isIndexedFeature)) {
+					enqueue(EOperationKind.UPDATE, change);
+				}
+			}
+			for (ObjectChange change : commitEvent.getDetachedObjects()) {
+				if (change.getClassName() == null || indexedClasses.contains(change.getClassName())) {
+					enqueue(EOperationKind.DELETE, change);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logService.log(LogService.LOG_ERROR, "Could not enqueue index operations of commit "
+					+ commitEvent.getTimeStamp());
 		}
 	}
 
-	private void submitUpdateDocJob(ModelEvent modelEvent, String project) {
-		this.indexThreadPool.submit(() -> {
-			updateIndex(modelEvent.getId(), project);
-		});
+	/** Enqueues the index operation for a changed object */
+	private void enqueue(EOperationKind kind, ObjectChange change) throws InterruptedException {
+		indexingPipeline.enqueue(new IndexOperation(kind, change.getId(), change.getProject(), change.getUrl(),
+				change.getClassName(), change.getFeatureMap()));
 	}
 
-	private void submitDeleteDocJob(ModelEvent modelEvent) {
-		this.indexThreadPool.submit(() -> {
-			try {
-				indexWriter.deleteDocuments(new Term(FieldConstants.FIELD_ID, modelEvent.getId()));
-			} catch (IOException e) {
-				this.logService.log(LogService.LOG_ERROR,
-						"Could not delete document from index: " + modelEvent.getTopic(), e);
+	/**
+	 * Writes a batch of index operations. Each object occurs at most once in
+	 * the batch. The documents are written to the shards of their projects.
+	 * Deletions are written to all shards with a single call per shard.
+	 */
+	private void writeBatch(Collection<IndexOperation> operations) {
+		Map<String, Map<String, Document>> documents = new LinkedHashMap<>();
+		List<Term> deletions = new ArrayList<>();
+		for (IndexOperation operation : operations) {
+			if (operation.getKind() == EOperationKind.DELETE) {
+				deletions.add(new Term(FieldConstants.FIELD_ID, operation.getId()));
+				continue;
 			}
-		});
+			if (operation.getProject().isEmpty()) {
+				// searches are restricted to a project
+				continue;
+			}
+			Document document = createDocument(operation);
+			if (document != null) {
+				documents.computeIfAbsent(operation.getProject(), project -> new LinkedHashMap<>())
+						.put(operation.getId(), document);
+			}
+		}
+		synchronized (indexLock) {
+			for (Map.Entry<String, Map<String, Document>> entry : documents.entrySet()) {
+				SearchIndex index = getWriteIndex(entry.getKey());
+				if (index != null) {
+					writeDocuments(index, entry.getValue());
+				}
+				for (Document document : entry.getValue().values()) {
+					suggester.update(document);
+				}
+				SearchIndex reindexShard = reindexShards.get(entry.getKey());
+				if (reindexShard != null) {
+					writeDocuments(reindexShard, entry.getValue());
+				}
+			}
+			if (!deletions.isEmpty()) {
+				List<SearchIndex> indexes = shards.getIndexes();
+				indexes.addAll(reindexShards.values());
+				for (SearchIndex index : indexes) {
+					deleteDocuments(index, deletions);
+				}
+				for (Term deletion : deletions) {
+					suggester.remove(deletion.text());
+				}
+			}
+			for (IndexOperation operation : operations) {
+				if (operation.getKind() == EOperationKind.DELETE) {
+					for (Map<String, IndexOperation> changes : reindexChanges.values()) {
+						changes.put(operation.getId(), operation);
+					}
+				} else if (reindexChanges.containsKey(operation.getProject())) {
+					reindexChanges.get(operation.getProject()).put(operation.getId(), operation);
+				}
+			}
+		}
 	}
 
-	private void submitNewDocJob(ModelEvent modelEvent, String project) {
-		this.indexThreadPool.submit(() -> {
-			Document document = getDocumentForModelObject(modelEvent.getId(), project, modelEvent.getClassName(),
-					modelEvent.getFeatureMap());
-			if (document == null) {
-				return;
-			}
+	/**
+	 * Returns the index that the changes of a project are written to: its
+	 * shard, the legacy index until the shard is built, or a new shard. Must
+	 * be called with indexLock held.
+	 */
+	private SearchIndex getWriteIndex(String project) {
+		SearchIndex index = shards.getShard(project);
+		if (index != null) {
+			return index;
+		}
+		SearchIndex legacyIndex = shards.getLegacyIndex();
+		if (legacyIndex != null && (legacyProjects == null || legacyProjects.contains(project))) {
+			return legacyIndex;
+		}
+		try {
+			return shards.createShard(project);
+		} catch (IOException e) {
+			this.logService.log(LogService.LOG_ERROR, "Could not create index of project: " + project, e);
+			return null;
+		}
+	}
+
+	/** Writes the documents of a batch to an index */
+	private void writeDocuments(SearchIndex index, Map<String, Document> documents) {
+		for (Map.Entry<String, Document> entry : documents.entrySet()) {
 			try {
-				indexWriter.addDocument(document);
+				index.updateDocument(entry.getKey(), entry.getValue());
 			} catch (IOException e) {
-				this.logService.log(LogService.LOG_ERROR, "Could not add document to index: " + modelEvent.getTopic(),
-						e);
+				this.logService.log(LogService.LOG_ERROR, "Could not update index: " + entry.getKey(), e);
 			}
-		});
+		}
 	}
 
-	/** Extract the project name from an event topic */
-	private String extractProject(String topic) {
-
-		Matcher matcher = pattern.matcher(topic);
-		if (matcher.find()) {
-			String result = matcher.group(1);
-			return result;
+	/** Writes the deletions of a batch to an index */
+	private void deleteDocuments(SearchIndex index, List<Term> deletions) {
+		try {
+			index.deleteDocuments(deletions.toArray(new Term[deletions.size()]));
+		} catch (IOException e) {
+			this.logService.log(LogService.LOG_ERROR, "Could not delete documents from index.", e);
 		}
-		return "";
 	}
 
 	/**
-	 * Updates the index for the item with the given id with the given
-	 * feature/value mapping
+	 * Creates the document for an add or update operation. New objects are
+	 * indexed from the features of their creation event, for updated objects
+	 * the current state is read from the view. If the text of the object is
+	 * indexed with its parent, the update of the parent is scheduled instead.
 	 */
-	private void updateIndex(String id, String project) {
-		EObject object = view.getObjectById(id);
-		updateIndex(id, object, project);
+	private Document createDocument(IndexOperation operation) {
+		if (operation.getKind() == EOperationKind.ADD) {
+			return getDocumentForModelObject(operation.getId(), operation.getProject(), operation.getUrl(),
+					operation.getClassName(), operation.getFeatureMap());
+		}
+		EObject object;
+		try {
+			object = view.getObjectById(operation.getId());
+		} catch (ObjectNotFoundException e) {
+			// the object has been deleted, the deletion will be indexed
+			return null;
+		}
+		if (object == null) {
+			return null;
+		}
+		if (indexedClasses.contains(object.eClass().getName())) {
+			return DocumentFactory.create(object, operation.getId(), operation.getProject(), getUrl(object));
+		}
+		EObject parent = object.eContainer();
+		if (parent != null && DocumentFactory.isContentChild(object)
+				&& indexedClasses.contains(parent.eClass().getName())) {
+			String parentId = SpecmateEcoreUtil.getUniqueId(parent);
+			if (parentId != null) {
+				parentReindexQueue.schedule(parentId, operation.getProject(), parent.eClass().getName());
+			}
+		}
+		return null;
 	}
 
-	private void updateIndex(String id, EObject object, String project) {
-		Map<EStructuralFeature, Object> featureMap = new HashMap<>();
-		for (EAttribute attribute : object.eClass().getEAllAttributes()) {
-			featureMap.put(attribute, object.eGet(attribute));
-		}
-		Document doc = getDocumentForModelObject(id, project, object.eClass().getName(), featureMap);
+	/** Returns the url of an object, or <code>null</code> if it has none */
+	private String getUrl(EObject object) {
 		try {
-			indexWriter.updateDocument(new Term(FieldConstants.FIELD_ID, id), doc);
-		} catch (IOException e) {
-			this.logService.log(LogService.LOG_ERROR, "Could not update index: " + id, e);
+			return uriFactory.getURI(object);
+		} catch (SpecmateException e) {
+			return null;
 		}
 	}
 
 	/** Produces a document for a model given as a fature/value mapping. */
-	private Document getDocumentForModelObject(String id, String project, String className,
+	private Document getDocumentForModelObject(String id, String project, String url, String className,
 			Map<EStructuralFeature, Object> featureMap) {
-		return DocumentFactory.create(className, id, project, featureMap);
+		return DocumentFactory.create(className, id, project, url, featureMap);
 	}
 
 	@Override
@@ -446,10 +1183,31 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 		return (target instanceof Resource);
 	}
 
+	/**
+	 * Starts a reindex of all projects, or with the query parameter
+	 * <code>project</code> of a single project. With the query parameter
+	 * <code>progress</code>, the progress of the current or last reindex is
+	 * returned instead.
+	 */
 	@Override
 	public RestResult<?> get(Object object, MultivaluedMap<String, String> queryParams, String token)
 			throws SpecmateException {
-		startReIndex();
+		if (queryParams.containsKey(PROGRESS_PARAM)) {
+			Reindexer currentReindexer = this.reindexer;
+			if (currentReindexer == null) {
+				return new RestResult<>(Response.Status.NOT_FOUND);
+			}
+			return new RestResult<>(Response.Status.OK, currentReindexer.toJson());
+		}
+		String project = queryParams.getFirst(PROJECT_PARAM);
+		if (project != null) {
+			if (!Reindexer.getProjects(view).contains(project)) {
+				return new RestResult<>(Response.Status.NOT_FOUND);
+			}
+			startReIndex(project);
+		} else {
+			startReIndex();
+		}
 		return new RestResult<>(Response.Status.NO_CONTENT);
 	}
 
@@ -475,4 +1233,16 @@ public class LuceneBasedModelSearchService extends RestServiceBase implements Ev
 		this.logService = logService;
 	}
 
+	/** Sets the uri factory. */
+	@Reference
+	public void setUriFactory(IURIFactory uriFactory) {
+		this.uriFactory = uriFactory;
+	}
+
+	/** Sets the metrics service. */
+	@Reference
+	public void setMetricsService(IMetricsService metricsService) {
+		this.metricsService = metricsService;
+	}
+
 }
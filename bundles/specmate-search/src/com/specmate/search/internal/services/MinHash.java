@@ -0,0 +1,129 @@
+package com.specmate.search.internal.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates the similarity of texts with MinHash signatures. A text is split
+ * into shingles of two consecutive words. For each of a number of hash
+ * functions, the signature contains the minimal hash of the shingles. The
+ * share of equal values in two signatures estimates the Jaccard similarity of
+ * the shingle sets.
+ * <p>
+ * For locality sensitive hashing, a signature is split into bands of several
+ * values, each band is hashed into a term. Texts that share a band term are
+ * likely similar, hence the band terms are indexed and serve as a pre-filter
+ * for similar documents. With 16 bands of 4 values, texts with a similarity
+ * of 0.7 share a band with a probability of 99%, texts with a similarity of
+ * 0.3 with 12%.
+ */
+public class MinHash {
+
+	/** The number of bands of a signature */
+	private static final int BANDS = 16;
+
+	/** The number of values per band */
+	private static final int ROWS = 4;
+
+	/** The number of hash functions */
+	private static final int HASHES = BANDS * ROWS;
+
+	/** The number of words per shingle */
+	private static final int SHINGLE_SIZE = 2;
+
+	/** Pattern for a word */
+	private static final Pattern WORD = Pattern.compile("(?U)\\w+");
+
+	/** The seeds of the hash functions */
+	private static final long[] SEEDS = new long[HASHES];
+
+	static {
+		long seed = 0x5DEECE66DL;
+		for (int i = 0; i < HASHES; i++) {
+			seed = mix(seed + i);
+			SEEDS[i] = seed;
+		}
+	}
+
+	/**
+	 * Computes the signature of a text, or returns <code>null</code> if the
+	 * text contains no words.
+	 */
+	public static long[] signature(String text) {
+		Set<Long> shingles = shingles(text);
+		if (shingles.isEmpty()) {
+			return null;
+		}
+		long[] signature = new long[HASHES];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		for (long shingle : shingles) {
+			for (int i = 0; i < HASHES; i++) {
+				long hash = mix(shingle ^ SEEDS[i]);
+				if (hash < signature[i]) {
+					signature[i] = hash;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/** Returns the band terms of a signature */
+	public static List<String> bands(long[] signature) {
+		List<String> bands = new ArrayList<>(BANDS);
+		for (int band = 0; band < BANDS; band++) {
+			long hash = band;
+			for (int row = 0; row < ROWS; row++) {
+				hash = mix(hash * 31 + signature[band * ROWS + row]);
+			}
+			bands.add(band + "_" + Long.toHexString(hash));
+		}
+		return bands;
+	}
+
+	/** Estimates the Jaccard similarity of the texts of two signatures */
+	public static float similarity(long[] signature, long[] otherSignature) {
+		int equal = 0;
+		for (int i = 0; i < HASHES; i++) {
+			if (signature[i] == otherSignature[i]) {
+				equal++;
+			}
+		}
+		return (float) equal / HASHES;
+	}
+
+	/**
+	 * Returns the hashes of the shingles of a text. A text with fewer words
+	 * than a shingle consists of a single shingle.
+	 */
+	private static Set<Long> shingles(String text) {
+		List<String> words = new ArrayList<>();
+		Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+		while (matcher.find()) {
+			words.add(matcher.group());
+		}
+		Set<Long> shingles = new HashSet<>();
+		int size = Math.min(SHINGLE_SIZE, words.size());
+		for (int start = 0; start + size <= words.size() && size > 0; start++) {
+			long hash = 0;
+			for (int i = start; i < start + size; i++) {
+				hash = mix(hash * 31 + words.get(i).hashCode());
+			}
+			shingles.add(hash);
+		}
+		return shingles;
+	}
+
+	/** Mixes the bits of a value, the finalizer of SplitMix64 */
+	private static long mix(long value) {
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,74 @@
+package com.specmate.search.internal.services;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.osgi.service.log.LogService;
+
+import com.specmate.search.internal.services.IndexOperation.EOperationKind;
+
+/**
+ * Debounces the updates of parent documents that contain the text of their
+ * children. The first change of a child schedules an update of its parent
+ * after a delay. Further changes of the children of the same parent within
+ * the delay are covered by this update, hence editing a model with many nodes
+ * updates the document of the model at most once per delay.
+ */
+public class ParentReindexQueue {
+
+	private final IndexingPipeline indexingPipeline;
+	private final long delayMillis;
+	private final LogService logService;
+	private final ScheduledExecutorService executor;
+
+	/** The ids of the parents with a scheduled update */
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	public ParentReindexQueue(IndexingPipeline indexingPipeline, long delayMillis, LogService logService) {
+		this.indexingPipeline = indexingPipeline;
+		this.delayMillis = delayMillis;
+		this.logService = logService;
+		this.executor = Executors.newScheduledThreadPool(1);
+	}
+
+	/**
+	 * Schedules the update of a parent, unless an update is scheduled already.
+	 */
+	public void schedule(String parentId, String project, String className) {
+		if (!pending.add(parentId)) {
+			return;
+		}
+		executor.schedule(() -> {
+			// changes from now on need another update
+			pending.remove(parentId);
+			try {
+				indexingPipeline
+						.enqueue(new IndexOperation(EOperationKind.UPDATE, parentId, project, null, className, null));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logService.log(LogService.LOG_ERROR, "Could not enqueue update of parent: " + parentId);
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/** Returns the number of parents with a scheduled update */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the queue. Scheduled updates are still passed to the indexing
+	 * pipeline.
+	 */
+	public void stop() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(delayMillis + 1000, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.specmate.search.internal.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+/**
+ * The search index, split into one shard per project. Each shard is a lucene
+ * index in a directory of its own, hence a search only reads and scores the
+ * documents of its project, and a project can be reindexed without touching
+ * the shards of the other projects.
+ * <p>
+ * An index written by earlier versions contains the documents of all
+ * projects. It is kept as legacy index and searched for the projects that
+ * have no shard yet, until a reindex has built the shards of all projects.
+ * <p>
+ * Modifications of the shards have to be synchronized by the caller, lookups
+ * may happen concurrently.
+ */
+public class ProjectShards {
+
+	/** Directory below the configured location that contains the shards */
+	private static final String SHARDS_DIRECTORY = "projects";
+
+	/** Characters of project ids that are used as is in directory names */
+	private static final String PLAIN_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789-_";
+
+	/** Prefix of an encoded byte in a directory name */
+	private static final char ESCAPE_CHARACTER = '~';
+
+	private final Path location;
+	private final Analyzer analyzer;
+	private final int maxStaleMillis;
+	private final int minStaleMillis;
+	private final int resultCacheSize;
+	private final SearchMetrics metrics;
+
+	/** The searched shard of each project */
+	private final Map<String, SearchIndex> shards = new ConcurrentHashMap<>();
+
+	/** The directories of the shard of each project */
+	private final Map<String, IndexStore> stores = new ConcurrentHashMap<>();
+
+	/** The directories of the legacy index */
+	private IndexStore legacyStore;
+
+	/** The index of earlier versions, <code>null</code> if there is none */
+	private volatile SearchIndex legacyIndex;
+
+	public ProjectShards(Path location, Analyzer analyzer, int maxStaleMillis, int minStaleMillis,
+			int resultCacheSize, SearchMetrics metrics) {
+		this.location = location;
+		this.analyzer = analyzer;
+		this.maxStaleMillis = maxStaleMillis;
+		this.minStaleMillis = minStaleMillis;
+		this.resultCacheSize = resultCacheSize;
+		this.metrics = metrics;
+	}
+
+	/** Opens the shards and the legacy index in the location */
+	public void open() throws IOException {
+		Path shardsPath = location.resolve(SHARDS_DIRECTORY);
+		Files.createDirectories(shardsPath);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(shardsPath, Files::isDirectory)) {
+			for (Path path : stream) {
+				String project = decodeProject(path.getFileName().toString());
+				IndexStore store = new IndexStore(path);
+				store.deleteUnusedIndexes();
+				stores.put(project, store);
+				shards.put(project, openIndex(store.getCurrentIndexPath()));
+			}
+		}
+		legacyStore = new IndexStore(location);
+		if (legacyStore.hasIndex()) {
+			legacyStore.deleteUnusedIndexes();
+			legacyIndex = openIndex(legacyStore.getCurrentIndexPath());
+		}
+	}
+
+	private SearchIndex openIndex(Path path) throws IOException {
+		return new SearchIndex(path, analyzer, maxStaleMillis, minStaleMillis, resultCacheSize, metrics);
+	}
+
+	/** Returns the shard of a project, or <code>null</code> if it has none */
+	public SearchIndex getShard(String project) {
+		return shards.get(project);
+	}
+
+	/** Returns the legacy index, or <code>null</code> if there is none */
+	public SearchIndex getLegacyIndex() {
+		return legacyIndex;
+	}
+
+	/** Returns the projects that have a shard */
+	public Set<String> getProjects() {
+		return new HashSet<>(shards.keySet());
+	}
+
+	/** Returns the shards and the legacy index */
+	public List<SearchIndex> getIndexes() {
+		List<SearchIndex> indexes = new ArrayList<>(shards.values());
+		if (legacyIndex != null) {
+			indexes.add(legacyIndex);
+		}
+		return indexes;
+	}
+
+	/** Creates an empty shard for a project */
+	public SearchIndex createShard(String project) throws IOException {
+		IndexStore store = getStore(project);
+		Path path = store.createIndexPath();
+		SearchIndex index = openIndex(path);
+		store.setCurrentIndex(path);
+		shards.put(project, index);
+		return index;
+	}
+
+	/**
+	 * Opens a new index for a project, which replaces the shard of the project
+	 * once it is complete.
+	 */
+	public SearchIndex openReindex(String project) throws IOException {
+		return openIndex(getStore(project).createIndexPath());
+	}
+
+	/**
+	 * Replaces the shard of a project with the given index. The index has to be
+	 * committed before. Searches that have acquired a searcher of the previous
+	 * shard complete on it.
+	 */
+	public void replaceShard(String project, SearchIndex index) throws IOException {
+		IndexStore store = getStore(project);
+		store.setCurrentIndex(index.getPath());
+		SearchIndex previous = shards.put(project, index);
+		if (previous != null) {
+			previous.close();
+		}
+		store.deleteUnusedIndexes();
+	}
+
+	/** Closes and deletes the shard of a project */
+	public void removeShard(String project) throws IOException {
+		SearchIndex shard = shards.remove(project);
+		IndexStore store = stores.remove(project);
+		if (shard != null) {
+			shard.close();
+		}
+		if (store != null) {
+			IndexStore.deleteRecursively(getShardPath(project));
+		}
+	}
+
+	/** Closes and deletes the legacy index */
+	public void removeLegacyIndex() throws IOException {
+		SearchIndex index = legacyIndex;
+		legacyIndex = null;
+		if (index != null) {
+			index.close();
+			legacyStore.deleteIndexes();
+		}
+	}
+
+	/** Closes the shards and the legacy index */
+	public void close() throws IOException {
+		IOException exception = null;
+		for (SearchIndex index : getIndexes()) {
+			try {
+				index.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private IndexStore getStore(String project) throws IOException {
+		IndexStore store = stores.get(project);
+		if (store == null) {
+			store = new IndexStore(getShardPath(project));
+			stores.put(project, store);
+		}
+		return store;
+	}
+
+	private Path getShardPath(String project) {
+		return location.resolve(SHARDS_DIRECTORY).resolve(encodeProject(project));
+	}
+
+	/**
+	 * Encodes a project id as directory name. Characters that are not allowed
+	 * or not distinguished in file names on all platforms, including upper
+	 * case letters, are replaced by their escaped UTF-8 bytes.
+	 */
+	static String encodeProject(String project) {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : project.getBytes(StandardCharsets.UTF_8)) {
+			char c = (char) (b & 0xff);
+			if (PLAIN_CHARACTERS.indexOf(c) >= 0) {
+				builder.append(c);
+			} else {
+				builder.append(ESCAPE_CHARACTER).append(String.format("%02x", b & 0xff));
+			}
+		}
+		return builder.toString();
+	}
+
+	/** Decodes a directory name created by {@link #encodeProject(String)} */
+	static String decodeProject(String name) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == ESCAPE_CHARACTER && i + 2 < name.length()) {
+				bytes.write(Integer.parseInt(name.substring(i + 1, i + 3), 16));
+				i += 2;
+			} else {
+				bytes.write(c);
+			}
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
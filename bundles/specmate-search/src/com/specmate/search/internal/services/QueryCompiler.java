@@ -0,0 +1,108 @@
+package com.specmate.search.internal.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.queryparser.classic.QueryParser.Operator;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Compiles query strings into lucene queries. Queries are immutable, hence
+ * the compiled queries are cached in least recently used order and shared by
+ * concurrent searches. The web UI searches on every keystroke, so the same
+ * query strings are parsed over and over again otherwise.
+ */
+public class QueryCompiler {
+
+	/** The analyzer that is used. */
+	private final Analyzer analyzer;
+
+	/** Parsed queries by query string, in least recently used order */
+	private final Map<String, Query> queries;
+
+	/** Project filters for the legacy index by project */
+	private final Map<String, Query> projectFilters;
+
+	/**
+	 * Creates a compiler that caches at most the given number of queries and
+	 * of project filters.
+	 */
+	public QueryCompiler(Analyzer analyzer, int maxEntries) {
+		this.analyzer = analyzer;
+		this.queries = createCache(maxEntries);
+		this.projectFilters = createCache(maxEntries);
+	}
+
+	private static Map<String, Query> createCache(int maxEntries) {
+		return new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/** Parses a query string, queries that cannot be parsed are not cached */
+	public Query parse(String queryString) throws ParseException {
+		synchronized (queries) {
+			Query query = queries.get(queryString);
+			if (query != null) {
+				return query;
+			}
+		}
+		// QueryParser not thread-safe, hence create new for each query
+		QueryParser queryParser = new MultiFieldQueryParser(FieldConstants.SEARCH_FIELDS, analyzer);
+		queryParser.setDefaultOperator(Operator.AND);
+		Query query = queryParser.parse(queryString);
+		synchronized (queries) {
+			queries.put(queryString, query);
+		}
+		return query;
+	}
+
+	/**
+	 * Restricts a query to the documents of a project in the legacy index. The
+	 * project is a filter clause, hence it does not contribute to the score.
+	 */
+	public Query restrictToProject(Query query, String project) throws ParseException {
+		return new BooleanQuery.Builder().add(query, Occur.MUST).add(getProjectFilter(project), Occur.FILTER)
+				.build();
+	}
+
+	/**
+	 * Returns the filter for the documents of a project in the legacy index.
+	 * Documents written by earlier versions have a tokenized project field,
+	 * hence the project id is also matched as analyzed text.
+	 */
+	private Query getProjectFilter(String project) throws ParseException {
+		synchronized (projectFilters) {
+			Query filter = projectFilters.get(project);
+			if (filter != null) {
+				return filter;
+			}
+		}
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		builder.add(new TermQuery(new Term(FieldConstants.FIELD_PROJECT, project)), Occur.SHOULD);
+		QueryParser projectParser = new QueryParser(FieldConstants.FIELD_PROJECT, analyzer);
+		projectParser.setDefaultOperator(Operator.AND);
+		Query legacyProjectQuery = projectParser.parse(QueryParser.escape(project));
+		if (legacyProjectQuery != null) {
+			builder.add(legacyProjectQuery, Occur.SHOULD);
+		}
+		Query filter = builder.build();
+		synchronized (projectFilters) {
+			projectFilters.put(project, filter);
+		}
+		return filter;
+	}
+}
@@ -0,0 +1,66 @@
+package com.specmate.search.internal.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the progress of a reindex of all projects. Each line of the
+ * checkpoint file names a project whose shard has been completely rebuilt, so
+ * an interrupted reindex continues with the remaining projects.
+ */
+public class ReindexCheckpoint {
+
+	/** File that records the progress of a reindex */
+	private static final String CHECKPOINT_FILE = "reindex.checkpoint";
+
+	/** The checkpoint file */
+	private final Path file;
+
+	public ReindexCheckpoint(Path location) {
+		this.file = location.resolve(CHECKPOINT_FILE);
+	}
+
+	/** Returns <code>true</code> if a reindex has been interrupted */
+	public boolean exists() {
+		return Files.exists(file);
+	}
+
+	/** Creates the checkpoint, if it does not exist yet */
+	public void start() throws IOException {
+		if (!exists()) {
+			Files.write(file, Collections.<String>emptyList(), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+		}
+	}
+
+	/** Returns the projects that are completed by the current reindex */
+	public Set<String> getCompletedProjects() throws IOException {
+		if (!exists()) {
+			return Collections.emptySet();
+		}
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		lines.removeIf(String::isEmpty);
+		return new HashSet<>(lines);
+	}
+
+	/**
+	 * Records that the shard of a project is completely rebuilt. The shard has
+	 * to be committed before.
+	 */
+	public synchronized void completeProject(String project) throws IOException {
+		Files.write(file, Collections.singletonList(project), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+	}
+
+	/** Removes the checkpoint after the reindex has finished */
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+	}
+}
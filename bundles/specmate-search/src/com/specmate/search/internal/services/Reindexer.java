@@ -0,0 +1,309 @@
+package com.specmate.search.internal.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.json.JSONObject;
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.model.base.Folder;
+import com.specmate.model.support.util.SpecmateEcoreUtil;
+import com.specmate.persistency.IPersistencyService;
+import com.specmate.persistency.IView;
+import com.specmate.urihandler.IURIFactory;
+
+/**
+ * Rebuilds the shards of a list of projects. The projects are indexed by a
+ * number of worker threads, each with its own view. Each project is indexed
+ * into a new index, which replaces the shard of the project when it is
+ * complete. With a checkpoint, completed projects are recorded, hence an
+ * interrupted reindex continues with the remaining projects.
+ */
+public class Reindexer {
+
+	/** The states of a reindex */
+	public enum EReindexState {
+		/** The projects are indexed */
+		RUNNING,
+		/** The shards of all projects are rebuilt */
+		FINISHED,
+		/** The reindex has failed or was cancelled */
+		FAILED
+	}
+
+	/** Builds the new shards of the projects */
+	public interface IShardBuilder {
+		/**
+		 * Opens a new index for a project. Changes of the project are written
+		 * to it from now on.
+		 */
+		SearchIndex startShard(String project) throws IOException;
+
+		/**
+		 * Replaces the shard of a project with the given, completely indexed
+		 * index.
+		 */
+		void completeShard(String project, SearchIndex index) throws IOException, InterruptedException;
+
+		/** Closes the index of a project that has not been completed */
+		void abortShard(String project, SearchIndex index);
+	}
+
+	private final IPersistencyService persistencyService;
+	private final IURIFactory uriFactory;
+	private final List<String> indexedClasses;
+	private final int threads;
+	private final LogService logService;
+	private final SearchMetrics metrics;
+
+	private volatile EReindexState state = EReindexState.RUNNING;
+	private volatile boolean cancelled;
+	private volatile String message;
+	private volatile int projectCount;
+	private volatile boolean resumed;
+	private final AtomicInteger completedProjects = new AtomicInteger();
+	private final AtomicLong indexedObjects = new AtomicLong();
+	private final long startTime = System.currentTimeMillis();
+	private volatile long finishTime;
+
+	public Reindexer(IPersistencyService persistencyService, IURIFactory uriFactory, List<String> indexedClasses,
+			int threads, SearchMetrics metrics, LogService logService) {
+		this.persistencyService = persistencyService;
+		this.uriFactory = uriFactory;
+		this.indexedClasses = indexedClasses;
+		this.threads = threads;
+		this.metrics = metrics;
+		this.logService = logService;
+	}
+
+	/**
+	 * Rebuilds the shards of the given projects, except the projects that are
+	 * recorded in the checkpoint.
+	 *
+	 * @param projects
+	 *            the ids of the projects to index
+	 * @param checkpoint
+	 *            the checkpoint to record the completed projects, or
+	 *            <code>null</code>
+	 * @param shardBuilder
+	 *            the builder of the new shards
+	 * @return <code>false</code> if the reindex has been cancelled
+	 */
+	public boolean run(List<String> projects, ReindexCheckpoint checkpoint, IShardBuilder shardBuilder)
+			throws SpecmateException, IOException {
+		Set<String> completed = checkpoint == null ? new HashSet<>() : checkpoint.getCompletedProjects();
+		Queue<String> remaining = new ConcurrentLinkedQueue<>();
+		for (String project : projects) {
+			if (completed.contains(project)) {
+				completedProjects.incrementAndGet();
+			} else {
+				remaining.add(project);
+			}
+		}
+		projectCount = projects.size();
+		resumed = !completed.isEmpty();
+		if (resumed) {
+			logService.log(LogService.LOG_INFO, "Re-indexing continues with " + remaining.size() + " of "
+					+ projects.size() + " projects.");
+		}
+
+		int workerCount = Math.max(1, Math.min(threads, remaining.size()));
+		List<IView> views = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+		try {
+			List<Callable<Void>> workers = new ArrayList<>();
+			for (int i = 0; i < workerCount; i++) {
+				IView workerView = persistencyService.openView();
+				views.add(workerView);
+				workers.add(() -> {
+					try {
+						indexProjects(workerView, remaining, checkpoint, shardBuilder);
+					} catch (Exception e) {
+						// stop the other workers
+						cancelled = true;
+						throw e;
+					}
+					return null;
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(workers)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			cancelled = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			cancelled = true;
+			Throwable cause = e.getCause();
+			if (cause instanceof InterruptedException) {
+				return false;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof Exception) {
+				throw new SpecmateException("Re-indexing failed.", (Exception) cause);
+			}
+			throw (Error) cause;
+		} finally {
+			executor.shutdown();
+			for (IView workerView : views) {
+				workerView.close();
+			}
+		}
+		return !cancelled;
+	}
+
+	/**
+	 * Returns the ids of the projects, i.e. the top level folders. Objects
+	 * outside of projects are not indexed, as searches are restricted to a
+	 * project.
+	 */
+	public static List<String> getProjects(IView view) {
+		List<String> projects = new ArrayList<>();
+		for (EObject object : view.getResource().getContents()) {
+			if (object instanceof Folder) {
+				String id = ((Folder) object).getId();
+				if (id != null && !id.isEmpty()) {
+					projects.add(id);
+				}
+			}
+		}
+		return projects;
+	}
+
+	/** Indexes projects from the queue until it is empty */
+	private void indexProjects(IView view, Queue<String> projects, ReindexCheckpoint checkpoint,
+			IShardBuilder shardBuilder) throws IOException, InterruptedException {
+		String project;
+		while (!cancelled && (project = projects.poll()) != null) {
+			SearchIndex index = shardBuilder.startShard(project);
+			boolean completed = false;
+			try {
+				EObject folder = getProjectFolder(view, project);
+				if (folder != null) {
+					indexObject(folder, project, index);
+					TreeIterator<EObject> iterator = folder.eAllContents();
+					while (iterator.hasNext() && !cancelled) {
+						indexObject(iterator.next(), project, index);
+					}
+				}
+				if (cancelled) {
+					return;
+				}
+				index.commit();
+				shardBuilder.completeShard(project, index);
+				completed = true;
+			} finally {
+				if (!completed) {
+					shardBuilder.abortShard(project, index);
+				}
+			}
+			if (checkpoint != null) {
+				checkpoint.completeProject(project);
+			}
+			completedProjects.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the folder of a project, or <code>null</code> if the project has
+	 * been deleted in the meantime
+	 */
+	private EObject getProjectFolder(IView view, String project) {
+		for (EObject object : view.getResource().getContents()) {
+			if (object instanceof Folder && project.equals(((Folder) object).getId())) {
+				return object;
+			}
+		}
+		return null;
+	}
+
+	private void indexObject(EObject object, String project, SearchIndex index) throws IOException {
+		String className = object.eClass().getName();
+		if (!indexedClasses.contains(className)) {
+			return;
+		}
+		String id = SpecmateEcoreUtil.getUniqueId(object);
+		if (id == null) {
+			logService.log(LogService.LOG_ERROR, "Could not reindex object.");
+			return;
+		}
+		index.updateDocument(id, DocumentFactory.create(object, id, project, getUrl(object)));
+		indexedObjects.incrementAndGet();
+		metrics.recordReindexedObject();
+	}
+
+	/** Returns the url of an object, or <code>null</code> if it has none */
+	private String getUrl(EObject object) {
+		try {
+			return uriFactory.getURI(object);
+		} catch (SpecmateException e) {
+			return null;
+		}
+	}
+
+	/** Cancels the reindex, the completed projects keep their new shards */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/** Returns <code>true</code> if the reindex has been cancelled */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/** Sets the state of the reindex */
+	public void setState(EReindexState state) {
+		this.state = state;
+		if (state == EReindexState.FINISHED || state == EReindexState.FAILED) {
+			this.finishTime = System.currentTimeMillis();
+		}
+	}
+
+	/** Marks the reindex as failed */
+	public void fail(String message) {
+		this.message = message;
+		setState(EReindexState.FAILED);
+	}
+
+	/** Returns <code>true</code> if the reindex has finished or failed */
+	public boolean isDone() {
+		return state == EReindexState.FINISHED || state == EReindexState.FAILED;
+	}
+
+	/** Creates the JSON representation of the progress */
+	public String toJson() {
+		JSONObject json = new JSONObject();
+		json.put("state", state.name());
+		json.put("resumed", resumed);
+		json.put("projects", projectCount);
+		json.put("completedProjects", completedProjects.get());
+		json.put("indexedObjects", indexedObjects.get());
+		json.put("startTime", startTime);
+		long endTime = isDone() ? finishTime : System.currentTimeMillis();
+		json.put("objectsPerSecond", indexedObjects.get() * 1000 / Math.max(1, endTime - startTime));
+		if (isDone()) {
+			json.put("finishTime", finishTime);
+		}
+		if (message != null) {
+			json.put("message", message);
+		}
+		return json.toString();
+	}
+}
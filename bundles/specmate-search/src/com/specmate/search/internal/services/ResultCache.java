@@ -0,0 +1,78 @@
+package com.specmate.search.internal.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * Cache for the results of searches on one index, in least recently used
+ * order. Each result is tagged with the version of the index reader it was
+ * computed on and is only returned for a searcher on the same version. The
+ * cache is cleared whenever the searcher is refreshed after a change.
+ */
+public class ResultCache {
+
+	/** A cached result with the version of its index reader */
+	private static class CachedResult {
+		private final long version;
+		private final Object result;
+
+		private CachedResult(long version, Object result) {
+			this.version = version;
+			this.result = result;
+		}
+	}
+
+	/** Maximal number of cached results, 0 to disable the cache */
+	private final int maxEntries;
+
+	/** Cached results by key, in least recently used order */
+	private final Map<String, CachedResult> entries;
+
+	public ResultCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the result cached for the given key and the version of the
+	 * searcher, or <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <T> T get(String key, IndexSearcher searcher) {
+		if (maxEntries == 0) {
+			return null;
+		}
+		CachedResult cached = entries.get(key);
+		if (cached == null || cached.version != getVersion(searcher)) {
+			return null;
+		}
+		return (T) cached.result;
+	}
+
+	/** Caches a result computed with the given searcher */
+	public synchronized void put(String key, IndexSearcher searcher, Object result) {
+		if (maxEntries == 0) {
+			return;
+		}
+		entries.put(key, new CachedResult(getVersion(searcher), result));
+	}
+
+	/** Removes all results */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	private long getVersion(IndexSearcher searcher) {
+		return ((DirectoryReader) searcher.getIndexReader()).getVersion();
+	}
+}
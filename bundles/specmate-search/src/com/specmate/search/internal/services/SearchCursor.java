@@ -0,0 +1,48 @@
+package com.specmate.search.internal.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.util.BytesRef;
+
+import com.specmate.common.SpecmateInvalidQueryException;
+
+/**
+ * Encodes the position after the last hit of a page, so the next page can be
+ * requested with <code>searchAfter</code>. Hits are sorted by score and by id,
+ * hence the position remains valid when the index changes in between.
+ */
+public class SearchCursor {
+
+	/** Separates the score from the id */
+	private static final char SEPARATOR = ':';
+
+	/** Encodes the sort values of a hit */
+	public static String encode(FieldDoc hit) {
+		StringBuilder cursor = new StringBuilder();
+		cursor.append(Integer.toHexString(Float.floatToIntBits((Float) hit.fields[0])));
+		if (hit.fields[1] != null) {
+			cursor.append(SEPARATOR).append(((BytesRef) hit.fields[1]).utf8ToString());
+		}
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor. The document number of the result is larger than any
+	 * document, so only hits with a lower score or a larger id follow it.
+	 */
+	public static FieldDoc decode(String cursor) throws SpecmateInvalidQueryException {
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int separator = decoded.indexOf(SEPARATOR);
+			String scoreBits = separator < 0 ? decoded : decoded.substring(0, separator);
+			Float score = Float.intBitsToFloat(Integer.parseUnsignedInt(scoreBits, 16));
+			BytesRef id = separator < 0 ? null : new BytesRef(decoded.substring(separator + 1));
+			return new FieldDoc(Integer.MAX_VALUE, score, new Object[] { score, id });
+		} catch (IllegalArgumentException e) {
+			throw new SpecmateInvalidQueryException("Invalid cursor: " + cursor, e);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.specmate.search.internal.services;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * A lucene index in a single directory. Changes are written through the index
+ * writer and become visible to searches in near real time, without a commit.
+ */
+public class SearchIndex {
+
+	/** The location of the index */
+	private final Path path;
+
+	/** The lucene directory. */
+	private final Directory directory;
+
+	/** Index writer to modify the lucene database */
+	private final IndexWriter indexWriter;
+
+	/** Search manager to perform searches on the lucene database. */
+	private final SearcherManager searcherManager;
+
+	/**
+	 * Thread that refreshes the searcher manager, so changes become visible to
+	 * searches without committing them.
+	 */
+	private final ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+	/** Sequence number of the latest change applied to the index writer */
+	private final AtomicLong indexGeneration = new AtomicLong();
+
+	/** Results of searches on the current searcher */
+	private final ResultCache resultCache;
+
+	/**
+	 * Time in milliseconds of the first change that is not visible to
+	 * searches yet, 0 if there is none
+	 */
+	private final AtomicLong firstPendingChange = new AtomicLong();
+
+	/** Time of the first change that is made visible by the running refresh */
+	private volatile long refreshedChange;
+
+	/**
+	 * Opens the index in the given location, an index is created if it does
+	 * not exist yet.
+	 *
+	 * @param maxStaleMillis
+	 *            maximal time in milliseconds until a change becomes visible
+	 * @param minStaleMillis
+	 *            minimal time in milliseconds between refreshes when a search
+	 *            waits
+	 * @param resultCacheSize
+	 *            maximal number of cached search results
+	 * @param metrics
+	 *            the metrics that record the refresh lag
+	 */
+	public SearchIndex(Path path, Analyzer analyzer, int maxStaleMillis, int minStaleMillis, int resultCacheSize,
+			SearchMetrics metrics) throws IOException {
+		this.path = path;
+		this.directory = FSDirectory.open(path);
+		this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		this.searcherManager = new SearcherManager(indexWriter, true, true, null);
+		this.resultCache = new ResultCache(resultCacheSize);
+		this.searcherManager.addListener(new RefreshListener() {
+			@Override
+			public void beforeRefresh() {
+				refreshedChange = firstPendingChange.getAndSet(0);
+			}
+
+			@Override
+			public void afterRefresh(boolean didRefresh) {
+				if (didRefresh) {
+					resultCache.clear();
+				}
+				if (refreshedChange != 0) {
+					metrics.recordRefreshLag(System.currentTimeMillis() - refreshedChange);
+				}
+			}
+		});
+		this.reopenThread = new ControlledRealTimeReopenThread<>(indexWriter, searcherManager,
+				maxStaleMillis / 1000.0, minStaleMillis / 1000.0);
+		this.reopenThread.setName("lucene-search-refresh-" + path.getFileName());
+		this.reopenThread.setDaemon(true);
+		this.reopenThread.start();
+	}
+
+	/** Returns the location of the index */
+	public Path getPath() {
+		return path;
+	}
+
+	/** Adds or replaces the document of the object with the given id */
+	public void updateDocument(String id, Document document) throws IOException {
+		updateIndexGeneration(indexWriter.updateDocument(new Term(FieldConstants.FIELD_ID, id), document));
+	}
+
+	/** Removes the documents with the given ids */
+	public void deleteDocuments(Term... idTerms) throws IOException {
+		updateIndexGeneration(indexWriter.deleteDocuments(idTerms));
+	}
+
+	/** Removes all documents */
+	public void deleteAll() throws IOException {
+		updateIndexGeneration(indexWriter.deleteAll());
+	}
+
+	/** Commits the changes, if there are any */
+	public void commit() throws IOException {
+		if (indexWriter.hasUncommittedChanges()) {
+			indexWriter.commit();
+		}
+	}
+
+	/** Returns the number of documents, including uncommitted changes */
+	public int getDocumentCount() {
+		return indexWriter.numDocs();
+	}
+
+	/** Returns the size of the index files in bytes */
+	public long getSizeInBytes() throws IOException {
+		long size = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, Files::isRegularFile)) {
+			for (Path file : stream) {
+				try {
+					size += Files.size(file);
+				} catch (IOException e) {
+					// deleted by a merge in the meantime
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Records the sequence number of a change applied to the index writer.
+	 */
+	private void updateIndexGeneration(long sequenceNumber) {
+		firstPendingChange.compareAndSet(0, System.currentTimeMillis());
+		indexGeneration.accumulateAndGet(sequenceNumber, Math::max);
+	}
+
+	/**
+	 * Waits until searches see all changes written so far, but at most for the
+	 * given time.
+	 */
+	public void waitForChanges(int timeoutMillis) throws InterruptedException {
+		if (timeoutMillis > 0) {
+			reopenThread.waitForGeneration(indexGeneration.get(), timeoutMillis);
+		}
+	}
+
+	/** Makes all changes written so far visible to searches. */
+	public void refresh() throws IOException {
+		searcherManager.maybeRefreshBlocking();
+	}
+
+	/** Acquires a searcher, which has to be released after use. */
+	public IndexSearcher acquire() throws IOException {
+		return searcherManager.acquire();
+	}
+
+	/** Releases a searcher acquired from this index. */
+	public void release(IndexSearcher searcher) throws IOException {
+		searcherManager.release(searcher);
+	}
+
+	/**
+	 * Returns the cached result of a search on the given searcher, or
+	 * <code>null</code> if there is none.
+	 */
+	public <T> T getCachedResult(String key, IndexSearcher searcher) {
+		return resultCache.get(key, searcher);
+	}
+
+	/** Caches the result of a search on the given searcher */
+	public void cacheResult(String key, IndexSearcher searcher, Object result) {
+		resultCache.put(key, searcher, result);
+	}
+
+	/**
+	 * Closes the index. Uncommitted changes are committed. Searchers that are
+	 * still acquired stay usable until they are released.
+	 */
+	public void close() throws IOException {
+		reopenThread.close();
+		try {
+			searcherManager.close();
+			indexWriter.close();
+		} finally {
+			directory.close();
+		}
+	}
+}
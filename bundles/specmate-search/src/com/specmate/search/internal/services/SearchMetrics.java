@@ -0,0 +1,153 @@
+package com.specmate.search.internal.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.metrics.ICounter;
+import com.specmate.metrics.IGauge;
+import com.specmate.metrics.IHistogram;
+import com.specmate.metrics.ILabeledHistogram;
+import com.specmate.metrics.IMetricsService;
+
+/**
+ * The metrics of the search service. The values are exported through the
+ * metrics service and kept for the status of the search service. The latency
+ * of a search is split into phases, so a slow search can be traced to the
+ * wait for pending changes, to lucene or to loading the found objects.
+ */
+public class SearchMetrics {
+
+	/** The phases of a search */
+	public enum EPhase {
+		/** Waiting until pending changes are visible */
+		WAIT,
+		/** Searching the index */
+		LUCENE,
+		/** Loading the found model objects */
+		RESOLVE
+	}
+
+	/** The latencies of the searches in a project */
+	private static class Latencies {
+		private final LongAdder[] counts = new LongAdder[EPhase.values().length];
+		private final LongAdder[] totalNanos = new LongAdder[EPhase.values().length];
+		private final LongAccumulator[] maxNanos = new LongAccumulator[EPhase.values().length];
+
+		private Latencies() {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = new LongAdder();
+				totalNanos[i] = new LongAdder();
+				maxNanos[i] = new LongAccumulator(Math::max, 0);
+			}
+		}
+
+		private void record(EPhase phase, long nanos) {
+			counts[phase.ordinal()].increment();
+			totalNanos[phase.ordinal()].add(nanos);
+			maxNanos[phase.ordinal()].accumulate(nanos);
+		}
+
+		private JSONObject toJson() {
+			JSONObject json = new JSONObject();
+			for (EPhase phase : EPhase.values()) {
+				long count = counts[phase.ordinal()].sum();
+				JSONObject jsonPhase = new JSONObject();
+				jsonPhase.put("count", count);
+				jsonPhase.put("meanMillis", count == 0 ? 0 : toMillis(totalNanos[phase.ordinal()].sum() / count));
+				jsonPhase.put("maxMillis", toMillis(maxNanos[phase.ordinal()].get()));
+				json.put(phase.name().toLowerCase(), jsonPhase);
+			}
+			return json;
+		}
+	}
+
+	private final ILabeledHistogram queryHistogram;
+	private final IHistogram commitHistogram;
+	private final IHistogram refreshLagHistogram;
+	private final IGauge documentsGauge;
+	private final IGauge sizeGauge;
+	private final ICounter reindexCounter;
+
+	/** The latencies of the searches by project */
+	private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+	private volatile long lastCommitMillis;
+	private volatile long lastRefreshLagMillis;
+
+	public SearchMetrics(IMetricsService metricsService) throws SpecmateException {
+		this.queryHistogram = metricsService.createLabeledHistogram("search_query_seconds",
+				"The latency of the phases of a search", "project", "phase");
+		this.commitHistogram = metricsService.createHistogram("search_commit_seconds",
+				"The duration of the commits of the index");
+		this.refreshLagHistogram = metricsService.createHistogram("search_refresh_lag_seconds",
+				"The time until a change of the index is visible to searches");
+		this.documentsGauge = metricsService.createGauge("search_index_documents",
+				"The number of documents in the index");
+		this.sizeGauge = metricsService.createGauge("search_index_size_bytes", "The size of the index files");
+		this.reindexCounter = metricsService.createCounter("search_reindex_objects",
+				"The number of objects indexed by a reindex");
+	}
+
+	/** Records the duration of a phase of a search in a project */
+	public void recordQuery(String project, EPhase phase, long nanos) {
+		String label = project == null ? "" : project;
+		queryHistogram.labels(label, phase.name().toLowerCase()).observe(nanos / 1e9);
+		latencies.computeIfAbsent(label, p -> new Latencies()).record(phase, nanos);
+	}
+
+	/** Records the duration of a commit */
+	public void recordCommit(long nanos) {
+		commitHistogram.observe(nanos / 1e9);
+		lastCommitMillis = toMillis(nanos);
+	}
+
+	/** Records the time from a change until it became visible to searches */
+	public void recordRefreshLag(long millis) {
+		refreshLagHistogram.observe(millis / 1000.0);
+		lastRefreshLagMillis = millis;
+	}
+
+	/** Records an object that has been indexed by a reindex */
+	public void recordReindexedObject() {
+		reindexCounter.inc();
+	}
+
+	/** Sets the total number of documents and size of the indexes */
+	public void setIndexSize(long documents, long bytes) {
+		documentsGauge.set(documents);
+		sizeGauge.set(bytes);
+	}
+
+	/** Returns the duration of the last commit in milliseconds */
+	public long getLastCommitMillis() {
+		return lastCommitMillis;
+	}
+
+	/** Returns the last time in milliseconds until a change became visible */
+	public long getLastRefreshLagMillis() {
+		return lastRefreshLagMillis;
+	}
+
+	/**
+	 * Returns the JSON representation of the latencies of the searches in a
+	 * project, or <code>null</code> if the project has not been searched yet.
+	 */
+	public JSONObject getLatencies(String project) {
+		Latencies projectLatencies = latencies.get(project);
+		return projectLatencies == null ? null : projectLatencies.toJson();
+	}
+
+	/** Removes the latencies of a project that has been deleted */
+	public void removeProject(String project) {
+		latencies.remove(project);
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1000000;
+	}
+}
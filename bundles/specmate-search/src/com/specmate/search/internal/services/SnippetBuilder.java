@@ -0,0 +1,113 @@
+package com.specmate.search.internal.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.index.Term;
+
+/**
+ * Builds excerpts of stored texts in which the terms of a query are
+ * highlighted. The texts are analyzed with the analyzer of the index, hence
+ * the same tokens match as in the search.
+ */
+public class SnippetBuilder {
+
+	/** Maximal number of characters of the text in an excerpt */
+	private static final int MAX_LENGTH = 160;
+
+	/** Number of characters before the first match */
+	private static final int LEADING_CONTEXT = 40;
+
+	private static final String START_TAG = "<em>";
+	private static final String END_TAG = "</em>";
+	private static final String ELLIPSIS = "...";
+
+	private final Analyzer analyzer;
+
+	/** The terms of the query by field */
+	private final Map<String, Set<String>> terms = new HashMap<>();
+
+	public SnippetBuilder(Analyzer analyzer, Set<Term> queryTerms) {
+		this.analyzer = analyzer;
+		for (Term term : queryTerms) {
+			terms.computeIfAbsent(term.field(), field -> new HashSet<>()).add(term.text());
+		}
+	}
+
+	/**
+	 * Returns an excerpt of the text that starts shortly before the first
+	 * match. The text is HTML-escaped, the matches are enclosed in
+	 * <code>em</code> tags.
+	 */
+	public String build(String field, String text) throws IOException {
+		if (text == null) {
+			return null;
+		}
+		List<int[]> matches = findMatches(field, text);
+		int start = 0;
+		if (!matches.isEmpty() && matches.get(0)[0] > LEADING_CONTEXT) {
+			start = text.lastIndexOf(' ', matches.get(0)[0] - LEADING_CONTEXT) + 1;
+		}
+		int end = Math.min(text.length(), start + MAX_LENGTH);
+		if (end < text.length()) {
+			int space = text.lastIndexOf(' ', end);
+			if (space > start) {
+				end = space;
+			}
+		}
+
+		StringBuilder snippet = new StringBuilder();
+		if (start > 0) {
+			snippet.append(ELLIPSIS);
+		}
+		int position = start;
+		for (int[] match : matches) {
+			if (match[0] < position) {
+				continue;
+			}
+			if (match[1] > end) {
+				break;
+			}
+			snippet.append(StringEscapeUtils.escapeHtml4(text.substring(position, match[0])));
+			snippet.append(START_TAG).append(StringEscapeUtils.escapeHtml4(text.substring(match[0], match[1])))
+					.append(END_TAG);
+			position = match[1];
+		}
+		snippet.append(StringEscapeUtils.escapeHtml4(text.substring(position, end)));
+		if (end < text.length()) {
+			snippet.append(ELLIPSIS);
+		}
+		return snippet.toString();
+	}
+
+	/** Returns the start and end offsets of the tokens that match a term */
+	private List<int[]> findMatches(String field, String text) throws IOException {
+		List<int[]> matches = new ArrayList<>();
+		Set<String> fieldTerms = terms.get(field);
+		if (fieldTerms == null) {
+			return matches;
+		}
+		try (TokenStream stream = analyzer.tokenStream(field, text)) {
+			CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offsetAttribute = stream.addAttribute(OffsetAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				if (fieldTerms.contains(termAttribute.toString())) {
+					matches.add(new int[] { offsetAttribute.startOffset(), offsetAttribute.endOffset() });
+				}
+			}
+			stream.end();
+		}
+		return matches;
+	}
+}
@@ -0,0 +1,192 @@
+package com.specmate.search.internal.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.document.Document;
+
+import com.specmate.search.api.Suggestion;
+
+/**
+ * Suggests requirements and models by their names and external ids. The
+ * suggestions are kept in memory in a sorted map per project. Each name is
+ * registered from every position where a word starts, hence a prefix matches
+ * the beginning of any word of a name and a lookup is a range scan of the
+ * sorted map. Updates have to be synchronized by the caller, lookups may
+ * happen concurrently.
+ */
+public class Suggester {
+
+	/** The classes whose objects are suggested */
+	public static final Set<String> SUGGESTED_CLASSES = new HashSet<>(
+			Arrays.asList("Requirement", "CEGModel", "Process"));
+
+	/** The stored fields that are read for a suggestion */
+	public static final Set<String> SUGGEST_FIELDS = new HashSet<>(
+			Arrays.asList(FieldConstants.FIELD_ID, FieldConstants.FIELD_PROJECT, FieldConstants.FIELD_URL,
+					FieldConstants.FIELD_CLASS_NAME, FieldConstants.FIELD_NAME, FieldConstants.FIELD_EXTID));
+
+	/** Maximal length of a key, longer names are suggested by their start */
+	private static final int MAX_KEY_LENGTH = 100;
+
+	/** Separates the text of a key from the id of the object */
+	private static final char KEY_SEPARATOR = '\u0000';
+
+	/** Number of candidates that are ranked per requested suggestion */
+	private static final int CANDIDATE_FACTOR = 4;
+
+	/** Pattern for the start of a word */
+	private static final Pattern WORD_START = Pattern.compile("(?U)\\b\\w");
+
+	/** A suggested object */
+	private static class Entry {
+		private final String id;
+		private final String project;
+		private final String url;
+		private final String className;
+		private final String name;
+		private final String extId;
+		private final String normalizedName;
+		private final String normalizedExtId;
+		private final List<String> keys = new ArrayList<>();
+
+		private Entry(String id, String project, String url, String className, String name, String extId) {
+			this.id = id;
+			this.project = project;
+			this.url = url;
+			this.className = className;
+			this.name = name;
+			this.extId = extId;
+			this.normalizedName = name == null ? "" : normalize(name);
+			this.normalizedExtId = extId == null ? "" : normalize(extId);
+		}
+	}
+
+	/** The keys of the suggested objects by project */
+	private final Map<String, NavigableMap<String, Entry>> projects = new ConcurrentHashMap<>();
+
+	/** The suggested objects by id */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds or replaces the suggestions for the object of a document. Objects of
+	 * classes that are not suggested are ignored.
+	 */
+	public void update(Document document) {
+		String id = document.get(FieldConstants.FIELD_ID);
+		remove(id);
+		String className = document.get(FieldConstants.FIELD_CLASS_NAME);
+		String project = document.get(FieldConstants.FIELD_PROJECT);
+		if (className == null || !SUGGESTED_CLASSES.contains(className) || project == null) {
+			return;
+		}
+		Entry entry = new Entry(id, project, document.get(FieldConstants.FIELD_URL), className,
+				document.get(FieldConstants.FIELD_NAME), document.get(FieldConstants.FIELD_EXTID));
+		Matcher matcher = WORD_START.matcher(entry.normalizedName);
+		while (matcher.find()) {
+			entry.keys.add(createKey(entry.normalizedName.substring(matcher.start()), id));
+		}
+		if (!entry.normalizedExtId.isEmpty()) {
+			entry.keys.add(createKey(entry.normalizedExtId, id));
+		}
+		NavigableMap<String, Entry> keys = projects.computeIfAbsent(project, p -> new ConcurrentSkipListMap<>());
+		for (String key : entry.keys) {
+			keys.put(key, entry);
+		}
+		entries.put(id, entry);
+	}
+
+	/** Removes the suggestions for an object */
+	public void remove(String id) {
+		Entry entry = entries.remove(id);
+		if (entry == null) {
+			return;
+		}
+		NavigableMap<String, Entry> keys = projects.get(entry.project);
+		if (keys != null) {
+			for (String key : entry.keys) {
+				keys.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the suggestions of a project with the suggestions for the
+	 * given documents.
+	 */
+	public void replaceProject(String project, Collection<Document> documents) {
+		removeProject(project);
+		for (Document document : documents) {
+			update(document);
+		}
+	}
+
+	/** Removes the suggestions of a project */
+	public void removeProject(String project) {
+		entries.values().removeIf(entry -> entry.project.equals(project));
+		projects.remove(project);
+	}
+
+	/** Removes all suggestions */
+	public void clear() {
+		entries.clear();
+		projects.clear();
+	}
+
+	/**
+	 * Returns the suggestions of a project for a prefix. Suggestions that
+	 * match at the beginning of the name or the external id come first.
+	 */
+	public List<Suggestion> suggest(String project, String prefix, int count) {
+		String normalizedPrefix = normalize(prefix);
+		NavigableMap<String, Entry> keys = projects.get(project);
+		if (keys == null || normalizedPrefix.isEmpty() || count <= 0) {
+			return new ArrayList<>();
+		}
+		Map<String, Suggestion> candidates = new LinkedHashMap<>();
+		Set<String> startMatches = new HashSet<>();
+		for (Entry entry : keys.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false)
+				.values()) {
+			if (candidates.containsKey(entry.id)) {
+				continue;
+			}
+			boolean extIdMatch = entry.normalizedExtId.startsWith(normalizedPrefix);
+			boolean nameMatch = entry.normalizedName.startsWith(normalizedPrefix);
+			String text = extIdMatch && !nameMatch ? entry.extId : entry.name;
+			candidates.put(entry.id, new Suggestion(text, entry.id, entry.url, entry.className, entry.name));
+			if (nameMatch || extIdMatch) {
+				startMatches.add(entry.id);
+			}
+			if (candidates.size() >= count * CANDIDATE_FACTOR) {
+				break;
+			}
+		}
+		List<Suggestion> suggestions = new ArrayList<>(candidates.values());
+		suggestions.sort(Comparator.comparing(suggestion -> !startMatches.contains(suggestion.getId())));
+		return suggestions.size() > count ? new ArrayList<>(suggestions.subList(0, count)) : suggestions;
+	}
+
+	private String createKey(String text, String id) {
+		if (text.length() > MAX_KEY_LENGTH) {
+			text = text.substring(0, MAX_KEY_LENGTH);
+		}
+		return text + KEY_SEPARATOR + id;
+	}
+
+	private static String normalize(String text) {
+		return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+}
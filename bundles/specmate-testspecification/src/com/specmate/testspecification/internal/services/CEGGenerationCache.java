@@ -0,0 +1,56 @@
+package com.specmate.testspecification.internal.services;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.hash.HashCode;
+
+/**
+ * Cache for the consistent and inconsistent evaluations computed for CEG
+ * models. Entries are keyed by the structural fingerprint of a model, hence
+ * edits that do not change the structure (e.g. moving or renaming nodes) do
+ * not require to run the solver again. A change of the structure changes the
+ * fingerprint, so outdated entries are never hit and are evicted once the
+ * cache is full.
+ */
+class CEGGenerationCache {
+
+	/** Cached evaluations by fingerprint, in least recently used order */
+	private final Map<HashCode, Pair<List<NodeEvaluation>, List<NodeEvaluation>>> entries;
+
+	/**
+	 * Creates a cache that holds the evaluations of at most the given number
+	 * of model structures.
+	 */
+	public CEGGenerationCache(int maxEntries) {
+		this.entries = new LinkedHashMap<HashCode, Pair<List<NodeEvaluation>, List<NodeEvaluation>>>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<HashCode, Pair<List<NodeEvaluation>, List<NodeEvaluation>>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached consistent and inconsistent evaluations for the given
+	 * fingerprint or <code>null</code> if there are none.
+	 */
+	public synchronized Pair<List<NodeEvaluation>, List<NodeEvaluation>> get(HashCode fingerprint) {
+		return entries.get(fingerprint);
+	}
+
+	/**
+	 * Caches the evaluations computed for a model structure. The lists must
+	 * not be modified afterwards.
+	 */
+	public synchronized void put(HashCode fingerprint, Pair<List<NodeEvaluation>, List<NodeEvaluation>> evaluations) {
+		entries.put(fingerprint, evaluations);
+	}
+}
@@ -1,19 +1,20 @@
 package com.specmate.testspecification.internal.services;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
-import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.EStructuralFeature;
-import org.eclipse.emf.ecore.util.EcoreUtil.EqualityHelper;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.SolverFactory;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
@@ -26,13 +27,11 @@ import org.sat4j.tools.GateTranslator;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.specmate.common.AssertUtil;
 import com.specmate.common.SpecmateException;
-import com.specmate.model.base.BasePackage;
-import com.specmate.model.base.IContainer;
-import com.specmate.model.base.IModelConnection;
-import com.specmate.model.base.IModelNode;
-import com.specmate.model.requirements.CEGConnection;
 import com.specmate.model.requirements.CEGModel;
 import com.specmate.model.requirements.CEGNode;
 import com.specmate.model.requirements.NodeType;
@@ -43,19 +42,44 @@ import com.specmate.model.testspecification.TestCase;
 import com.specmate.model.testspecification.TestParameter;
 import com.specmate.model.testspecification.TestSpecification;
 import com.specmate.model.testspecification.TestspecificationFactory;
-import com.specmate.testspecification.internal.services.TaggedBoolean.ETag;
+import com.specmate.testspecification.internal.services.NodeEvaluation.ETag;
 
 public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNode> {
 
+	/**
+	 * Pool used to expand the evaluations of one iteration concurrently,
+	 * <code>null</code> if the evaluations are expanded sequentially.
+	 */
+	private final ForkJoinPool expansionPool;
+
+	/** Cache for the computed evaluations, <code>null</code> if not cached */
+	private final CEGGenerationCache cache;
+
+	/** The evaluations to create test cases from, once they are computed */
+	private Pair<List<NodeEvaluation>, List<NodeEvaluation>> evaluations;
+
 	public CEGTestCaseGenerator(TestSpecification specification) {
+		this(specification, null, null);
+	}
+
+	/**
+	 * Creates a generator that expands the evaluations of each iteration in the
+	 * given pool and looks up the evaluations of structurally equal models in
+	 * the given cache. Both may be <code>null</code>. The generated test cases
+	 * are the same as with sequential expansion and without cache.
+	 */
+	public CEGTestCaseGenerator(TestSpecification specification, ForkJoinPool expansionPool,
+			CEGGenerationCache cache) {
 		super(specification, CEGModel.class, CEGNode.class);
+		this.expansionPool = expansionPool;
+		this.cache = cache;
 	}
 
 	@Override
 	protected void generateParameters() {
-		for (IModelNode node : nodes) {
-			String name = ((CEGNode) node).getVariable();
-			ParameterType type = determineParameterTypeForNode(node);
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			String name = ((CEGNode) graph.getNode(i)).getVariable();
+			ParameterType type = determineParameterTypeForNode(i);
 			if (type != null && !parameterExists(specification, name, type)) {
 				TestParameter parameter = createTestParameter(name, type);
 				specification.getContents().add(parameter);
@@ -71,10 +95,10 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	 *         ParameterType.OUTPUT, if the node is an output node,
 	 *         <code>null</code> if the node is an intermediate node.
 	 */
-	private ParameterType determineParameterTypeForNode(IModelNode node) {
-		if (node.getIncomingConnections().isEmpty()) {
+	private ParameterType determineParameterTypeForNode(int node) {
+		if (graph.isInput(node)) {
 			return ParameterType.INPUT;
-		} else if (node.getOutgoingConnections().isEmpty()) {
+		} else if (graph.isOutput(node)) {
 			return ParameterType.OUTPUT;
 		} else {
 			return null;
@@ -93,57 +117,134 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		return false;
 	}
 
+	/** Computes the evaluations of the CEG, the test cases are created later */
+	@Override
+	public void prepare() throws SpecmateException {
+		super.prepare();
+		if (evaluations == null) {
+			evaluations = getEvaluations();
+		}
+	}
+
 	/** Generates test cases for the nodes of a CEG. */
 	@Override
 	protected void generateTestCases() throws SpecmateException {
-		Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> evaluations = computeEvaluations();
-		Set<NodeEvaluation> consistent = evaluations.getLeft();
-		Set<NodeEvaluation> inconsistent = evaluations.getRight();
+		if (evaluations == null) {
+			evaluations = getEvaluations();
+		}
+		List<NodeEvaluation> consistent = evaluations.getLeft();
+		List<NodeEvaluation> inconsistent = evaluations.getRight();
+		List<TestParameter> parameters = SpecmateEcoreUtil.pickInstancesOf(specification.getContents(),
+				TestParameter.class);
 		int position = 0;
 		for (NodeEvaluation evaluation : consistent) {
-			TestCase testCase = createTestCase(evaluation, specification, true);
+			TestCase testCase = createTestCase(getParameterValues(evaluation, parameters), parameters, true);
 			testCase.setPosition(position++);
 			specification.getContents().add(testCase);
 		}
-		List<TestCase> inconsistentTestCases = new ArrayList<TestCase>();
+		// Inconsistent evaluations often lead to the same parameter values.
+		// The values in parameter order identify a test case, so duplicates
+		// are skipped before any test case is created.
+		Set<List<String>> inconsistentValues = new HashSet<>();
 		for (NodeEvaluation evaluation : inconsistent) {
-			TestCase testCase = createTestCase(evaluation, specification, false);
-			boolean newTc = !inconsistentTestCases.stream().anyMatch(tc -> {
-				EqualityHelper helper = new IdNamePositionIgnoreEqualityHelper();
-				return helper.equals(tc, testCase);
-			});
-			if (newTc) {
-				inconsistentTestCases.add(testCase);
+			List<String> values = getParameterValues(evaluation, parameters);
+			if (inconsistentValues.add(values)) {
+				TestCase testCase = createTestCase(values, parameters, false);
 				testCase.setPosition(position++);
 				specification.getContents().add(testCase);
-			} else {
-				SpecmateEcoreUtil.detach(testCase);
 			}
 		}
 	}
 
-	/** Creates a test case for a single node evaluation. */
-	private TestCase createTestCase(NodeEvaluation evaluation, TestSpecification specification, boolean isConsistent) {
-		TestCase testCase = super.createTestCase(specification);
-		testCase.setConsistent(isConsistent);
-		List<TestParameter> parameters = SpecmateEcoreUtil.pickInstancesOf(specification.getContents(),
-				TestParameter.class);
-		Multimap<String, IContainer> variableToNodeMap = ArrayListMultimap.create();
-		evaluation.keySet().stream().forEach(n -> variableToNodeMap.put(((CEGNode) n).getVariable(), n));
+	/**
+	 * Returns the consistent and inconsistent evaluations of the model, either
+	 * from the cache or freshly computed. The order of the evaluations is the
+	 * order in which test cases are created.
+	 */
+	private Pair<List<NodeEvaluation>, List<NodeEvaluation>> getEvaluations() throws SpecmateException {
+		HashCode fingerprint = null;
+		if (cache != null) {
+			fingerprint = computeFingerprint();
+			Pair<List<NodeEvaluation>, List<NodeEvaluation>> cached = cache.get(fingerprint);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> computed = computeEvaluations();
+		Pair<List<NodeEvaluation>, List<NodeEvaluation>> evaluations = Pair.of(
+				Collections.unmodifiableList(new ArrayList<>(computed.getLeft())),
+				Collections.unmodifiableList(new ArrayList<>(computed.getRight())));
+		if (cache != null) {
+			cache.put(fingerprint, evaluations);
+		}
+		return evaluations;
+	}
+
+	/**
+	 * Computes a fingerprint of everything in the model that determines the
+	 * generated test cases: the variables, conditions and types of the nodes
+	 * and the connections with their negations, all in model order.
+	 */
+	private HashCode computeFingerprint() {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putInt(graph.getNodeCount());
+		for (int node = 0; node < graph.getNodeCount(); node++) {
+			CEGNode cegNode = (CEGNode) graph.getNode(node);
+			putString(hasher, cegNode.getVariable());
+			putString(hasher, cegNode.getCondition());
+			NodeType type = graph.getType(node);
+			hasher.putInt(type == null ? -1 : type.ordinal());
+			int[] incomingConnections = graph.getIncomingConnections(node);
+			hasher.putInt(incomingConnections.length);
+			for (int conn : incomingConnections) {
+				hasher.putInt(graph.getSource(conn));
+				hasher.putBoolean(graph.isNegated(conn));
+			}
+		}
+		return hasher.hash();
+	}
+
+	/** Adds a possibly null string to a fingerprint */
+	private void putString(Hasher hasher, String string) {
+		if (string == null) {
+			hasher.putInt(-1);
+		} else {
+			hasher.putInt(string.length());
+			hasher.putString(string, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Computes the values of the given parameters for a single node
+	 * evaluation, in the order of the parameters.
+	 */
+	private List<String> getParameterValues(NodeEvaluation evaluation, List<TestParameter> parameters) {
+		Multimap<String, Integer> variableToNodeMap = ArrayListMultimap.create();
+		for (int i = evaluation.nextSetIndex(0); i >= 0; i = evaluation.nextSetIndex(i + 1)) {
+			variableToNodeMap.put(((CEGNode) graph.getNode(i)).getVariable(), i);
+		}
+		List<String> values = new ArrayList<>(parameters.size());
 		for (TestParameter parameter : parameters) {
 			List<String> constraints = new ArrayList<>();
-			for (IContainer node : variableToNodeMap.get(parameter.getName())) {
-				TaggedBoolean nodeEval = evaluation.get(node);
-				String condition = ((CEGNode) node).getCondition();
-				if (nodeEval != null) {
-					String parameterValue = buildParameterValue(condition, nodeEval.value);
-					constraints.add(parameterValue);
-				}
+			for (int index : variableToNodeMap.get(parameter.getName())) {
+				String condition = ((CEGNode) graph.getNode(index)).getCondition();
+				String parameterValue = buildParameterValue(condition, evaluation.getValue(index));
+				constraints.add(parameterValue);
 			}
-			String parameterValue = StringUtils.join(constraints, ",");
+			values.add(StringUtils.join(constraints, ","));
+		}
+		return values;
+	}
+
+	/** Creates a test case that assigns the given values to the parameters. */
+	private TestCase createTestCase(List<String> values, List<TestParameter> parameters, boolean isConsistent) {
+		TestCase testCase = super.createTestCase(specification);
+		testCase.setConsistent(isConsistent);
+		for (int i = 0; i < parameters.size(); i++) {
+			String parameterValue = values.get(i);
 			ParameterAssignment assignment = TestspecificationFactory.eINSTANCE.createParameterAssignment();
 			assignment.setId(SpecmateEcoreUtil.getIdForChild(testCase, assignment.eClass()));
-			assignment.setParameter(parameter);
+			assignment.setParameter(parameters.get(i));
 			assignment.setValue(parameterValue);
 			assignment.setCondition(parameterValue);
 			testCase.getContents().add(assignment);
@@ -180,15 +281,19 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		Set<NodeEvaluation> consistentEvaluations = getInitialEvaluations();
 		Set<NodeEvaluation> inconsistentEvaluations = new HashSet<>();
 		Set<NodeEvaluation> intermediateEvaluations = getIntermediateEvaluations(consistentEvaluations);
+		int round = 0;
 		while (!intermediateEvaluations.isEmpty()) {
-			for (NodeEvaluation evaluation : intermediateEvaluations) {
-				consistentEvaluations.remove(evaluation);
-				Optional<IModelNode> intermediateNodeOpt = getAnyIntermediateNode(evaluation);
-				AssertUtil.assertTrue(intermediateNodeOpt.isPresent());
-				IModelNode node = intermediateNodeOpt.get();
-				Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> iterationResult = iterateEvaluation(evaluation, node);
-				consistentEvaluations.addAll(iterationResult.getLeft());
-				inconsistentEvaluations.addAll(iterationResult.getRight());
+			checkCancelled();
+			// Each round evaluates at least one more level of the graph
+			reportProgress(Math.min(45, 45 * round++ / graph.getNodeCount()));
+			List<NodeEvaluation> iteration = new ArrayList<>(intermediateEvaluations);
+			List<Pair<Set<NodeEvaluation>, Set<NodeEvaluation>>> iterationResults = expandEvaluations(iteration);
+			// Results are merged in iteration order, so the resulting sets are
+			// the same regardless of how the expansion was scheduled
+			for (int i = 0; i < iteration.size(); i++) {
+				consistentEvaluations.remove(iteration.get(i));
+				consistentEvaluations.addAll(iterationResults.get(i).getLeft());
+				inconsistentEvaluations.addAll(iterationResults.get(i).getRight());
 			}
 			intermediateEvaluations = getIntermediateEvaluations(consistentEvaluations);
 		}
@@ -198,6 +303,46 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		return refinedEvaluations;
 	}
 
+	/**
+	 * Expands the given evaluations, in the expansion pool if there is one. The
+	 * results are returned in the order of the given evaluations.
+	 */
+	private List<Pair<Set<NodeEvaluation>, Set<NodeEvaluation>>> expandEvaluations(List<NodeEvaluation> evaluations)
+			throws SpecmateException {
+		if (expansionPool == null || evaluations.size() < 2) {
+			List<Pair<Set<NodeEvaluation>, Set<NodeEvaluation>>> results = new ArrayList<>(evaluations.size());
+			for (NodeEvaluation evaluation : evaluations) {
+				results.add(expandEvaluation(evaluation));
+			}
+			return results;
+		}
+		try {
+			return expansionPool.submit(() -> evaluations.parallelStream().map(this::expandEvaluation)
+					.collect(Collectors.toList())).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpecmateException("Interrupted while expanding evaluations", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new SpecmateException(e);
+		}
+	}
+
+	/**
+	 * Expands a single evaluation at one of its intermediate nodes. Only reads
+	 * the model graph, hence it may run concurrently for different evaluations.
+	 */
+	private Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> expandEvaluation(NodeEvaluation evaluation) {
+		OptionalInt intermediateNodeOpt = getAnyIntermediateNode(evaluation);
+		AssertUtil.assertTrue(intermediateNodeOpt.isPresent());
+		return iterateEvaluation(evaluation, intermediateNodeOpt.getAsInt());
+	}
+
 	private Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> refineEvaluations(Set<NodeEvaluation> evaluationList)
 			throws SpecmateException {
 		Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> mergedEvals = mergeCompatibleEvaluations(evaluationList);
@@ -205,8 +350,10 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		Set<NodeEvaluation> inconsistent = mergedEvals.getRight();
 		Set<NodeEvaluation> filled = new HashSet<>();
 		for (NodeEvaluation eval : merged) {
+			checkCancelled();
 			filled.add(fill(eval));
 		}
+		reportProgress(95);
 		return Pair.of(filled, inconsistent);
 	}
 
@@ -216,34 +363,35 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	 */
 	private Set<NodeEvaluation> getInitialEvaluations() {
 		Set<NodeEvaluation> evaluations = new HashSet<>();
-		nodes.stream().filter(node -> (determineParameterTypeForNode(node) == ParameterType.OUTPUT)).forEach(node -> {
-			NodeEvaluation positiveEvaluation = new NodeEvaluation();
-			positiveEvaluation.put(node, new TaggedBoolean(true, TaggedBoolean.ETag.ALL));
-			evaluations.add(positiveEvaluation);
-			NodeEvaluation negativeEvaluation = new NodeEvaluation();
-			negativeEvaluation.put(node, new TaggedBoolean(false, TaggedBoolean.ETag.ALL));
-			evaluations.add(negativeEvaluation);
-		});
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			if (determineParameterTypeForNode(i) == ParameterType.OUTPUT) {
+				NodeEvaluation positiveEvaluation = new NodeEvaluation(graph.getNodeCount());
+				positiveEvaluation.set(i, true, ETag.ALL);
+				evaluations.add(positiveEvaluation);
+				NodeEvaluation negativeEvaluation = new NodeEvaluation(graph.getNodeCount());
+				negativeEvaluation.set(i, false, ETag.ALL);
+				evaluations.add(negativeEvaluation);
+			}
+		}
 
 		return evaluations;
 	}
 
 	/** Retrieves a node that has predecessors with out a set value */
-	private Optional<IModelNode> getAnyIntermediateNode(NodeEvaluation evaluation) {
-		for (Entry<IContainer, TaggedBoolean> entry : evaluation.entrySet()) {
-			if (entry.getValue().tag == ETag.ANY) {
+	private OptionalInt getAnyIntermediateNode(NodeEvaluation evaluation) {
+		for (int i = evaluation.nextSetIndex(0); i >= 0; i = evaluation.nextSetIndex(i + 1)) {
+			if (evaluation.getTag(i) == ETag.ANY) {
 				continue;
 			}
-			IModelNode node = (IModelNode) entry.getKey();
-			if (determineParameterTypeForNode(node) != ParameterType.INPUT) {
-				boolean handled = node.getIncomingConnections().stream().map(conn -> conn.getSource())
-						.allMatch(n -> evaluation.containsKey(n));
-				if (!handled) {
-					return Optional.of(node);
+			if (determineParameterTypeForNode(i) != ParameterType.INPUT) {
+				for (int predecessor : graph.getPredecessors(i)) {
+					if (!evaluation.isSet(predecessor)) {
+						return OptionalInt.of(i);
+					}
 				}
 			}
 		}
-		return Optional.empty();
+		return OptionalInt.empty();
 	}
 
 	/**
@@ -264,12 +412,11 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	 * Takes evaluation and a node and computes the evaluations of the nodes
 	 * predecessors
 	 */
-	private Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> iterateEvaluation(NodeEvaluation evaluation, IModelNode node)
-			throws SpecmateException {
+	private Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> iterateEvaluation(NodeEvaluation evaluation, int node) {
 		Set<NodeEvaluation> consistent = new HashSet<>();
 		Set<NodeEvaluation> inconsistent = new HashSet<>();
-		AssertUtil.assertEquals(evaluation.get(node).tag, ETag.ALL);
-		switch (((CEGNode) node).getType()) {
+		AssertUtil.assertEquals(evaluation.getTag(node), ETag.ALL);
+		switch (graph.getType(node)) {
 		case AND:
 			handleAllCase(true, evaluation, node, consistent, inconsistent);
 			break;
@@ -280,20 +427,20 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		return Pair.of(consistent, inconsistent);
 	}
 
-	private void handleAllCase(boolean isAnd, NodeEvaluation evaluation, IModelNode node,
-			Set<NodeEvaluation> consistent, Set<NodeEvaluation> inconsistent) throws SpecmateException {
-		boolean nodeValue = evaluation.get(node).value;
+	private void handleAllCase(boolean isAnd, NodeEvaluation evaluation, int nodeIndex,
+			Set<NodeEvaluation> consistent, Set<NodeEvaluation> inconsistent) {
+		int[] incomingConnections = graph.getIncomingConnections(nodeIndex);
+		boolean nodeValue = evaluation.getValue(nodeIndex);
 		boolean failure;
 		// case where node is true in AND case or node is false in OR case
 		if ((isAnd && nodeValue) || (!isAnd && !nodeValue)) {
-			for (IModelConnection selectedConn : node.getIncomingConnections()) {
-				NodeEvaluation newEvaluation = (NodeEvaluation) evaluation.clone();
+			for (int selectedConn : incomingConnections) {
+				NodeEvaluation newEvaluation = evaluation.copy();
 				failure = false;
-				for (IModelConnection conn : node.getIncomingConnections()) {
-					boolean value = isAnd ^ ((CEGConnection) conn).isNegate();
+				for (int conn : incomingConnections) {
+					boolean value = isAnd ^ graph.isNegated(conn);
 					ETag tag = conn == selectedConn ? ETag.ALL : ETag.ANY;
-					failure = failure
-							|| !checkAndSet(newEvaluation, (CEGNode) conn.getSource(), new TaggedBoolean(value, tag));
+					failure = failure || !checkAndSet(newEvaluation, graph.getSource(conn), value, tag);
 				}
 				if (!failure) {
 					consistent.add(newEvaluation);
@@ -303,14 +450,13 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 			}
 			// case where node is false in AND case or node is true in OR case
 		} else {
-			for (IModelConnection selectedConn : node.getIncomingConnections()) {
-				NodeEvaluation newEvaluation = (NodeEvaluation) evaluation.clone();
+			for (int selectedConn : incomingConnections) {
+				NodeEvaluation newEvaluation = evaluation.copy();
 				failure = false;
-				for (IModelConnection conn : node.getIncomingConnections()) {
-					boolean value = ((conn == selectedConn) ^ (isAnd ^ ((CEGConnection) conn).isNegate()));
+				for (int conn : incomingConnections) {
+					boolean value = ((conn == selectedConn) ^ (isAnd ^ graph.isNegated(conn)));
 					ETag tag = conn == selectedConn ? ETag.ALL : ETag.ANY;
-					failure = failure
-							|| !checkAndSet(newEvaluation, (CEGNode) conn.getSource(), new TaggedBoolean(value, tag));
+					failure = failure || !checkAndSet(newEvaluation, graph.getSource(conn), value, tag);
 				}
 				if (!failure) {
 					consistent.add(newEvaluation);
@@ -327,12 +473,11 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	 * 
 	 * @return false if an inconsistent value would be set in the node
 	 */
-	private boolean checkAndSet(NodeEvaluation evaluation, CEGNode node, TaggedBoolean effectiveValue)
-			throws SpecmateException {
-		if (evaluation.containsKey(node) && evaluation.get(node).value != effectiveValue.value) {
+	private boolean checkAndSet(NodeEvaluation evaluation, int node, boolean value, ETag tag) {
+		if (evaluation.isSet(node) && evaluation.getValue(node) != value) {
 			return false;
 		} else {
-			evaluation.put(node, effectiveValue);
+			evaluation.set(node, value, tag);
 			return true;
 		}
 	}
@@ -346,8 +491,12 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	private Pair<Set<NodeEvaluation>, Set<NodeEvaluation>> mergeCompatibleEvaluations(Set<NodeEvaluation> evaluations)
 			throws SpecmateException {
 		Set<NodeEvaluation> result = new HashSet<>();
+		IncrementalMergeSolver mergeSolver = new IncrementalMergeSolver(evaluations);
+		int total = evaluations.size();
 		while (evaluations.size() > 0) {
-			Set<NodeEvaluation> candidates = getMergeCandiate(evaluations);
+			checkCancelled();
+			reportProgress(45 + 45 * (total - evaluations.size()) / total);
+			Set<NodeEvaluation> candidates = mergeSolver.getMergeCandidate();
 
 			if (candidates.isEmpty()) {
 				// There is no merge candidate:
@@ -358,43 +507,13 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 			}
 
 			evaluations.removeAll(candidates);
+			mergeSolver.disable(candidates);
 			NodeEvaluation merged = mergeAllEvaluations(candidates);
 			result.add(merged);
 		}
 		return Pair.of(result, new HashSet<>());
 	}
 
-	private Set<NodeEvaluation> getMergeCandiate(Set<NodeEvaluation> evaluations) throws SpecmateException {
-		// Map to track between logical variables and evaluations
-		Map<Integer, NodeEvaluation> var2EvalMap = new HashMap<>();
-
-		// Inititalize solver infrastructure
-		IPBSolver solver = org.sat4j.pb.SolverFactory.newResolution();
-		GateTranslator translator = new GateTranslator(solver);
-		WeightedMaxSatDecorator maxSat = new WeightedMaxSatDecorator(solver);
-
-		// We will need evaluations.size()+1 new variables, one set of varibles
-		// e_n to switch on and off each evaluation and one variable s to enable
-		// the implications s <==> (e=>n) where n is the evaluation result for a
-		// certain node.
-		// see pushEvaluations for the details
-		int maxVar = getAdditionalVar(evaluations.size() + 1);
-		maxSat.newVar(maxVar);
-
-		try {
-			pushCEGStructure(translator);
-			var2EvalMap = pushEvaluations(evaluations, translator, maxSat, maxVar);
-		} catch (ContradictionException c) {
-			throw new SpecmateException(c);
-		}
-		try {
-			int[] model = maxSat.findModel();
-			return extractEnabledEvaluations(var2EvalMap, model);
-		} catch (TimeoutException e) {
-			throw new SpecmateException(e);
-		}
-	}
-
 	private Set<NodeEvaluation> extractEnabledEvaluations(Map<Integer, NodeEvaluation> var2EvalMap, int[] model) {
 		Set<NodeEvaluation> toMerge = new HashSet<>();
 		for (int i = 0; i < model.length; i++) {
@@ -410,35 +529,24 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		return toMerge;
 	}
 
-	private Map<Integer, NodeEvaluation> pushEvaluations(Set<NodeEvaluation> evaluations, GateTranslator translator,
-			WeightedMaxSatDecorator maxSat, int maxVar) throws ContradictionException {
-		Map<Integer, NodeEvaluation> var2EvalMap = new HashMap<>();
-
-		int nextVar = 1;
-		for (NodeEvaluation evaluation : evaluations) {
-			int varForEval = getAdditionalVar(nextVar);
-			var2EvalMap.put(varForEval, evaluation);
-			nextVar++;
-			for (IModelNode node : nodes) {
-				int varForNode = getVarForNode(node);
-				// maxSat.newVar(varForNode);
-				TaggedBoolean value = evaluation.get(node);
-				if (value != null) {
-					if (value.value) {
-						translator.or(maxVar, getVectorForVariables(-varForEval, varForNode));
-					} else {
-						translator.or(maxVar, getVectorForVariables(-varForEval, -varForNode));
-					}
-				}
+	/**
+	 * Adds the clauses (e => n) for every node value n of the evaluation, where
+	 * e is the variable that switches the evaluation on and off.
+	 */
+	private void pushGuardedEvaluation(NodeEvaluation evaluation, int varForEval, GateTranslator translator)
+			throws ContradictionException {
+		for (int i = evaluation.nextSetIndex(0); i >= 0; i = evaluation.nextSetIndex(i + 1)) {
+			int varForNode = getVarForIndex(i);
+			if (evaluation.getValue(i)) {
+				translator.addClause(getVectorForVariables(-varForEval, varForNode));
+			} else {
+				translator.addClause(getVectorForVariables(-varForEval, -varForNode));
 			}
-			maxSat.addSoftClause(1, getVectorForVariables(varForEval));
 		}
-		translator.gateTrue(maxVar);
-		return var2EvalMap;
 	}
 
 	private int getAdditionalVar(int i) {
-		return nodes.size() + i;
+		return graph.getNodeCount() + i;
 	}
 
 	private IVecInt getVectorForVariables(int... vars) {
@@ -449,9 +557,9 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	}
 
 	private NodeEvaluation mergeAllEvaluations(Set<NodeEvaluation> clique) {
-		NodeEvaluation evaluation = new NodeEvaluation();
+		NodeEvaluation evaluation = new NodeEvaluation(graph.getNodeCount());
 		for (NodeEvaluation toMerge : clique) {
-			evaluation.putAll(toMerge);
+			evaluation.setAll(toMerge);
 		}
 		return evaluation;
 	}
@@ -460,7 +568,7 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	private NodeEvaluation fill(NodeEvaluation evaluation) throws SpecmateException {
 		ISolver solver = initSolver(evaluation);
 		try {
-			NodeEvaluation filled = new NodeEvaluation();
+			NodeEvaluation filled = new NodeEvaluation(graph.getNodeCount());
 			int[] model = solver.findModel();
 			if (model == null) {
 				throw new SpecmateException("Could not determine consistent test values.");
@@ -481,12 +589,11 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	private void setModelValue(NodeEvaluation originalEvaluation, NodeEvaluation targetEvaluation, int varNameValue) {
 		boolean value = varNameValue > 0;
 		int varName = (value ? 1 : -1) * varNameValue;
-		IModelNode node = getNodeForVar(varName);
-		TaggedBoolean originalValue = originalEvaluation.get(node);
-		if (originalValue != null) {
-			targetEvaluation.put(node, originalValue);
+		int node = getIndexForVar(varName);
+		if (originalEvaluation.isSet(node)) {
+			targetEvaluation.set(node, originalEvaluation.getValue(node), originalEvaluation.getTag(node));
 		} else {
-			targetEvaluation.put(node, new TaggedBoolean(value, ETag.AUTO));
+			targetEvaluation.set(node, value, ETag.AUTO);
 		}
 	}
 
@@ -503,25 +610,22 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	}
 
 	private void pushEvaluation(NodeEvaluation evaluation, GateTranslator translator) throws ContradictionException {
-		for (IModelNode node : nodes) {
-			int varForNode = getVarForNode(node);
-			TaggedBoolean value = evaluation.get(node);
-			if (value != null) {
-				if (value.value) {
-					translator.gateTrue(varForNode);
-				} else {
-					translator.gateFalse(varForNode);
-				}
+		for (int i = evaluation.nextSetIndex(0); i >= 0; i = evaluation.nextSetIndex(i + 1)) {
+			int varForNode = getVarForIndex(i);
+			if (evaluation.getValue(i)) {
+				translator.gateTrue(varForNode);
+			} else {
+				translator.gateFalse(varForNode);
 			}
 		}
 	}
 
 	private void pushCEGStructure(GateTranslator translator) throws ContradictionException {
-		for (IModelNode node : nodes) {
-			int varForNode = getVarForNode(node);
+		for (int node = 0; node < graph.getNodeCount(); node++) {
+			int varForNode = getVarForIndex(node);
 			IVecInt vector = getPredecessorVector(node);
 			if (vector.size() > 0) {
-				if (((CEGNode) node).getType() == NodeType.AND) {
+				if (graph.getType(node) == NodeType.AND) {
 					translator.and(varForNode, vector);
 				} else {
 					translator.or(varForNode, vector);
@@ -530,23 +634,23 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 		}
 	}
 
-	/** Returns the CEG node for a given variable (given as int) */
-	private IModelNode getNodeForVar(int i) {
-		return nodes.get(i - 1);
+	/** Returns the node index for a given variable (given as int) */
+	private int getIndexForVar(int i) {
+		return i - 1;
 	}
 
-	/** Returns a variable (usable for SAT4J) for a given CEG node. */
-	private int getVarForNode(IModelNode node) {
-		return nodes.indexOf(node) + 1;
+	/** Returns a variable (usable for SAT4J) for a given node index. */
+	private int getVarForIndex(int index) {
+		return index + 1;
 	}
 
 	/** Returns a variable/value vector for all predeccessors of a node */
-	private IVecInt getPredecessorVector(IModelNode node) {
-		IVecInt vector = new VecInt();
-		for (IModelConnection conn : node.getIncomingConnections()) {
-			IModelNode pre = conn.getSource();
-			int var = getVarForNode((CEGNode) pre);
-			if (((CEGConnection) conn).isNegate()) {
+	private IVecInt getPredecessorVector(int node) {
+		int[] incomingConnections = graph.getIncomingConnections(node);
+		IVecInt vector = new VecInt(incomingConnections.length + 1);
+		for (int conn : incomingConnections) {
+			int var = getVarForIndex(graph.getSource(conn));
+			if (graph.isNegated(conn)) {
 				var *= -1;
 			}
 			vector.push(var);
@@ -555,22 +659,124 @@ public class CEGTestCaseGenerator extends TestCaseGeneratorBase<CEGModel, CEGNod
 	}
 
 	/**
-	 * Equality checker that ignores differences in the fields id, name and
-	 * position
+	 * Solver for finding sets of evaluations that can be merged. The CEG
+	 * structure and the evaluations are encoded only once. Each evaluation is
+	 * guarded by a variable e_n that switches it on and off. Evaluations that
+	 * have already been merged are switched off via assumptions, so the solver
+	 * can be reused for all merge steps instead of being rebuilt.
 	 */
-	private class IdNamePositionIgnoreEqualityHelper extends EqualityHelper {
-		@Override
-		protected boolean haveEqualFeature(EObject eObject1, EObject eObject2, EStructuralFeature feature) {
-			if (feature == BasePackage.Literals.IID__ID) {
-				return true;
+	private class IncrementalMergeSolver {
+
+		/**
+		 * Maximal number of evaluations that are tried in vain to extend a
+		 * merge candidate
+		 */
+		private static final int MAX_FAILED_EXTENSIONS = 32;
+
+		/** Map to track between logical variables and evaluations */
+		private Map<Integer, NodeEvaluation> var2EvalMap = new HashMap<>();
+
+		/** Map to track between evaluations and logical variables */
+		private Map<NodeEvaluation, Integer> eval2VarMap = new HashMap<>();
+
+		/** Evaluations in the order of their variables */
+		private List<NodeEvaluation> evaluations = new ArrayList<>();
+
+		/** Evaluations that have already been merged */
+		private Set<NodeEvaluation> disabledEvaluations = new HashSet<>();
+
+		private WeightedMaxSatDecorator maxSat;
+
+		public IncrementalMergeSolver(Set<NodeEvaluation> evaluations) throws SpecmateException {
+			IPBSolver solver = org.sat4j.pb.SolverFactory.newResolution();
+			GateTranslator translator = new GateTranslator(solver);
+			maxSat = new WeightedMaxSatDecorator(solver);
+
+			// We need one additional variable per evaluation
+			maxSat.newVar(getAdditionalVar(evaluations.size()));
+
+			try {
+				pushCEGStructure(translator);
+				int nextVar = 1;
+				for (NodeEvaluation evaluation : evaluations) {
+					int varForEval = getAdditionalVar(nextVar);
+					var2EvalMap.put(varForEval, evaluation);
+					eval2VarMap.put(evaluation, varForEval);
+					this.evaluations.add(evaluation);
+					nextVar++;
+					pushGuardedEvaluation(evaluation, varForEval, translator);
+					maxSat.addSoftClause(1, getVectorForVariables(varForEval));
+				}
+			} catch (ContradictionException c) {
+				throw new SpecmateException(c);
 			}
-			if (feature == BasePackage.Literals.INAMED__NAME) {
-				return true;
+		}
+
+		/**
+		 * Returns a set of evaluations that are not yet disabled and can be
+		 * merged. The solver does not maximize the set it finds, hence the set
+		 * is greedily extended by further evaluations that are compatible with
+		 * it, until {@link #MAX_FAILED_EXTENSIONS} evaluations have been tried
+		 * in vain. If the solver switches on no evaluation, the first remaining
+		 * evaluation that is satisfiable on its own starts the set. An empty
+		 * set is returned only if none of the remaining evaluations is
+		 * satisfiable on its own.
+		 */
+		public Set<NodeEvaluation> getMergeCandidate() throws SpecmateException {
+			IVecInt assumptions = new VecInt();
+			for (NodeEvaluation evaluation : disabledEvaluations) {
+				assumptions.push(-eval2VarMap.get(evaluation));
 			}
-			if (feature == BasePackage.Literals.IPOSITIONABLE__POSITION) {
-				return true;
+			Set<NodeEvaluation> candidates = findEnabledEvaluations(assumptions);
+			if (candidates == null) {
+				return new HashSet<>();
 			}
-			return super.haveEqualFeature(eObject1, eObject2, feature);
+			for (NodeEvaluation evaluation : candidates) {
+				assumptions.push(eval2VarMap.get(evaluation));
+			}
+			int failedExtensions = 0;
+			for (NodeEvaluation evaluation : evaluations) {
+				if (disabledEvaluations.contains(evaluation) || candidates.contains(evaluation)) {
+					continue;
+				}
+				// the search for a first evaluation is not bounded, otherwise
+				// satisfiable evaluations could be reported as inconsistent
+				if (!candidates.isEmpty() && failedExtensions >= MAX_FAILED_EXTENSIONS) {
+					break;
+				}
+				assumptions.push(eval2VarMap.get(evaluation));
+				Set<NodeEvaluation> extended = findEnabledEvaluations(assumptions);
+				if (extended == null) {
+					assumptions.pop();
+					if (!candidates.isEmpty()) {
+						failedExtensions++;
+					}
+				} else {
+					candidates = extended;
+				}
+			}
+			return candidates;
+		}
+
+		/**
+		 * Returns the evaluations that are switched on in a model satisfying the
+		 * given assumptions, or <code>null</code> if there is no such model.
+		 */
+		private Set<NodeEvaluation> findEnabledEvaluations(IVecInt assumptions) throws SpecmateException {
+			try {
+				int[] model = maxSat.findModel(assumptions);
+				if (model == null) {
+					return null;
+				}
+				return extractEnabledEvaluations(var2EvalMap, model);
+			} catch (TimeoutException e) {
+				throw new SpecmateException(e);
+			}
+		}
+
+		/** Switches off the given evaluations for all further merge steps. */
+		public void disable(Set<NodeEvaluation> evaluations) {
+			disabledEvaluations.addAll(evaluations);
 		}
 	}
 
@@ -0,0 +1,14 @@
+package com.specmate.testspecification.internal.services;
+
+/**
+ * Receives the progress of a test generation and tells the generator whether
+ * it should stop.
+ */
+interface IGenerationMonitor {
+
+	/** Reports the progress of the generation in percent */
+	void progress(int percent);
+
+	/** Signals if the generation has been cancelled */
+	boolean isCancelled();
+}
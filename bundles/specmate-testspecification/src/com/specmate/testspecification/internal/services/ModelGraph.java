@@ -0,0 +1,214 @@
+package com.specmate.testspecification.internal.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.specmate.model.base.IModelConnection;
+import com.specmate.model.base.IModelNode;
+import com.specmate.model.requirements.CEGConnection;
+import com.specmate.model.requirements.CEGNode;
+import com.specmate.model.requirements.NodeType;
+
+/**
+ * Immutable snapshot of the nodes and connections of a model. Nodes and
+ * connections are identified by their index in the node and connection lists,
+ * the graph structure is stored in plain arrays. The snapshot is created once
+ * per test generation, so the generators do not have to walk the model
+ * objects over and over again.
+ */
+class ModelGraph {
+
+	private final List<IModelNode> nodes;
+	private final List<IModelConnection> connections;
+	private final Map<IModelNode, Integer> nodeIndices = new HashMap<>();
+	private final Map<IModelConnection, Integer> connectionIndices = new HashMap<>();
+
+	/** Source and target node of each connection */
+	private final int[] sources;
+	private final int[] targets;
+
+	/** Negation flag of each connection, only set for CEG connections */
+	private final boolean[] negated;
+
+	/** Incoming and outgoing connections of each node in model order */
+	private final int[][] incomingConnections;
+	private final int[][] outgoingConnections;
+
+	/** Predecessors of each node, aligned with the incoming connections */
+	private final int[][] predecessors;
+
+	/** Type of each node, <code>null</code> for non-CEG nodes */
+	private final NodeType[] types;
+
+	/**
+	 * Creates a snapshot of the given nodes and connections. Connections that
+	 * do not connect two of the given nodes are not part of the graph.
+	 */
+	public ModelGraph(List<IModelNode> nodes, List<IModelConnection> connections) {
+		this.nodes = Collections.unmodifiableList(nodes);
+		for (int i = 0; i < nodes.size(); i++) {
+			nodeIndices.put(nodes.get(i), i);
+		}
+		List<IModelConnection> graphConnections = new ArrayList<>(connections.size());
+		for (IModelConnection connection : connections) {
+			if (nodeIndices.containsKey(connection.getSource()) && nodeIndices.containsKey(connection.getTarget())) {
+				connectionIndices.put(connection, graphConnections.size());
+				graphConnections.add(connection);
+			}
+		}
+		this.connections = Collections.unmodifiableList(graphConnections);
+
+		sources = new int[graphConnections.size()];
+		targets = new int[graphConnections.size()];
+		negated = new boolean[graphConnections.size()];
+		for (int i = 0; i < graphConnections.size(); i++) {
+			IModelConnection connection = graphConnections.get(i);
+			sources[i] = nodeIndices.get(connection.getSource());
+			targets[i] = nodeIndices.get(connection.getTarget());
+			if (connection instanceof CEGConnection) {
+				negated[i] = ((CEGConnection) connection).isNegate();
+			}
+		}
+
+		incomingConnections = new int[nodes.size()][];
+		outgoingConnections = new int[nodes.size()][];
+		predecessors = new int[nodes.size()][];
+		types = new NodeType[nodes.size()];
+		for (int i = 0; i < nodes.size(); i++) {
+			IModelNode node = nodes.get(i);
+			incomingConnections[i] = toConnectionIndices(node.getIncomingConnections());
+			outgoingConnections[i] = toConnectionIndices(node.getOutgoingConnections());
+			predecessors[i] = new int[incomingConnections[i].length];
+			for (int j = 0; j < incomingConnections[i].length; j++) {
+				predecessors[i][j] = sources[incomingConnections[i][j]];
+			}
+			if (node instanceof CEGNode) {
+				types[i] = ((CEGNode) node).getType();
+			}
+		}
+	}
+
+	/** Returns the indices of the given connections that belong to the graph */
+	private int[] toConnectionIndices(List<IModelConnection> modelConnections) {
+		int[] indices = new int[modelConnections.size()];
+		int count = 0;
+		for (IModelConnection connection : modelConnections) {
+			Integer index = connectionIndices.get(connection);
+			if (index != null) {
+				indices[count++] = index;
+			}
+		}
+		if (count < indices.length) {
+			int[] trimmed = new int[count];
+			System.arraycopy(indices, 0, trimmed, 0, count);
+			return trimmed;
+		}
+		return indices;
+	}
+
+	/** Returns the number of nodes */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	/** Returns the number of connections */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	/** Returns the nodes in index order */
+	public List<IModelNode> getNodes() {
+		return nodes;
+	}
+
+	/** Returns the connections in index order */
+	public List<IModelConnection> getConnections() {
+		return connections;
+	}
+
+	/** Returns the node with the given index */
+	public IModelNode getNode(int node) {
+		return nodes.get(node);
+	}
+
+	/** Returns the connection with the given index */
+	public IModelConnection getConnection(int connection) {
+		return connections.get(connection);
+	}
+
+	/** Returns the index of a node */
+	public int getNodeIndex(IModelNode node) {
+		return nodeIndices.get(node);
+	}
+
+	/**
+	 * Returns the index of a connection
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the connection does not connect two nodes of the graph
+	 */
+	public int getConnectionIndex(IModelConnection connection) {
+		Integer index = connectionIndices.get(connection);
+		if (index == null) {
+			throw new IllegalArgumentException("Connection is not part of the graph: " + connection);
+		}
+		return index;
+	}
+
+	/** Returns the index of the source node of a connection */
+	public int getSource(int connection) {
+		return sources[connection];
+	}
+
+	/** Returns the index of the target node of a connection */
+	public int getTarget(int connection) {
+		return targets[connection];
+	}
+
+	/** Checks if a connection is a negated CEG connection */
+	public boolean isNegated(int connection) {
+		return negated[connection];
+	}
+
+	/**
+	 * Returns the indices of the incoming connections of a node. The returned
+	 * array must not be modified.
+	 */
+	public int[] getIncomingConnections(int node) {
+		return incomingConnections[node];
+	}
+
+	/**
+	 * Returns the indices of the outgoing connections of a node. The returned
+	 * array must not be modified.
+	 */
+	public int[] getOutgoingConnections(int node) {
+		return outgoingConnections[node];
+	}
+
+	/**
+	 * Returns the indices of the predecessors of a node, in the same order as
+	 * the incoming connections. The returned array must not be modified.
+	 */
+	public int[] getPredecessors(int node) {
+		return predecessors[node];
+	}
+
+	/** Checks if a node has no incoming connections */
+	public boolean isInput(int node) {
+		return incomingConnections[node].length == 0;
+	}
+
+	/** Checks if a node has no outgoing connections */
+	public boolean isOutput(int node) {
+		return outgoingConnections[node].length == 0;
+	}
+
+	/** Returns the type of a CEG node or <code>null</code> for other nodes */
+	public NodeType getType(int node) {
+		return types[node];
+	}
+}
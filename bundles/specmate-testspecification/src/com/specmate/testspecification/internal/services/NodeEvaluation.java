@@ -1,14 +1,180 @@
 package com.specmate.testspecification.internal.services;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
-import com.specmate.model.base.IContainer;
+/**
+ * Evaluation of the elements (nodes or connections) of a model. Elements are
+ * identified by their index in the list of elements of the generator. For
+ * each element, the evaluation stores as bits whether a value is set, the
+ * value itself and its tag. Copies share their bits until one of them is
+ * modified.
+ */
+class NodeEvaluation {
 
-class NodeEvaluation extends HashMap<IContainer, TaggedBoolean> {
+	public enum ETag {
+		ALL, ANY, AUTO
+	}
+
+	private static final ETag[] TAGS = ETag.values();
+
+	/** Offsets of the bit sets in the bits array (in number of bit sets) */
+	private static final int SET = 0;
+	private static final int VALUE = 1;
+	private static final int TAG_LOW = 2;
+	private static final int TAG_HIGH = 3;
+	private static final int NUMBER_OF_BITSETS = 4;
+
+	/** Number of words of a single bit set */
+	private final int words;
+
+	/** The bit sets for set elements, values and tags one after the other */
+	private long[] bits;
+
+	/** Flag that indicates if the bits are shared with a copy */
+	private boolean shared;
+
+	/** Cached hash code, 0 if not yet computed */
+	private int hash;
+
+	/**
+	 * Creates an empty evaluation.
+	 *
+	 * @param size
+	 *            the number of elements that can be evaluated
+	 */
+	public NodeEvaluation(int size) {
+		this.words = (size + 63) >>> 6;
+		this.bits = new long[NUMBER_OF_BITSETS * words];
+	}
+
+	private NodeEvaluation(NodeEvaluation other) {
+		this.words = other.words;
+		this.bits = other.bits;
+		this.hash = other.hash;
+		this.shared = true;
+		other.shared = true;
+	}
+
+	/** Returns a copy of this evaluation */
+	public NodeEvaluation copy() {
+		return new NodeEvaluation(this);
+	}
+
+	/** Checks if a value is set for the element with the given index */
+	public boolean isSet(int index) {
+		return getBit(SET, index);
+	}
+
+	/** Returns the value of the element with the given index */
+	public boolean getValue(int index) {
+		return getBit(VALUE, index);
+	}
 
 	/**
-	 * 
+	 * Returns the tag of the element with the given index or <code>null</code>
+	 * if no value is set for the element.
 	 */
-	private static final long serialVersionUID = -6589726460952884108L;
+	public ETag getTag(int index) {
+		if (!isSet(index)) {
+			return null;
+		}
+		int ordinal = (getBit(TAG_HIGH, index) ? 2 : 0) + (getBit(TAG_LOW, index) ? 1 : 0);
+		return TAGS[ordinal];
+	}
+
+	/** Sets value and tag of the element with the given index */
+	public void set(int index, boolean value, ETag tag) {
+		prepareWrite();
+		setBit(SET, index, true);
+		setBit(VALUE, index, value);
+		setBit(TAG_LOW, index, (tag.ordinal() & 1) != 0);
+		setBit(TAG_HIGH, index, (tag.ordinal() & 2) != 0);
+	}
+
+	/**
+	 * Sets all elements that are set in the given evaluation to their value and
+	 * tag in the given evaluation.
+	 */
+	public void setAll(NodeEvaluation other) {
+		prepareWrite();
+		for (int word = 0; word < words; word++) {
+			long mask = other.bits[SET * words + word];
+			for (int bitset = SET; bitset < NUMBER_OF_BITSETS; bitset++) {
+				int i = bitset * words + word;
+				bits[i] = (bits[i] & ~mask) | (other.bits[i] & mask);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first set element that has an index equal to or
+	 * greater than the given index, or -1 if there is no such element.
+	 */
+	public int nextSetIndex(int fromIndex) {
+		int word = fromIndex >>> 6;
+		if (word >= words) {
+			return -1;
+		}
+		long current = bits[SET * words + word] & (-1L << fromIndex);
+		while (current == 0) {
+			word++;
+			if (word == words) {
+				return -1;
+			}
+			current = bits[SET * words + word];
+		}
+		return word * 64 + Long.numberOfTrailingZeros(current);
+	}
+
+	private boolean getBit(int bitset, int index) {
+		return (bits[bitset * words + (index >>> 6)] & (1L << index)) != 0;
+	}
+
+	private void setBit(int bitset, int index, boolean value) {
+		int i = bitset * words + (index >>> 6);
+		if (value) {
+			bits[i] |= (1L << index);
+		} else {
+			bits[i] &= ~(1L << index);
+		}
+	}
+
+	/** Unshares the bits before they are modified */
+	private void prepareWrite() {
+		if (shared) {
+			bits = bits.clone();
+			shared = false;
+		}
+		hash = 0;
+	}
+
+	@Override
+	public int hashCode() {
+		if (hash == 0) {
+			hash = Arrays.hashCode(bits);
+		}
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		NodeEvaluation other = (NodeEvaluation) obj;
+		return Arrays.equals(bits, other.bits);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("NodeEvaluation [");
+		for (int i = nextSetIndex(0); i >= 0; i = nextSetIndex(i + 1)) {
+			builder.append(i).append('=').append(getValue(i)).append('/').append(getTag(i)).append(' ');
+		}
+		return builder.append(']').toString();
+	}
 
-}
\ No newline at end of file
+}
@@ -1,12 +1,13 @@
 package com.specmate.testspecification.internal.services;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -14,7 +15,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.emf.common.util.EList;
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 import org.jgrapht.graph.DirectedMultigraph;
 import org.jgrapht.graph.GraphWalk;
 
@@ -38,20 +38,36 @@ import com.specmate.model.testspecification.TestProcedure;
 import com.specmate.model.testspecification.TestSpecification;
 import com.specmate.model.testspecification.TestStep;
 import com.specmate.model.testspecification.TestspecificationFactory;
-import com.specmate.testspecification.internal.services.TaggedBoolean.ETag;
+import com.specmate.testspecification.internal.services.NodeEvaluation.ETag;
 
 public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IModelNode> {
 
+	/** Marks nodes that are not reached by a breadth first search */
+	private static final int UNREACHED = -2;
+
+	/** Marks the nodes a breadth first search starts from */
+	private static final int ROOT = -1;
+
+	/** The connections between two nodes of the process */
 	private List<ProcessConnection> connections;
 	private Map<String, TestParameter> testParameters = new HashMap<>();
 
+	/** The paths to create test cases from, once they are computed */
+	private List<GraphPath<IModelNode, ProcessConnection>> paths;
+
+	/** The evaluations of the paths, once they are computed */
+	private List<NodeEvaluation> evaluations;
+
 	public ProcessTestCaseGenerator(TestSpecification specification) {
 		super(specification, Process.class, IModelNode.class);
-		connections = SpecmateEcoreUtil.pickInstancesOf(this.model.getContents(), ProcessConnection.class);
+		connections = SpecmateEcoreUtil.pickInstancesOf(graph.getConnections(), ProcessConnection.class);
 	}
 
 	@Override
 	protected void generateParameters() {
+		// parameters of a rolled back generation are not part of the
+		// specification anymore
+		testParameters.clear();
 		List<ProcessDecision> decisions = SpecmateEcoreUtil.pickInstancesOf(this.model.getContents(),
 				ProcessDecision.class);
 		for (ProcessDecision decision : decisions) {
@@ -69,41 +85,72 @@ public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IMo
 		return connection.getCondition();
 	}
 
+	/**
+	 * Computes the paths and their evaluations, the test cases are created
+	 * later
+	 */
+	@Override
+	public void prepare() throws SpecmateException {
+		super.prepare();
+		if (evaluations == null) {
+			computePaths();
+		}
+	}
+
 	@Override
 	protected void generateTestCases() throws SpecmateException {
-		List<GraphPath<IModelNode, ProcessConnection>> allPaths = getAllPaths();
-		List<GraphPath<IModelNode, ProcessConnection>> filteredPaths = filterDuplicatePaths(allPaths);
-		List<NodeEvaluation> evaluations = computeEvaluations(filteredPaths);
-		createTestCases(evaluations, filteredPaths);
+		if (evaluations == null) {
+			computePaths();
+		}
+		createTestCases(evaluations, paths);
+	}
+
+	/** Computes the paths that cover all connections and their evaluations */
+	private void computePaths() {
+		List<GraphPath<IModelNode, ProcessConnection>> filteredPaths = filterDuplicatePaths(getAllPaths());
+		evaluations = computeEvaluations(filteredPaths);
+		paths = filteredPaths;
 	}
 
+	/**
+	 * Removes the paths that are not needed to cover all connections. The
+	 * paths are checked in order, a path is removed if each of its connections
+	 * is also part of another path that has not been removed. The connections
+	 * of each path are stored as a bit set and for each connection the number
+	 * of remaining paths that contain it is counted, so each path is checked in
+	 * time linear to its length.
+	 */
 	private List<GraphPath<IModelNode, ProcessConnection>> filterDuplicatePaths(
 			List<GraphPath<IModelNode, ProcessConnection>> paths) {
-		Set<GraphPath<IModelNode, ProcessConnection>> obsoletePaths = new HashSet<>();
-
-		for (int i = 0; i < paths.size(); i++) {
-			GraphPath<IModelNode, ProcessConnection> path1 = paths.get(i);
-			Set<ProcessConnection> connectionSet1 = new HashSet<>(path1.getEdgeList());
-			for (int j = 0; j < paths.size(); j++) {
-				GraphPath<IModelNode, ProcessConnection> path2 = paths.get(j);
-
-				if (i == j || obsoletePaths.contains(path2)) {
-					continue;
-				}
-
-				Set<ProcessConnection> connectionSet2 = new HashSet<>(path2.getEdgeList());
-				connectionSet1.removeAll(connectionSet2);
+		List<BitSet> pathConnections = new ArrayList<>(paths.size());
+		int[] coveringPaths = new int[graph.getConnectionCount()];
+		for (GraphPath<IModelNode, ProcessConnection> path : paths) {
+			BitSet connectionSet = new BitSet(graph.getConnectionCount());
+			for (ProcessConnection connection : path.getEdgeList()) {
+				connectionSet.set(graph.getConnectionIndex(connection));
+			}
+			for (int i = connectionSet.nextSetBit(0); i >= 0; i = connectionSet.nextSetBit(i + 1)) {
+				coveringPaths[i]++;
+			}
+			pathConnections.add(connectionSet);
+		}
 
-				if (connectionSet1.isEmpty()) {
-					obsoletePaths.add(path1);
-					break;
+		List<GraphPath<IModelNode, ProcessConnection>> filteredPaths = new ArrayList<>();
+		for (int p = 0; p < paths.size(); p++) {
+			BitSet connectionSet = pathConnections.get(p);
+			boolean coveredByOthers = true;
+			for (int i = connectionSet.nextSetBit(0); i >= 0 && coveredByOthers; i = connectionSet
+					.nextSetBit(i + 1)) {
+				coveredByOthers = coveringPaths[i] > 1;
+			}
+			if (coveredByOthers) {
+				for (int i = connectionSet.nextSetBit(0); i >= 0; i = connectionSet.nextSetBit(i + 1)) {
+					coveringPaths[i]--;
 				}
+			} else {
+				filteredPaths.add(paths.get(p));
 			}
 		}
-
-		List<GraphPath<IModelNode, ProcessConnection>> filteredPaths = paths.stream()
-				.filter((GraphPath<IModelNode, ProcessConnection> path) -> !obsoletePaths.contains(path))
-				.collect(Collectors.toList());
 		return filteredPaths;
 	}
 
@@ -204,14 +251,17 @@ public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IMo
 	private List<NodeEvaluation> computeEvaluations(List<GraphPath<IModelNode, ProcessConnection>> allPaths) {
 		List<NodeEvaluation> evaluations = new ArrayList<>();
 		for (GraphPath<IModelNode, ProcessConnection> path : allPaths) {
-			NodeEvaluation evaluation = new NodeEvaluation();
+			NodeEvaluation evaluation = new NodeEvaluation(graph.getConnectionCount());
+			BitSet pathConnections = new BitSet(graph.getConnectionCount());
+			for (ProcessConnection connection : path.getEdgeList()) {
+				pathConnections.set(graph.getConnectionIndex(connection));
+			}
 			Set<IModelNode> decisions = path.getVertexList().stream()
 					.filter((IModelNode node) -> node instanceof ProcessDecision).collect(Collectors.toSet());
 			for (IModelNode decision : decisions) {
-				List<IModelConnection> outgoingConnections = decision.getOutgoingConnections();
-				for (IModelConnection connection : outgoingConnections) {
-					boolean isFulfilled = path.getEdgeList().contains(connection);
-					evaluation.put(connection, new TaggedBoolean(isFulfilled, ETag.ALL));
+				for (int connection : graph.getOutgoingConnections(graph.getNodeIndex(decision))) {
+					boolean isFulfilled = pathConnections.get(connection);
+					evaluation.set(connection, isFulfilled, ETag.ALL);
 				}
 			}
 			evaluations.add(evaluation);
@@ -230,25 +280,24 @@ public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IMo
 			assignment.setId(SpecmateEcoreUtil.getIdForChild(testCase, assignment.eClass()));
 			assignment.setParameter(testParameter);
 
-			Optional<Entry<IContainer, TaggedBoolean>> evaluationEntry = Optional.empty();
+			OptionalInt evaluationEntry = OptionalInt.empty();
 
 			String testParameterName = testParameter.getName();
-			for (Entry<IContainer, TaggedBoolean> currentEvaluationEntry : evaluation.entrySet()) {
-				IContainer currentEvaluationConnection = currentEvaluationEntry.getKey();
-				String testParameterNameFromEvaluation = getTestParameterName(
-						(ProcessConnection) currentEvaluationConnection);
+			for (int i = evaluation.nextSetIndex(0); i >= 0; i = evaluation.nextSetIndex(i + 1)) {
+				ProcessConnection currentEvaluationConnection = (ProcessConnection) graph.getConnection(i);
+				String testParameterNameFromEvaluation = getTestParameterName(currentEvaluationConnection);
 				if (testParameterNameFromEvaluation == null) {
-					getTestParameterName((ProcessConnection) currentEvaluationConnection);
+					getTestParameterName(currentEvaluationConnection);
 				}
 				if (testParameterNameFromEvaluation.equals(testParameterName)) {
-					evaluationEntry = Optional.of(currentEvaluationEntry);
+					evaluationEntry = OptionalInt.of(i);
 					break;
 				}
 			}
 
 			String value = "";
 			if (evaluationEntry.isPresent()) {
-				value = String.valueOf(evaluationEntry.get().getValue().value ? "true" : "");
+				value = String.valueOf(evaluation.getValue(evaluationEntry.getAsInt()) ? "true" : "");
 			}
 
 			assignment.setValue(String.valueOf(value));
@@ -259,57 +308,137 @@ public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IMo
 		return testCase;
 	}
 
+	/**
+	 * Computes paths from the start node to an end node that cover all
+	 * connections. A breadth first search from the start node gives the
+	 * shortest prefix to the source of each connection and a reverse breadth
+	 * first search from all end nodes gives the shortest suffix from the target
+	 * of each connection. The paths are then chosen greedily: in each round the
+	 * path through the connection whose prefix and suffix contain the most
+	 * uncovered connections is added.
+	 */
 	private List<GraphPath<IModelNode, ProcessConnection>> getAllPaths() {
-		Set<IModelNode> processStarts = getStartNodes();
+		IModelNode startNode = getStartNodes().iterator().next();
 		Set<IModelNode> processEnds = getEndNodes();
-		DirectedGraph<IModelNode, ProcessConnection> graph = getGraph();
-
-		// AllDirectedPaths<IModelNode, ProcessConnection> allDirectedPaths =
-		// new AllDirectedPaths<>(graph);
-		// List<GraphPath<IModelNode, ProcessConnection>> allPaths =
-		// allDirectedPaths.getAllPaths(processStarts, processEnds, true, null);
+		DirectedGraph<IModelNode, ProcessConnection> directedGraph = getGraph();
+
+		int nodeCount = graph.getNodeCount();
+		int connectionCount = graph.getConnectionCount();
+		int[] prefixConnections = new int[nodeCount];
+		int[] prefixOrder = searchFromStart(graph.getNodeIndex(startNode), prefixConnections);
+		int[] suffixConnections = new int[nodeCount];
+		int[] suffixOrder = searchToEnds(processEnds, suffixConnections);
+
+		for (int connection = 0; connection < connectionCount; connection++) {
+			AssertUtil.assertTrue(prefixConnections[graph.getSource(connection)] != UNREACHED,
+					"Could not find path from start node!");
+			AssertUtil.assertTrue(suffixConnections[graph.getTarget(connection)] != UNREACHED,
+					"Could not find path to end node!");
+		}
 
 		List<GraphPath<IModelNode, ProcessConnection>> allPaths = new ArrayList<>();
-		Set<ProcessConnection> uncoveredConnections = new HashSet<>(graph.edgeSet());
-
-		IModelNode startNode = processStarts.stream().findAny().get();
-		while (uncoveredConnections.stream().findAny().isPresent()) {
-			ProcessConnection currentUncoveredConnection = uncoveredConnections.stream().findAny().get();
-			IModelNode sourceNode = currentUncoveredConnection.getSource();
-			IModelNode targetNode = currentUncoveredConnection.getTarget();
-			DijkstraShortestPath<IModelNode, ProcessConnection> dsp = new DijkstraShortestPath<>(graph);
-
-			GraphPath<IModelNode, ProcessConnection> startPath = dsp.getPath(startNode, sourceNode);
-			GraphPath<IModelNode, ProcessConnection> endPath = null;
-			IModelNode bestEndNode = null;
-			int minimalEndPathLength = Integer.MAX_VALUE;
-			for (IModelNode endNode : processEnds) {
-				GraphPath<IModelNode, ProcessConnection> currentEndPath = dsp.getPath(targetNode, endNode);
-				if (currentEndPath != null) {
-					int currentEndPathLength = currentEndPath.getLength();
-					if (currentEndPathLength < minimalEndPathLength) {
-						minimalEndPathLength = currentEndPathLength;
-						endPath = currentEndPath;
-						bestEndNode = endNode;
-					}
+		BitSet coveredConnections = new BitSet(connectionCount);
+		int[] prefixGains = new int[nodeCount];
+		int[] suffixGains = new int[nodeCount];
+		while (coveredConnections.cardinality() < connectionCount) {
+			// number of uncovered connections on the prefix and suffix of each
+			// node, connections on both are counted twice
+			for (int node : prefixOrder) {
+				int connection = prefixConnections[node];
+				prefixGains[node] = connection == ROOT ? 0
+						: prefixGains[graph.getSource(connection)] + (coveredConnections.get(connection) ? 0 : 1);
+			}
+			for (int node : suffixOrder) {
+				int connection = suffixConnections[node];
+				suffixGains[node] = connection == ROOT ? 0
+						: suffixGains[graph.getTarget(connection)] + (coveredConnections.get(connection) ? 0 : 1);
+			}
+
+			int bestConnection = -1;
+			int bestGain = 0;
+			for (int connection = coveredConnections.nextClearBit(0); connection < connectionCount; connection = coveredConnections
+					.nextClearBit(connection + 1)) {
+				int gain = prefixGains[graph.getSource(connection)] + 1 + suffixGains[graph.getTarget(connection)];
+				if (gain > bestGain) {
+					bestGain = gain;
+					bestConnection = connection;
 				}
 			}
 
-			AssertUtil.assertNotNull(endPath, "Could not find path to end node!");
+			List<ProcessConnection> pathConnections = new ArrayList<>();
+			for (int node = graph.getSource(bestConnection); prefixConnections[node] != ROOT; node = graph
+					.getSource(prefixConnections[node])) {
+				pathConnections.add((ProcessConnection) graph.getConnection(prefixConnections[node]));
+			}
+			Collections.reverse(pathConnections);
+			pathConnections.add((ProcessConnection) graph.getConnection(bestConnection));
+			int endNode = graph.getTarget(bestConnection);
+			while (suffixConnections[endNode] != ROOT) {
+				pathConnections.add((ProcessConnection) graph.getConnection(suffixConnections[endNode]));
+				endNode = graph.getTarget(suffixConnections[endNode]);
+			}
 
-			List<ProcessConnection> connections = new ArrayList<>();
-			connections.addAll(startPath.getEdgeList());
-			connections.add(currentUncoveredConnection);
-			connections.addAll(endPath.getEdgeList());
-			GraphPath<IModelNode, ProcessConnection> constructedPath = new GraphWalk<>(graph, startNode, bestEndNode,
-					connections, 0d);
-			allPaths.add(constructedPath);
-			uncoveredConnections.removeAll(connections);
+			for (ProcessConnection connection : pathConnections) {
+				coveredConnections.set(graph.getConnectionIndex(connection));
+			}
+			allPaths.add(new GraphWalk<>(directedGraph, startNode, graph.getNode(endNode), pathConnections, 0d));
 		}
 
 		return allPaths;
 	}
 
+	/**
+	 * Runs a breadth first search from the start node. For each node the
+	 * connection over which it is reached is stored in
+	 * <code>prefixConnections</code>. Returns the reached nodes in the order
+	 * of their distance from the start node.
+	 */
+	private int[] searchFromStart(int start, int[] prefixConnections) {
+		Arrays.fill(prefixConnections, UNREACHED);
+		int[] queue = new int[graph.getNodeCount()];
+		int size = 0;
+		prefixConnections[start] = ROOT;
+		queue[size++] = start;
+		for (int head = 0; head < size; head++) {
+			for (int connection : graph.getOutgoingConnections(queue[head])) {
+				int target = graph.getTarget(connection);
+				if (prefixConnections[target] == UNREACHED) {
+					prefixConnections[target] = connection;
+					queue[size++] = target;
+				}
+			}
+		}
+		return Arrays.copyOf(queue, size);
+	}
+
+	/**
+	 * Runs a reverse breadth first search from all end nodes. For each node
+	 * the first connection of its shortest path to an end node is stored in
+	 * <code>suffixConnections</code>. Returns the reached nodes in the order
+	 * of their distance to an end node.
+	 */
+	private int[] searchToEnds(Set<IModelNode> endNodes, int[] suffixConnections) {
+		Arrays.fill(suffixConnections, UNREACHED);
+		int[] queue = new int[graph.getNodeCount()];
+		int size = 0;
+		for (int node = 0; node < graph.getNodeCount(); node++) {
+			if (endNodes.contains(graph.getNode(node))) {
+				suffixConnections[node] = ROOT;
+				queue[size++] = node;
+			}
+		}
+		for (int head = 0; head < size; head++) {
+			for (int connection : graph.getIncomingConnections(queue[head])) {
+				int source = graph.getSource(connection);
+				if (suffixConnections[source] == UNREACHED) {
+					suffixConnections[source] = connection;
+					queue[size++] = source;
+				}
+			}
+		}
+		return Arrays.copyOf(queue, size);
+	}
+
 	private Set<IModelNode> getStartNodes() {
 		Set<IModelNode> startNodes = nodes.stream().filter((IModelNode node) -> node instanceof ProcessStart)
 				.collect(Collectors.toSet());
@@ -325,17 +454,18 @@ public class ProcessTestCaseGenerator extends TestCaseGeneratorBase<Process, IMo
 	}
 
 	private DirectedGraph<IModelNode, ProcessConnection> getGraph() {
-		DirectedGraph<IModelNode, ProcessConnection> graph = new DirectedMultigraph<>(ProcessConnection.class);
+		DirectedGraph<IModelNode, ProcessConnection> processGraph = new DirectedMultigraph<>(
+				ProcessConnection.class);
 		for (IModelNode node : nodes) {
-			graph.addVertex(node);
+			processGraph.addVertex(node);
 		}
 
 		for (ProcessConnection connection : connections) {
 			IModelNode source = connection.getSource();
 			IModelNode target = connection.getTarget();
-			graph.addEdge(source, target, connection);
+			processGraph.addEdge(source, target, connection);
 		}
 
-		return graph;
+		return processGraph;
 	}
 }
@@ -4,6 +4,7 @@ import java.util.List;
 import com.specmate.common.AssertUtil;
 import com.specmate.common.SpecmateException;
 import com.specmate.model.base.IContainer;
+import com.specmate.model.base.IModelConnection;
 import com.specmate.model.base.IModelNode;
 import com.specmate.model.support.util.SpecmateEcoreUtil;
 import com.specmate.model.testspecification.ParameterType;
@@ -18,23 +19,73 @@ public abstract class TestCaseGeneratorBase<M extends IContainer, N extends IMod
 	protected M model;
 	protected List<IModelNode> nodes;
 
+	/** Array based snapshot of the model graph, created once per generation */
+	protected ModelGraph graph;
+
+	/** Monitor for progress and cancellation, <code>null</code> if not monitored */
+	private IGenerationMonitor monitor;
+
 	@SuppressWarnings("unchecked")
 	public TestCaseGeneratorBase(TestSpecification specification, Class<M> modelClass, Class<N> nodeClass) {
 		AssertUtil.assertInstanceOf(specification.eContainer(), modelClass);
 		this.specification = specification;
 		this.model = (M) specification.eContainer();
 		this.nodes = (List<IModelNode>) SpecmateEcoreUtil.pickInstancesOf(model.getContents(), IModelNode.class);
+		this.graph = new ModelGraph(nodes,
+				SpecmateEcoreUtil.pickInstancesOf(model.getContents(), IModelConnection.class));
 	}
 
 	/** Adds necessary parameters to the specification */
 	protected abstract void generateParameters();
 	protected abstract void generateTestCases() throws SpecmateException;
 
-	/** Starts the test case generation */
+	/** Sets the monitor that receives the progress of the generation */
+	public void setMonitor(IGenerationMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Performs the expensive part of the generation that does not modify the
+	 * specification. Calling this method is optional, {@link #generate()}
+	 * takes care of any preparation that is still missing. This allows to
+	 * keep the changes to the specification short, e.g. when they have to be
+	 * repeated on a commit conflict.
+	 */
+	public void prepare() throws SpecmateException {
+		checkCancelled();
+	}
+
+	/**
+	 * Starts the test case generation. Adds the parameters and test cases to
+	 * the specification, after the missing preparation. Once
+	 * {@link #prepare()} has run, this only creates the model objects from its
+	 * result. It may be called again after the transaction has been rolled
+	 * back, e.g. when the commit is retried, and then adds the same
+	 * parameters and test cases again.
+	 */
 	public void generate() throws SpecmateException {
 		this.adaptSpecificationAndGenerateTestCases();
 	}
 
+	/** Reports the progress of the generation to the monitor */
+	protected void reportProgress(int percent) {
+		if (monitor != null) {
+			monitor.progress(percent);
+		}
+	}
+
+	/**
+	 * Checks if the generation has been cancelled
+	 *
+	 * @throws SpecmateException
+	 *             if the generation has been cancelled
+	 */
+	protected void checkCancelled() throws SpecmateException {
+		if (monitor != null && monitor.isCancelled()) {
+			throw new SpecmateException("Test generation cancelled");
+		}
+	}
+
 	/**
 	 * Adds necessary input and output parameters to the specification and
 	 * generates test cases
@@ -0,0 +1,136 @@
+package com.specmate.testspecification.internal.services;
+
+/**
+ * A test generation that runs in the background. The job is the monitor of
+ * its generator, it records the progress and passes on cancellation
+ * requests.
+ */
+class TestGenerationJob implements IGenerationMonitor {
+
+	public enum EJobState {
+		QUEUED, RUNNING, COMMITTING, FINISHED, FAILED, CANCELLED
+	}
+
+	/** The id of the job */
+	private final String id;
+
+	/** The id of the test specification to generate test cases for */
+	private final String specificationId;
+
+	/** The current state */
+	private volatile EJobState state = EJobState.QUEUED;
+
+	/** The progress in percent */
+	private volatile int progress;
+
+	/** Flag that indicates that the job should stop */
+	private volatile boolean cancelled;
+
+	/** Error message of a failed job */
+	private volatile String message;
+
+	/** Time when the job has finished, 0 while it is not finished */
+	private volatile long finishTime;
+
+	public TestGenerationJob(String id, String specificationId) {
+		this.id = id;
+		this.specificationId = specificationId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSpecificationId() {
+		return specificationId;
+	}
+
+	public EJobState getState() {
+		return state;
+	}
+
+	public int getProgress() {
+		return progress;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public long getFinishTime() {
+		return finishTime;
+	}
+
+	/** Signals if the job has finished, failed or was cancelled */
+	public boolean isDone() {
+		return finishTime != 0;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void progress(int percent) {
+		this.progress = percent;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Marks the job as running.
+	 *
+	 * @return <code>false</code> if the job was cancelled before it started
+	 */
+	public synchronized boolean start() {
+		if (state != EJobState.QUEUED) {
+			return false;
+		}
+		state = EJobState.RUNNING;
+		return true;
+	}
+
+	/**
+	 * Marks the job as committing its result. A committing job can no longer
+	 * be cancelled.
+	 *
+	 * @return <code>false</code> if the job was cancelled
+	 */
+	public synchronized boolean startCommit() {
+		if (cancelled) {
+			return false;
+		}
+		state = EJobState.COMMITTING;
+		return true;
+	}
+
+	/**
+	 * Requests the job to stop. A queued job is cancelled immediately, a
+	 * running job stops at the next check of its generator.
+	 *
+	 * @return <code>false</code> if the job can no longer be cancelled
+	 */
+	public synchronized boolean cancel() {
+		if (state == EJobState.QUEUED) {
+			cancelled = true;
+			finish(EJobState.CANCELLED, null);
+			return true;
+		}
+		if (state == EJobState.RUNNING) {
+			cancelled = true;
+			return true;
+		}
+		return false;
+	}
+
+	/** Marks the job as done with the given final state */
+	public synchronized void finish(EJobState finalState, String message) {
+		this.state = finalState;
+		this.message = message;
+		if (finalState == EJobState.FINISHED) {
+			this.progress = 100;
+		}
+		this.finishTime = System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,279 @@
+package com.specmate.testspecification.internal.services;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.eclipse.emf.ecore.EObject;
+import org.json.JSONObject;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.log.LogService;
+
+import com.specmate.common.SpecmateException;
+import com.specmate.common.SpecmateValidationException;
+import com.specmate.config.api.IConfigService;
+import com.specmate.emfrest.api.IRestService;
+import com.specmate.emfrest.api.RestServiceBase;
+import com.specmate.model.support.util.SpecmateEcoreUtil;
+import com.specmate.model.testspecification.TestSpecification;
+import com.specmate.persistency.IPersistencyService;
+import com.specmate.persistency.ITransaction;
+import com.specmate.rest.RestResult;
+import com.specmate.testspecification.internal.services.TestGenerationJob.EJobState;
+
+/**
+ * Service for generating test cases in the background. A POST starts a
+ * generation job for a test specification, a GET returns the state of the
+ * latest job (or the job given by the query parameter <code>job</code>) and a
+ * DELETE cancels the latest job. Jobs run on a bounded pool, use their own
+ * transaction and commit the generated test cases once.
+ */
+@Component(immediate = true, service = IRestService.class)
+public class TestGenerationJobService extends RestServiceBase {
+
+	/** Configuration key for the number of threads that run generation jobs */
+	public static final String KEY_JOB_THREADS = "generation.jobThreads";
+
+	/** Configuration key for the number of jobs that may wait for a thread */
+	public static final String KEY_JOB_QUEUE_SIZE = "generation.jobQueueSize";
+
+	/** Query parameter to select a job by its id */
+	private static final String JOB_PARAM = "job";
+
+	/** Time in milliseconds that finished jobs are kept */
+	private static final long JOB_RETENTION_TIME = TimeUnit.HOURS.toMillis(1);
+
+	/** The persistency service to open the job transactions */
+	private IPersistencyService persistencyService;
+
+	/** The configuration service */
+	private IConfigService configService;
+
+	/** The service that creates the generators */
+	private TestGeneratorService generatorService;
+
+	/** Service for message logging */
+	private LogService logService;
+
+	/** Executor for the generation jobs */
+	private ThreadPoolExecutor executor;
+
+	/** All jobs by job id */
+	private Map<String, TestGenerationJob> jobs = new ConcurrentHashMap<>();
+
+	/** The latest job by test specification id */
+	private Map<String, TestGenerationJob> latestJobs = new ConcurrentHashMap<>();
+
+	@Activate
+	public void activate() {
+		int threads = configService.getConfigurationPropertyInt(KEY_JOB_THREADS, 2);
+		int queueSize = configService.getConfigurationPropertyInt(KEY_JOB_QUEUE_SIZE, 20);
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize));
+	}
+
+	@Deactivate
+	public void deactivate() {
+		for (TestGenerationJob job : jobs.values()) {
+			job.cancel();
+		}
+		executor.shutdown();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getServiceName() {
+		return "generateTestsJob";
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean canPost(Object target, Object object) {
+		return target instanceof TestSpecification;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean canGet(Object target) {
+		return target instanceof TestSpecification;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean canDelete(Object target) {
+		return target instanceof TestSpecification;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RestResult<?> post(Object target, Object object, String token)
+			throws SpecmateValidationException, SpecmateException {
+		TestSpecification specification = (TestSpecification) target;
+		generatorService.checkSupported(specification);
+		String specificationId = SpecmateEcoreUtil.getUniqueId(specification);
+		if (specificationId == null) {
+			throw new SpecmateValidationException("Test specification must be saved before generating test cases");
+		}
+		removeExpiredJobs();
+		TestGenerationJob job;
+		synchronized (this) {
+			TestGenerationJob latest = latestJobs.get(specificationId);
+			if (latest != null && !latest.isDone()) {
+				return new RestResult<>(Response.Status.ACCEPTED, toJson(latest));
+			}
+			job = new TestGenerationJob(UUID.randomUUID().toString(), specificationId);
+			try {
+				executor.execute(() -> runJob(job));
+			} catch (RejectedExecutionException e) {
+				logService.log(LogService.LOG_WARNING, "Too many test generation jobs, rejecting job");
+				return new RestResult<>(Response.Status.SERVICE_UNAVAILABLE);
+			}
+			jobs.put(job.getId(), job);
+			latestJobs.put(specificationId, job);
+		}
+		return new RestResult<>(Response.Status.ACCEPTED, toJson(job));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RestResult<?> get(Object target, MultivaluedMap<String, String> queryParams, String token)
+			throws SpecmateException {
+		TestGenerationJob job = findJob((TestSpecification) target, queryParams.getFirst(JOB_PARAM));
+		if (job == null) {
+			return new RestResult<>(Response.Status.NOT_FOUND);
+		}
+		return new RestResult<>(Response.Status.OK, toJson(job));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public RestResult<?> delete(Object target, String token) throws SpecmateException, SpecmateValidationException {
+		TestGenerationJob job = findJob((TestSpecification) target, null);
+		if (job == null) {
+			return new RestResult<>(Response.Status.NOT_FOUND);
+		}
+		if (!job.cancel()) {
+			return new RestResult<>(Response.Status.CONFLICT, toJson(job));
+		}
+		return new RestResult<>(Response.Status.OK, toJson(job));
+	}
+
+	/**
+	 * Returns the job with the given id or the latest job if no id is given.
+	 * Returns <code>null</code> if there is no such job for the specification.
+	 */
+	private TestGenerationJob findJob(TestSpecification specification, String jobId) {
+		String specificationId = SpecmateEcoreUtil.getUniqueId(specification);
+		if (specificationId == null) {
+			return null;
+		}
+		if (jobId == null) {
+			return latestJobs.get(specificationId);
+		}
+		TestGenerationJob job = jobs.get(jobId);
+		if (job == null || !job.getSpecificationId().equals(specificationId)) {
+			return null;
+		}
+		return job;
+	}
+
+	/**
+	 * Runs a job. The test cases are computed before the transaction is
+	 * changed, hence a retry of the commit only needs to add the computed test
+	 * cases again.
+	 */
+	private void runJob(TestGenerationJob job) {
+		if (!job.start()) {
+			return;
+		}
+		ITransaction transaction = null;
+		try {
+			transaction = persistencyService.openTransaction();
+			EObject object = transaction.getObjectById(job.getSpecificationId());
+			if (!(object instanceof TestSpecification)) {
+				throw new SpecmateException("Test specification not found: " + job.getSpecificationId());
+			}
+			TestCaseGeneratorBase<?, ?> generator = generatorService.createGenerator((TestSpecification) object);
+			generator.setMonitor(job);
+			generator.prepare();
+			if (!job.startCommit()) {
+				job.finish(EJobState.CANCELLED, null);
+				return;
+			}
+			// repeated on a retry of the commit, which rolls back the
+			// transaction, hence generate() only adds the prepared test cases
+			transaction.doAndCommit(() -> {
+				generator.generate();
+				return null;
+			});
+			job.finish(EJobState.FINISHED, null);
+		} catch (SpecmateException | SpecmateValidationException e) {
+			if (job.isCancelled()) {
+				job.finish(EJobState.CANCELLED, null);
+			} else {
+				logService.log(LogService.LOG_ERROR, "Test generation job failed: " + e.getMessage(), e);
+				job.finish(EJobState.FAILED, e.getMessage());
+			}
+		} catch (RuntimeException e) {
+			logService.log(LogService.LOG_ERROR, "Test generation job failed: " + e.getMessage(), e);
+			job.finish(EJobState.FAILED, e.getMessage());
+		} finally {
+			if (transaction != null) {
+				transaction.close();
+			}
+		}
+	}
+
+	/** Removes jobs that have finished before the retention time */
+	private void removeExpiredJobs() {
+		long expired = System.currentTimeMillis() - JOB_RETENTION_TIME;
+		jobs.values().removeIf(job -> job.isDone() && job.getFinishTime() < expired);
+		latestJobs.values().removeIf(job -> job.isDone() && job.getFinishTime() < expired);
+	}
+
+	/** Creates the JSON representation of the state of a job */
+	private String toJson(TestGenerationJob job) {
+		JSONObject json = new JSONObject();
+		json.put("id", job.getId());
+		json.put("state", job.getState().name());
+		json.put("progress", job.getProgress());
+		if (job.getMessage() != null) {
+			json.put("message", job.getMessage());
+		}
+		return json.toString();
+	}
+
+	/** Service reference for the persistency service */
+	@Reference
+	public void setPersistencyService(IPersistencyService persistencyService) {
+		this.persistencyService = persistencyService;
+	}
+
+	/** Service reference for config service */
+	@Reference
+	public void setConfigurationService(IConfigService configService) {
+		this.configService = configService;
+	}
+
+	/** Service reference for the test generator service */
+	@Reference
+	public void setTestGeneratorService(TestGeneratorService generatorService) {
+		this.generatorService = generatorService;
+	}
+
+	/** Service reference for the log service */
+	@Reference
+	public void setLogService(LogService logService) {
+		this.logService = logService;
+	}
+}
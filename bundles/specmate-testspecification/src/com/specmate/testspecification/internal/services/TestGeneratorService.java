@@ -1,12 +1,18 @@
 package com.specmate.testspecification.internal.services;
 
+import java.util.concurrent.ForkJoinPool;
+
 import javax.ws.rs.core.Response;
 
 import org.eclipse.emf.ecore.EObject;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
 
 import com.specmate.common.SpecmateException;
 import com.specmate.common.SpecmateValidationException;
+import com.specmate.config.api.IConfigService;
 import com.specmate.emfrest.api.IRestService;
 import com.specmate.emfrest.api.RestServiceBase;
 import com.specmate.model.processes.Process;
@@ -20,9 +26,44 @@ import com.specmate.rest.RestResult;
  *
  * @author junkerm
  */
-@Component(immediate = true, service = IRestService.class)
+@Component(immediate = true, service = { IRestService.class, TestGeneratorService.class })
 public class TestGeneratorService extends RestServiceBase {
 
+	/** Configuration key for the number of threads used to expand evaluations */
+	public static final String KEY_GENERATION_PARALLELISM = "generation.parallelism";
+
+	/** Configuration key for the number of cached CEG model structures */
+	public static final String KEY_GENERATION_CACHE_SIZE = "generation.cacheSize";
+
+	/** The configuration service */
+	private IConfigService configService;
+
+	/** Pool for expanding CEG evaluations, null if expansion is sequential */
+	private ForkJoinPool expansionPool;
+
+	/** Cache for CEG evaluations, null if caching is disabled */
+	private CEGGenerationCache cache;
+
+	@Activate
+	public void activate() {
+		int parallelism = configService.getConfigurationPropertyInt(KEY_GENERATION_PARALLELISM, 1);
+		if (parallelism > 1) {
+			expansionPool = new ForkJoinPool(parallelism);
+		}
+		int cacheSize = configService.getConfigurationPropertyInt(KEY_GENERATION_CACHE_SIZE, 100);
+		if (cacheSize > 0) {
+			cache = new CEGGenerationCache(cacheSize);
+		}
+	}
+
+	@Deactivate
+	public void deactivate() {
+		if (expansionPool != null) {
+			expansionPool.shutdown();
+			expansionPool = null;
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public String getServiceName() {
@@ -36,22 +77,56 @@ public class TestGeneratorService extends RestServiceBase {
 		return target instanceof TestSpecification;
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Generates the test cases of a specification. The request is repeated if
+	 * its commit is retried. The evaluations of a CEG model are then taken from
+	 * the cache, unless it is disabled, and the paths of a process are cheap
+	 * to compute again.
+	 */
 	@Override
 	public RestResult<?> post(Object target, Object object, String token)
 			throws SpecmateValidationException, SpecmateException {
 		TestSpecification specification = (TestSpecification) target;
-		EObject container = specification.eContainer();
-		if (container instanceof CEGModel) {
-			new CEGTestCaseGenerator(specification).generate();
-		} else if (container instanceof Process) {
-			new ProcessTestCaseGenerator(specification).generate();
+		createGenerator(specification).generate();
+		return new RestResult<>(Response.Status.NO_CONTENT);
+	}
+
+	/**
+	 * Creates the generator for a test specification, depending on the kind of
+	 * model that contains the specification.
+	 *
+	 * @throws SpecmateValidationException
+	 *             if test cases cannot be generated for the specification
+	 */
+	TestCaseGeneratorBase<?, ?> createGenerator(TestSpecification specification) throws SpecmateValidationException {
+		checkSupported(specification);
+		if (specification.eContainer() instanceof CEGModel) {
+			return new CEGTestCaseGenerator(specification, expansionPool, cache);
 		} else {
+			return new ProcessTestCaseGenerator(specification);
+		}
+	}
+
+	/**
+	 * Checks if test cases can be generated for a test specification.
+	 *
+	 * @throws SpecmateValidationException
+	 *             if the specification is neither contained in a CEG model nor
+	 *             in a process
+	 */
+	void checkSupported(TestSpecification specification) throws SpecmateValidationException {
+		EObject container = specification.eContainer();
+		if (!(container instanceof CEGModel) && !(container instanceof Process)) {
 			throw new SpecmateValidationException(
 					"You can only generate test cases from ceg models or processes. The supplied element is of class "
 							+ container.getClass().getSimpleName());
 		}
-		return new RestResult<>(Response.Status.NO_CONTENT);
+	}
+
+	/** Service reference for config service */
+	@Reference
+	public void setConfigurationService(IConfigService configService) {
+		this.configService = configService;
 	}
 
 }